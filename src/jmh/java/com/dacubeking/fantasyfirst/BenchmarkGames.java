@@ -0,0 +1,61 @@
+package com.dacubeking.fantasyfirst;
+
+import com.dacubeking.fantasyfirst.game.Game;
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import com.dacubeking.fantasyfirst.game.TeamPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds deterministic games for the benchmarks
+ */
+public final class BenchmarkGames {
+
+    public static final int ALLIANCE_SIZE = 3;
+
+    private BenchmarkGames() {
+    }
+
+    /**
+     * @return Team numbers spread out like a real event's, so they aren't all the same width
+     */
+    public static List<String> teamNumbers(int teams) {
+        var numbers = new ArrayList<String>(teams);
+        for (int i = 0; i < teams; i++) {
+            numbers.add(String.valueOf(1 + i * 37 % 9973));
+        }
+        return numbers;
+    }
+
+    /**
+     * Create a game for an event, with the players joined but the draft not started
+     */
+    public static Game newGame(String eventCode, int players, int teams, int targetPlayersPerGame) {
+        var game = new Game("C0BENCH", ALLIANCE_SIZE, new TeamPool(TeamCatalog.forEvent(eventCode, teamNumbers(teams))),
+                "U0OWNER", "Benchmark " + eventCode, targetPlayersPerGame);
+        for (int i = 0; i < players; i++) {
+            game.addPlayer(new Player("U" + (100000 + i), "Player " + i));
+        }
+        return game;
+    }
+
+    /**
+     * Create a started game with a fixed draft order that's halfway through its draft
+     */
+    public static Game halfDraftedGame(String eventCode, int players, int teams) {
+        var game = newGame(eventCode, players, teams, 0);
+        var draftOrder = new ArrayList<String>(players);
+        for (Player player : game.getPlayers()) {
+            draftOrder.add(player.slackId());
+        }
+        game.start(draftOrder);
+
+        int picks = Math.min(players * ALLIANCE_SIZE, teams) / 2;
+        for (int i = 0; i < picks; i++) {
+            game.pickTeam(game.getAvailableTeams().get(0).number());
+        }
+        return game;
+    }
+}
@@ -0,0 +1,39 @@
+package com.dacubeking.fantasyfirst;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the pick a team modal, which happens on every "Pick A Team" click and every rejected pick
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScreensBenchmark {
+
+    @Param({"60", "200", "400"})
+    int teams;
+
+    private String teamsString;
+
+    @Setup
+    public void setUp() {
+        teamsString = String.join(", ", BenchmarkGames.teamNumbers(teams));
+    }
+
+    @Benchmark
+    public String buildPickATeamView() {
+        return Screens.buildPickATeamView(Screens.PICK_TEAM_CALLBACK_ID + ",00000000-0000-0000-0000-000000000000",
+                "U100000", teamsString);
+    }
+
+    @Benchmark
+    public String buildPickATeamErrorResponse() {
+        return Screens.buildPickATeamErrorResponse(Screens.PICK_TEAM_CALLBACK_ID + ",00000000-0000-0000-0000-000000000000",
+                "U100000", teamsString, "You chose a team that isn't available to pick!");
+    }
+}
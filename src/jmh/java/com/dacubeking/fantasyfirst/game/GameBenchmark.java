@@ -0,0 +1,97 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.BenchmarkGames;
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.slack.api.model.block.LayoutBlock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game engine's hot paths: working out whose turn it is, picking and rendering the draft
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    @Param({"8", "24", "64"})
+    int players;
+
+    @Param({"60", "200", "400"})
+    int teams;
+
+    private Game draft;
+    private Game unstarted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        draft = BenchmarkGames.halfDraftedGame("bench" + teams, players, teams);
+        unstarted = BenchmarkGames.newGame("bench" + teams, players, teams, 8);
+    }
+
+    /**
+     * A fresh half drafted game for every invocation, since picks change the game
+     */
+    @State(Scope.Thread)
+    public static class PickState {
+        Game game;
+        String teamNumber;
+
+        @Setup(Level.Invocation)
+        public void setUp(GameBenchmark benchmark) {
+            game = BenchmarkGames.halfDraftedGame("bench" + benchmark.teams, benchmark.players, benchmark.teams);
+            teamNumber = game.getAvailableTeams().get(0).number();
+            // Render once so the pick benchmarks see a warm render cache, like a running draft does
+            game.getDraftingMessage();
+            game.getMarkdownTable();
+        }
+    }
+
+    @Benchmark
+    public Player getNextPlayerInDraft() {
+        return draft.getNextPlayerInDraft();
+    }
+
+    @Benchmark
+    public Object pickTeam(PickState state) {
+        return state.game.pickTeam(state.teamNumber);
+    }
+
+    @Benchmark
+    public List<List<Player>> splitPlayers() {
+        return unstarted.splitPlayers();
+    }
+
+    /**
+     * Rendering an unchanged game, e.g. when the App Home is refreshed
+     */
+    @Benchmark
+    public List<List<LayoutBlock>> getDraftingMessage() {
+        return draft.getDraftingMessage();
+    }
+
+    @Benchmark
+    public String getMarkdownTable() {
+        return draft.getMarkdownTable();
+    }
+
+    /**
+     * What every pick costs: the pick and then re-rendering the draft board
+     */
+    @Benchmark
+    public List<List<LayoutBlock>> pickTeamThenGetDraftingMessage(PickState state) {
+        state.game.pickTeam(state.teamNumber);
+        return state.game.getDraftingMessage();
+    }
+
+    @Benchmark
+    public String pickTeamThenGetMarkdownTable(PickState state) {
+        state.game.pickTeam(state.teamNumber);
+        return state.game.getMarkdownTable();
+    }
+}
@@ -0,0 +1,70 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.BenchmarkGames;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading a single game with {@link GameCodec}, plain and deflated, against the Java serialization it replaced.
+ * Encoded sizes are printed during setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GameCodecBenchmark {
+
+    @Param({"codec", "codec-deflated", "java"})
+    String format;
+
+    @Param({"8", "24", "64"})
+    int players;
+
+    @Param({"200"})
+    int teams;
+
+    private Game game;
+    private byte[] saved;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        game = BenchmarkGames.halfDraftedGame("bench" + teams, players, teams);
+        saved = save();
+        System.out.println(format + ": " + saved.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        var lock = GameLocks.lockFor(game.getGameUuid());
+        lock.lock();
+        try {
+            return switch (format) {
+                case "codec" -> GameCodec.encode(game, false);
+                case "codec-deflated" -> GameCodec.encode(game, true);
+                default -> {
+                    var bos = new ByteArrayOutputStream();
+                    try (var oos = new ObjectOutputStream(bos)) {
+                        oos.writeObject(game);
+                    }
+                    yield bos.toByteArray();
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Benchmark
+    public Game load() throws IOException, ClassNotFoundException {
+        if (format.equals("java")) {
+            try (var ois = new ObjectInputStream(new ByteArrayInputStream(saved))) {
+                return (Game) ois.readObject();
+            }
+        }
+        return GameCodec.decode(saved);
+    }
+}
@@ -0,0 +1,127 @@
+package com.dacubeking.fantasyfirst.persistence;
+
+import com.dacubeking.fantasyfirst.BenchmarkGames;
+import com.dacubeking.fantasyfirst.game.Game;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing dirty games to the {@link GameStore}, loading a game that isn't in memory yet, and opening the store at
+ * startup. Writes include the fsyncs, so results depend on the disk they're run on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameStoreBenchmark {
+
+    private static final String[] WORKSPACES = {"T0BENCH", "T1BENCH", "T2BENCH", "T3BENCH", "T4BENCH"};
+
+    @Param({"100", "1000", "10000"})
+    int gameCount;
+
+    @Param({"24"})
+    int players;
+
+    @Param({"200"})
+    int teams;
+
+    private record StoredKey(String workspaceId, UUID gameId) {
+    }
+
+    private Path directory;
+    private GameStore store;
+    private final List<StoredKey> keys = new ArrayList<>();
+    private int next;
+
+    /**
+     * How many games changed since the last write, one for a single pick and more when several drafts are busy
+     */
+    @State(Scope.Benchmark)
+    public static class Dirty {
+        @Param({"1", "10"})
+        int dirtyGames;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Spread the games over a few workspaces and events, with some not started yet, like production
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>();
+        directory = Files.createTempDirectory("game-store-benchmark");
+        store = new GameStore(directory.resolve("games"), Duration.ZERO, games);
+        store.open(directory.resolve("games.ser"));
+        for (int i = 0; i < gameCount; i++) {
+            var eventCode = "bench" + (i % 20);
+            var game = i % 4 == 0 ? BenchmarkGames.newGame(eventCode, players, teams, 0)
+                    : BenchmarkGames.halfDraftedGame(eventCode, players, teams);
+            var workspaceId = WORKSPACES[i % WORKSPACES.length];
+            games.computeIfAbsent(workspaceId, k -> new ConcurrentHashMap<>()).put(game.getGameUuid(), game);
+            keys.add(new StoredKey(workspaceId, game.getGameUuid()));
+            store.requestWrite(workspaceId, game.getGameUuid());
+        }
+        store.writeNow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.flush();
+        try (var files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private StoredKey nextKey() {
+        var key = keys.get(next);
+        next = (next + 1) % keys.size();
+        return key;
+    }
+
+    /**
+     * Rewrite the dirty games' files and the manifest, which lists every game
+     */
+    @Benchmark
+    public void writeDirty(Dirty dirty) throws IOException {
+        for (int i = 0; i < dirty.dirtyGames; i++) {
+            var key = nextKey();
+            store.requestWrite(key.workspaceId(), key.gameId());
+        }
+        store.writeNow();
+    }
+
+    /**
+     * Read a game's file the first time it's used, with its event's catalog already loaded
+     */
+    @Benchmark
+    public Game load() {
+        var key = nextKey();
+        return store.load(key.workspaceId(), key.gameId());
+    }
+
+    /**
+     * Read the manifest at startup, without reading any game files. Single shots, as each open logs the game count.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 30)
+    public GameStore open() throws IOException {
+        var opened = new GameStore(directory.resolve("games"), Duration.ZERO, new ConcurrentHashMap<>());
+        opened.open(directory.resolve("games.ser"));
+        return opened;
+    }
+}
@@ -0,0 +1,62 @@
+package com.dacubeking.fantasyfirst.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects the ack latencies of one kind of request
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+    private long startNanos = System.nanoTime();
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public synchronized void record(long latencyNanos, boolean error) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    /**
+     * Drop everything recorded so far, e.g. at the end of the warmup
+     */
+    public synchronized void reset() {
+        count = 0;
+        errors = 0;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return One line with the throughput, error rate and latency percentiles
+     */
+    public synchronized String summary() {
+        if (count == 0) {
+            return "%-18s no requests".formatted(name);
+        }
+        var sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return "%-18s %8d requests %8.1f/s  errors %6.2f%%  p50 %7.1fms  p90 %7.1fms  p99 %7.1fms  max %7.1fms"
+                .formatted(name, count, count / seconds, 100.0 * errors / count,
+                        millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)),
+                        millis(percentile(sorted, 0.99)), millis(sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,195 @@
+package com.dacubeking.fantasyfirst.loadtest;
+
+import com.dacubeking.fantasyfirst.Main;
+import com.dacubeking.fantasyfirst.Screens;
+import com.dacubeking.fantasyfirst.game.Game;
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.GameLocks;
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import com.dacubeking.fantasyfirst.game.TeamPool;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Drives the bot's real Bolt app with synthetic, signed Slack requests against a local {@link SlackApiStub}, and reports
+ * the ack latency and error rate of each kind of request.
+ * <p>
+ * Requests are sent at fixed rates whether or not earlier ones have been answered, like Slack does, so a saturated bot
+ * shows up as growing latencies and errors rather than a lower request rate. Games are seeded straight into the
+ * registry and restarted whenever their draft finishes. Run it from an empty directory, since the bot's save file and
+ * journal are written to the working directory. Options are passed as {@code --name=value}, see {@link #main}.
+ */
+public class LoadTest {
+
+    private static final String EVENT_CODE = "loadtest";
+
+    private record SeededGame(Game game, List<String> draftOrder) {
+    }
+
+    /**
+     * The player whose turn it is in a game, and a team they could pick
+     */
+    private record Turn(Game game, String slackId, String teamNumber) {
+    }
+
+    private final Options options;
+    private final List<SeededGame> games = new ArrayList<>();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newCachedThreadPool(r -> {
+                var thread = new Thread(r, "load-test-client");
+                thread.setDaemon(true);
+                return thread;
+            }))
+            .build();
+
+    private LoadTest(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Options, on top of the ones for {@link LocalBot}:
+     * <ul>
+     *     <li>{@code --duration} seconds to measure for, default 60</li>
+     *     <li>{@code --warmup} seconds to run before measuring, default 10</li>
+     *     <li>{@code --games}, {@code --players}, {@code --teams} the drafts to seed, default 20 games of 12 players
+     *     with 120 teams</li>
+     *     <li>{@code --pick-clicks}, {@code --pick-submissions}, {@code --app-home} requests per second of each kind,
+     *     default 20, 20 and 5</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws Exception {
+        var options = new Options(args);
+        LocalBot.requireEmptyWorkingDirectory();
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        var bot = LocalBot.start(options);
+        seedGames(options.getInt("games", 20), options.getInt("players", 12), options.getInt("teams", 120));
+
+        var payloads = bot.getPayloads();
+        var pickClicks = new LatencyRecorder("pick clicks");
+        var pickSubmissions = new LatencyRecorder("pick submissions");
+        var appHome = new LatencyRecorder("app home opened");
+
+        var scheduler = Executors.newScheduledThreadPool(2);
+        schedule(scheduler, options.getDouble("pick-clicks", 20), pickClicks, () -> {
+            var turn = nextTurn();
+            return payloads.blockAction(turn.slackId(), turn.game().getChannelId(), Main.pickTeamButton.getActionId(),
+                    turn.game().getGameUuid().toString());
+        });
+        schedule(scheduler, options.getDouble("pick-submissions", 20), pickSubmissions, () -> {
+            var turn = nextTurn();
+            return payloads.pickSubmission(turn.slackId(),
+                    Screens.PICK_TEAM_CALLBACK_ID + "," + turn.game().getGameUuid(), turn.teamNumber());
+        });
+        schedule(scheduler, options.getDouble("app-home", 5), appHome, () -> {
+            var game = randomGame().game();
+            return payloads.appHomeOpened(game.getGameOwnerSlackId());
+        });
+
+        int warmup = options.getInt("warmup", 10);
+        int duration = options.getInt("duration", 60);
+        System.out.println("Warming up for " + warmup + "s");
+        Thread.sleep(warmup * 1000L);
+        pickClicks.reset();
+        pickSubmissions.reset();
+        appHome.reset();
+        System.out.println("Measuring for " + duration + "s");
+        Thread.sleep(duration * 1000L);
+
+        System.out.println();
+        System.out.println(pickClicks.summary());
+        System.out.println(pickSubmissions.summary());
+        System.out.println(appHome.summary());
+        System.out.println();
+        bot.printStubCalls();
+
+        scheduler.shutdownNow();
+        bot.stop();
+    }
+
+    private void seedGames(int gameCount, int players, int teams) {
+        var teamNumbers = new ArrayList<String>(teams);
+        for (int i = 0; i < teams; i++) {
+            teamNumbers.add(String.valueOf(1 + i * 37 % 9973));
+        }
+        var catalog = TeamCatalog.forEvent(EVENT_CODE, teamNumbers);
+
+        for (int i = 0; i < gameCount; i++) {
+            var game = new Game("C0LOAD" + i, 3, new TeamPool(catalog), "U0OWNER" + i % 5, "Load test " + i, 0);
+            var draftOrder = new ArrayList<String>(players);
+            for (int j = 0; j < players; j++) {
+                var slackId = "U0G" + i + "P" + j;
+                game.addPlayer(new Player(slackId, "Player " + j));
+                draftOrder.add(slackId);
+            }
+            game.start(draftOrder);
+            Main.getRegistry().put(SlackApiStub.TEAM_ID, game);
+            games.add(new SeededGame(game, draftOrder));
+        }
+    }
+
+    private SeededGame randomGame() {
+        return games.get(ThreadLocalRandom.current().nextInt(games.size()));
+    }
+
+    /**
+     * Find whose turn it is in a random game, starting the draft over if it's finished
+     */
+    private Turn nextTurn() {
+        var seeded = randomGame();
+        var game = seeded.game();
+        var lock = GameLocks.lockFor(game.getGameUuid());
+        lock.lock();
+        try {
+            var player = game.getNextPlayerInDraft();
+            var availableTeams = game.getAvailableTeams();
+            if (player == null || availableTeams.isEmpty()) {
+                game.unStart();
+                game.start(seeded.draftOrder());
+                player = game.getNextPlayerInDraft();
+                availableTeams = game.getAvailableTeams();
+            }
+            var team = availableTeams.get(ThreadLocalRandom.current().nextInt(availableTeams.size()));
+            return new Turn(game, player.slackId(), team.number());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send requests at a fixed rate, without waiting for earlier ones to be answered
+     */
+    private void schedule(ScheduledExecutorService scheduler, double perSecond, LatencyRecorder recorder,
+                          Supplier<HttpRequest> request) {
+        if (perSecond <= 0) {
+            return;
+        }
+        scheduler.scheduleAtFixedRate(() -> {
+            HttpRequest httpRequest;
+            try {
+                httpRequest = request.get();
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+            long start = System.nanoTime();
+            httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, throwable) -> recorder.record(System.nanoTime() - start,
+                            throwable != null || response.statusCode() != 200));
+        }, 0, (long) (1_000_000_000 / perSecond), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,116 @@
+package com.dacubeking.fantasyfirst.loadtest;
+
+import com.dacubeking.fantasyfirst.EventTeamCache;
+import com.dacubeking.fantasyfirst.GetTeamsAtEvent;
+import com.dacubeking.fantasyfirst.Main;
+import com.dacubeking.fantasyfirst.server.SlackServer;
+import com.dacubeking.fantasyfirst.server.VirtualThreads;
+import com.slack.api.Slack;
+import com.slack.api.SlackConfig;
+import com.slack.api.bolt.AppConfig;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The bot's real app and server, talking to a local {@link SlackApiStub} instead of Slack.
+ * <p>
+ * Options: {@code --api-latency} milliseconds every Slack API call takes (default 50), {@code --rate-limited} percent of
+ * Slack API calls answered with a 429 (default 1), {@code --retry-after} seconds sent with 429s (default 1),
+ * {@code --port} the bot's port (default 3100), {@code --virtual-threads} to handle requests on virtual threads and
+ * {@code --trace-file} to write the bot's traces to a file. The bot's metrics are served on the same port while it runs.
+ */
+public class LocalBot {
+
+    private static final String SIGNING_SECRET = "loadtest-signing-secret";
+    private static final String BOT_TOKEN = "xoxb-loadtest";
+
+    private final SlackApiStub stub;
+    private final SlackServer server;
+    private final SlackPayloads payloads;
+
+    private LocalBot(SlackApiStub stub, SlackServer server, SlackPayloads payloads) {
+        this.stub = stub;
+        this.server = server;
+        this.payloads = payloads;
+    }
+
+    /**
+     * Exit unless the working directory is free of the bot's state, so a run never touches a real save file
+     */
+    public static void requireEmptyWorkingDirectory() {
+        if (Files.exists(Path.of(Main.SAVE_FILE)) || Files.exists(Path.of(Main.GAMES_DIRECTORY))
+                || Files.exists(Path.of(Main.JOURNAL_FILE))) {
+            System.out.println("Found a save file or journal in " + Path.of("").toAbsolutePath()
+                    + ", run from an empty directory");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Load the bot's state from the working directory and start it
+     */
+    public static LocalBot start(Options options) throws Exception {
+        // Checked before the stub starts, its threads would keep the JVM running after the error
+        boolean virtualThreads = options.getBoolean("virtual-threads", false);
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            throw new IllegalArgumentException("--virtual-threads needs Java 21 or newer, running on "
+                    + Runtime.version());
+        }
+
+        var stub = new SlackApiStub(0, Duration.ofMillis(options.getInt("api-latency", 50)),
+                options.getDouble("rate-limited", 1) / 100, options.getInt("retry-after", 1));
+        stub.start();
+
+        var slackConfig = new SlackConfig();
+        slackConfig.setMethodsEndpointUrlPrefix(stub.getMethodsUrlPrefix());
+        var appConfig = AppConfig.builder()
+                .slack(Slack.getInstance(slackConfig))
+                .singleTeamBotToken(BOT_TOKEN)
+                .signingSecret(SIGNING_SECRET)
+                .build();
+        if (virtualThreads) {
+            appConfig.setExecutorServiceProvider(VirtualThreads.executorServiceProvider());
+        }
+
+        var traceFile = options.get("trace-file", null);
+        if (traceFile != null) {
+            Main.startTracing(Path.of(traceFile));
+        }
+        Main.loadState();
+        // TBA is only reached for events that aren't in the working directory's TBA cache
+        var eventTeams = new EventTeamCache(new GetTeamsAtEvent(System.getenv("TBA_API_KEY"), GetTeamsAtEvent.TBA_API_URL),
+                Path.of(Main.TBA_CACHE_DIRECTORY), Duration.ofMinutes(15), Duration.ofDays(7));
+        int port = options.getInt("port", 3100);
+        var server = new SlackServer(Main.createApp(appConfig, eventTeams), port, virtualThreads);
+        server.serveMetrics(null);
+        server.start();
+
+        var payloads = new SlackPayloads(URI.create("http://127.0.0.1:" + port + SlackServer.EVENTS_PATH),
+                stub.getResponseUrl(), SIGNING_SECRET);
+        return new LocalBot(stub, server, payloads);
+    }
+
+    public SlackApiStub getStub() {
+        return stub;
+    }
+
+    public SlackPayloads getPayloads() {
+        return payloads;
+    }
+
+    /**
+     * Print how often the stub was called, to go with the latency report
+     */
+    public void printStubCalls() {
+        System.out.println("Slack API calls: " + stub.getCallsByMethod());
+        System.out.println("Answered with 429: " + stub.getRateLimitedByMethod());
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+        stub.stop();
+    }
+}
@@ -0,0 +1,121 @@
+package com.dacubeking.fantasyfirst.loadtest;
+
+import com.dacubeking.fantasyfirst.Main;
+import com.dacubeking.fantasyfirst.game.GameRandom;
+import com.dacubeking.fantasyfirst.server.CaptureFile;
+import com.dacubeking.fantasyfirst.server.CaptureFile.CapturedRequest;
+
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a traffic capture (see {@link com.dacubeking.fantasyfirst.server.TrafficCapture}) into a fresh copy of the bot
+ * running against a local {@link SlackApiStub}, and reports the ack latency of each kind of request.
+ * <p>
+ * The bot starts from the games saved next to the capture, with game randomness seeded the same way as during the
+ * capture, so replayed requests create the same game ids and draft orders as the real ones did. Requests are re-signed and
+ * sent at their captured offsets, divided by {@code --speed}. Run it from an empty directory.
+ * <p>
+ * Options, on top of the ones for {@link LocalBot}: {@code --capture} the {@code .ffcap} file to replay,
+ * {@code --speed} how much faster than real time to replay (default 1) and {@code --tba-cache} a TBA cache directory
+ * to copy in, for captures that create games for events.
+ */
+public class Replay {
+
+    public static void main(String[] args) throws Exception {
+        var options = new Options(args);
+        LocalBot.requireEmptyWorkingDirectory();
+
+        var capturePath = Path.of(options.require("capture"));
+        var capture = CaptureFile.read(capturePath);
+        double speed = options.getDouble("speed", 1);
+
+        var gamesPath = capturePath.resolveSibling(capturePath.getFileName().toString()
+                .replaceFirst("\\.ffcap$", "") + ".games");
+        if (Files.exists(gamesPath)) {
+            copyDirectory(gamesPath, Path.of(Main.GAMES_DIRECTORY));
+        } else {
+            System.out.println("No saved games found at " + gamesPath + ", starting without any games");
+        }
+        var tbaCache = options.get("tba-cache", null);
+        if (tbaCache != null) {
+            copyDirectory(Path.of(tbaCache), Path.of(Main.TBA_CACHE_DIRECTORY));
+        }
+
+        GameRandom.seed(capture.seed());
+        var bot = LocalBot.start(options);
+
+        var httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newCachedThreadPool(r -> {
+                    var thread = new Thread(r, "replay-client");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+        var recorders = new ConcurrentHashMap<String, LatencyRecorder>();
+        var remaining = new CountDownLatch(capture.requests().size());
+        var responseUrl = bot.getStub().getResponseUrl();
+        var encodedResponseUrl = URLEncoder.encode(responseUrl, StandardCharsets.UTF_8);
+
+        System.out.println("Replaying " + capture.requests().size() + " requests at " + speed + "x");
+        // A single thread sends the requests in the order they were captured, even when they're due at the same time
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+        for (CapturedRequest request : capture.requests()) {
+            var recorder = recorders.computeIfAbsent(request.kind(), LatencyRecorder::new);
+            scheduler.schedule(() -> {
+                var body = request.body().replace(CaptureFile.RESPONSE_URL_PLACEHOLDER,
+                        request.json() ? responseUrl : encodedResponseUrl);
+                var httpRequest = bot.getPayloads().signed(body,
+                        request.json() ? "application/json" : "application/x-www-form-urlencoded");
+                long start = System.nanoTime();
+                httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, throwable) -> {
+                            recorder.record(System.nanoTime() - start, throwable != null || response.statusCode() != 200);
+                            remaining.countDown();
+                        });
+            }, (long) (request.offsetMillis() * 1_000_000 / speed), TimeUnit.NANOSECONDS);
+        }
+
+        long lastOffsetMillis = capture.requests().isEmpty() ? 0
+                : capture.requests().get(capture.requests().size() - 1).offsetMillis();
+        if (!remaining.await((long) (lastOffsetMillis / speed) + 60_000, TimeUnit.MILLISECONDS)) {
+            System.out.println(remaining.getCount() + " requests weren't answered");
+        }
+
+        System.out.println();
+        Map<String, LatencyRecorder> sorted = new TreeMap<>(recorders);
+        sorted.values().forEach(recorder -> System.out.println(recorder.summary()));
+        System.out.println();
+        bot.printStubCalls();
+
+        scheduler.shutdownNow();
+        bot.stop();
+        System.exit(0);
+    }
+
+    private static void copyDirectory(Path from, Path to) throws Exception {
+        try (var files = Files.walk(from)) {
+            for (Path file : files.toList()) {
+                var copy = to.resolve(from.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.dacubeking.fantasyfirst.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for the Slack Web API and response URLs.
+ * <p>
+ * Every call waits for the configured latency and then answers with the smallest response the bot needs, e.g. a fresh
+ * {@code ts} for {@code chat.postMessage}. A configurable share of Web API calls is answered with a 429 and a
+ * {@code Retry-After} header instead, to exercise the bot's rate limit handling.
+ */
+public class SlackApiStub {
+
+    public static final String TEAM_ID = "T0LOADTEST";
+    public static final String BOT_USER_ID = "U0LOADBOT";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "slack-api-stub");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Duration latency;
+    private final double rateLimitedFraction;
+    private final int retryAfterSeconds;
+
+    private final AtomicLong messageCounter = new AtomicLong(1_700_000_000L);
+    private final ConcurrentMap<String, LongAdder> callsByMethod = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> rateLimitedByMethod = new ConcurrentHashMap<>();
+
+    /**
+     * @param port                The port to listen on, 0 for any free port
+     * @param latency             How long every call takes
+     * @param rateLimitedFraction The share of Web API calls, between 0 and 1, that get a 429 response
+     * @param retryAfterSeconds   The Retry-After sent with 429 responses
+     */
+    public SlackApiStub(int port, Duration latency, double rateLimitedFraction, int retryAfterSeconds)
+            throws IOException {
+        this.latency = latency;
+        this.rateLimitedFraction = rateLimitedFraction;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handleApiCall);
+        server.createContext("/response", this::handleResponseUrl);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return The URL prefix for Web API methods, for {@link com.slack.api.SlackConfig#setMethodsEndpointUrlPrefix}
+     */
+    public String getMethodsUrlPrefix() {
+        return getUrl() + "/api/";
+    }
+
+    public String getResponseUrl() {
+        return getUrl() + "/response";
+    }
+
+    private String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return How often each method was called, including calls answered with a 429
+     */
+    public Map<String, Long> getCallsByMethod() {
+        return snapshot(callsByMethod);
+    }
+
+    public Map<String, Long> getRateLimitedByMethod() {
+        return snapshot(rateLimitedByMethod);
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentMap<String, LongAdder> counters) {
+        var counts = new TreeMap<String, Long>();
+        counters.forEach((method, count) -> counts.put(method, count.sum()));
+        return counts;
+    }
+
+    private void handleApiCall(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var method = exchange.getRequestURI().getPath().substring("/api/".length());
+            var params = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            callsByMethod.computeIfAbsent(method, k -> new LongAdder()).increment();
+            simulateLatency();
+
+            if (!method.equals("auth.test") && ThreadLocalRandom.current().nextDouble() < rateLimitedFraction) {
+                rateLimitedByMethod.computeIfAbsent(method, k -> new LongAdder()).increment();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                send(exchange, 429, "{\"ok\":false,\"error\":\"ratelimited\"}");
+                return;
+            }
+            send(exchange, 200, respond(method, params).toString());
+        }
+    }
+
+    private void handleResponseUrl(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            callsByMethod.computeIfAbsent("response_url", k -> new LongAdder()).increment();
+            simulateLatency();
+            send(exchange, 200, "ok");
+        }
+    }
+
+    private JsonObject respond(String method, Map<String, String> params) {
+        var response = new JsonObject();
+        response.addProperty("ok", true);
+        switch (method) {
+            case "auth.test" -> {
+                response.addProperty("url", "https://loadtest.slack.com/");
+                response.addProperty("team", "Load Test");
+                response.addProperty("user", "fantasy-first");
+                response.addProperty("team_id", TEAM_ID);
+                response.addProperty("user_id", BOT_USER_ID);
+                response.addProperty("bot_id", "B0LOADBOT");
+            }
+            case "chat.postMessage", "chat.update", "chat.delete" -> {
+                var ts = params.containsKey("ts") ? params.get("ts") : messageCounter.incrementAndGet() + ".000100";
+                response.addProperty("channel", params.getOrDefault("channel", "C0LOADTEST"));
+                response.addProperty("ts", ts);
+            }
+            case "views.open", "views.publish", "views.update", "views.push" -> {
+                var view = new JsonObject();
+                view.addProperty("id", "V0LOADTEST");
+                response.add("view", view);
+            }
+            case "users.info" -> response.add("user", user(params.getOrDefault("user", "U0UNKNOWN")));
+            case "users.list" -> {
+                response.add("members", new JsonArray());
+                var metadata = new JsonObject();
+                metadata.addProperty("next_cursor", "");
+                response.add("response_metadata", metadata);
+            }
+            default -> {
+            }
+        }
+        return response;
+    }
+
+    private static JsonObject user(String userId) {
+        var profile = new JsonObject();
+        profile.addProperty("display_name", "Player " + userId);
+        profile.addProperty("real_name", "Player " + userId);
+
+        var user = new JsonObject();
+        user.addProperty("id", userId);
+        user.addProperty("team_id", TEAM_ID);
+        user.addProperty("name", userId.toLowerCase());
+        user.add("profile", profile);
+        return user;
+    }
+
+    private void simulateLatency() {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        var params = new HashMap<String, String>();
+        if (body.isEmpty() || body.startsWith("{")) {
+            return params;
+        }
+        for (String pair : body.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
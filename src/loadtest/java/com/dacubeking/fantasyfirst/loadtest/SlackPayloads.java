@@ -0,0 +1,169 @@
+package com.dacubeking.fantasyfirst.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.slack.api.app_backend.SlackSignature;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the requests Slack would send the bot, signed with the app's signing secret so they pass Bolt's request
+ * verification
+ */
+public class SlackPayloads {
+
+    private static final String API_APP_ID = "A0LOADTEST";
+
+    private final URI eventsUri;
+    private final String responseUrl;
+    private final SlackSignature.Generator signatureGenerator;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * @param eventsUri     The bot's events endpoint
+     * @param responseUrl   The response URL to put in interactive payloads
+     * @param signingSecret The app's signing secret
+     */
+    public SlackPayloads(URI eventsUri, String responseUrl, String signingSecret) {
+        this.eventsUri = eventsUri;
+        this.responseUrl = responseUrl;
+        this.signatureGenerator = new SlackSignature.Generator(signingSecret);
+    }
+
+    /**
+     * A click on a button in a message, e.g. "Pick A Team"
+     */
+    public HttpRequest blockAction(String userId, String channelId, String actionId, String value) {
+        var action = new JsonObject();
+        action.addProperty("type", "button");
+        action.addProperty("action_id", actionId);
+        action.addProperty("block_id", "loadtest");
+        action.addProperty("value", value);
+        action.addProperty("action_ts", timestamp());
+        var actions = new JsonArray();
+        actions.add(action);
+
+        var channel = new JsonObject();
+        channel.addProperty("id", channelId);
+        channel.addProperty("name", "draft");
+
+        // The message the button is on, the join and leave handlers reply in its thread
+        var messageTs = timestamp();
+        var message = new JsonObject();
+        message.addProperty("type", "message");
+        message.addProperty("ts", messageTs);
+
+        var container = new JsonObject();
+        container.addProperty("type", "message");
+        container.addProperty("message_ts", messageTs);
+        container.addProperty("channel_id", channelId);
+        container.addProperty("is_ephemeral", false);
+
+        var payload = interaction("block_actions", userId);
+        payload.addProperty("response_url", responseUrl);
+        payload.add("channel", channel);
+        payload.add("container", container);
+        payload.add("message", message);
+        payload.add("actions", actions);
+        return form(payload);
+    }
+
+    /**
+     * Submitting the "Pick A Team" modal
+     */
+    public HttpRequest pickSubmission(String userId, String callbackId, String teamNumber) {
+        var input = new JsonObject();
+        input.addProperty("type", "number_input");
+        input.addProperty("value", teamNumber);
+        var block = new JsonObject();
+        block.add("team_pick_number", input);
+        var values = new JsonObject();
+        values.add("loadtest", block);
+        var state = new JsonObject();
+        state.add("values", values);
+
+        var view = new JsonObject();
+        view.addProperty("id", "V0LOADTEST");
+        view.addProperty("team_id", SlackApiStub.TEAM_ID);
+        view.addProperty("type", "modal");
+        view.addProperty("callback_id", callbackId);
+        view.addProperty("private_metadata", "");
+        view.addProperty("hash", "loadtest");
+        view.add("state", state);
+
+        var payload = interaction("view_submission", userId);
+        payload.add("view", view);
+        payload.add("response_urls", new JsonArray());
+        return form(payload);
+    }
+
+    /**
+     * A user opening the bot's App Home
+     */
+    public HttpRequest appHomeOpened(String userId) {
+        var event = new JsonObject();
+        event.addProperty("type", "app_home_opened");
+        event.addProperty("user", userId);
+        event.addProperty("channel", "D" + userId.substring(1));
+        event.addProperty("tab", "home");
+        event.addProperty("event_ts", timestamp());
+
+        var payload = new JsonObject();
+        payload.addProperty("token", "loadtest");
+        payload.addProperty("team_id", SlackApiStub.TEAM_ID);
+        payload.addProperty("api_app_id", API_APP_ID);
+        payload.add("event", event);
+        payload.addProperty("type", "event_callback");
+        payload.addProperty("event_id", "Ev" + counter.incrementAndGet());
+        payload.addProperty("event_time", System.currentTimeMillis() / 1000);
+        return signed(payload.toString(), "application/json");
+    }
+
+    private JsonObject interaction(String type, String userId) {
+        var team = new JsonObject();
+        team.addProperty("id", SlackApiStub.TEAM_ID);
+        team.addProperty("domain", "loadtest");
+
+        var user = new JsonObject();
+        user.addProperty("id", userId);
+        user.addProperty("username", userId.toLowerCase());
+        user.addProperty("team_id", SlackApiStub.TEAM_ID);
+
+        var payload = new JsonObject();
+        payload.addProperty("type", type);
+        payload.add("team", team);
+        payload.add("user", user);
+        payload.addProperty("api_app_id", API_APP_ID);
+        payload.addProperty("token", "loadtest");
+        payload.addProperty("trigger_id", counter.incrementAndGet() + "." + UUID.randomUUID());
+        return payload;
+    }
+
+    private HttpRequest form(JsonObject payload) {
+        return signed("payload=" + URLEncoder.encode(payload.toString(), StandardCharsets.UTF_8),
+                "application/x-www-form-urlencoded");
+    }
+
+    /**
+     * Sign a request body the way Slack does
+     */
+    public HttpRequest signed(String body, String contentType) {
+        var requestTimestamp = String.valueOf(System.currentTimeMillis() / 1000);
+        return HttpRequest.newBuilder(eventsUri)
+                .header("Content-Type", contentType)
+                .header(SlackSignature.HeaderNames.X_SLACK_REQUEST_TIMESTAMP, requestTimestamp)
+                .header(SlackSignature.HeaderNames.X_SLACK_SIGNATURE, signatureGenerator.generate(requestTimestamp, body))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String timestamp() {
+        long micros = System.currentTimeMillis() * 1000;
+        return micros / 1_000_000 + "." + String.format("%06d", micros % 1_000_000);
+    }
+}
@@ -0,0 +1,68 @@
+package com.dacubeking.fantasyfirst;
+
+import com.slack.api.methods.SlackApiException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings a game's draft board, the messages showing the state of its draft, up to date. The board's messages are edited
+ * in place where possible, so the channel doesn't fill up with old boards.
+ */
+public final class DraftBoard {
+
+    /**
+     * The Slack calls the board is updated with, in the board's channel
+     *
+     * @param <M> The content of a message
+     */
+    public interface Messages<M> {
+        /**
+         * @return Whether the message was edited, false if it can't be (e.g. it was deleted)
+         */
+        boolean update(String ts, M message) throws IOException, SlackApiException;
+
+        /**
+         * @return The new message's ts
+         */
+        String post(M message) throws IOException, SlackApiException;
+
+        void delete(String ts) throws IOException, SlackApiException;
+    }
+
+    private DraftBoard() {
+    }
+
+    /**
+     * Edit the board's messages to show the new board. If the board has more messages now, the extra ones are posted
+     * after it, and if it has fewer, the old messages left over are deleted. Once a message can't be edited, the rest
+     * of the board is posted again so its messages stay in order, and the old messages that weren't reused are deleted.
+     *
+     * @param boardTs The ts of each of the board's messages, or null if there is no board yet
+     * @param board   The content of each of the new board's messages
+     * @return The ts of each of the new board's messages
+     */
+    public static <M> List<String> update(Messages<M> messages, @Nullable List<String> boardTs, List<M> board)
+            throws IOException, SlackApiException {
+        var oldTs = boardTs == null ? List.<String>of() : boardTs;
+        var newTs = new ArrayList<String>(board.size());
+        boolean editable = true;
+        for (int i = 0; i < board.size(); i++) {
+            if (editable && i < oldTs.size() && messages.update(oldTs.get(i), board.get(i))) {
+                newTs.add(oldTs.get(i));
+            } else {
+                editable = false;
+                newTs.add(messages.post(board.get(i)));
+            }
+        }
+
+        for (String ts : oldTs) {
+            if (!newTs.contains(ts)) {
+                messages.delete(ts);
+            }
+        }
+        return newTs;
+    }
+}
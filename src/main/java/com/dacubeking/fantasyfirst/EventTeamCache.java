@@ -0,0 +1,205 @@
+package com.dacubeking.fantasyfirst;
+
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory and on-disk cache of the team lists of TBA events, keyed by event code.
+ * <p>
+ * Team lists younger than the fresh TTL are served without talking to TBA. Older ones are still served right away while
+ * they are revalidated in the background with a conditional request using the cached {@code ETag}/{@code Last-Modified},
+ * so an unchanged list only costs a 304. Lists older than the max stale age are revalidated before returning. Every entry
+ * is also written to its own file in the cache directory so a restart doesn't start cold.
+ */
+public class EventTeamCache {
+
+    private static final Pattern EVENT_CODE = Pattern.compile("[a-z0-9]+");
+
+    /**
+     * @param teamNumbers     The team numbers at the event
+     * @param etag            The {@code ETag} TBA sent with the list, if any
+     * @param lastModified    The {@code Last-Modified} TBA sent with the list, if any
+     * @param fetchedAtMillis When the list was last fetched or revalidated
+     */
+    private record Entry(List<String> teamNumbers, @Nullable String etag, @Nullable String lastModified,
+                         long fetchedAtMillis) implements Serializable {
+        boolean isOlderThan(long ageMillis) {
+            return System.currentTimeMillis() - fetchedAtMillis > ageMillis;
+        }
+    }
+
+    private final GetTeamsAtEvent fetcher;
+    private final Path cacheDirectory;
+    private final long freshMillis;
+    private final long maxStaleMillis;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Entry>> revalidating = new ConcurrentHashMap<>();
+
+    /**
+     * @param fetcher        Used to request team lists from TBA
+     * @param cacheDirectory The directory entries are persisted in, created if it doesn't exist
+     * @param freshTtl       How long a team list is served without revalidating it
+     * @param maxStale       How old a team list may get before callers wait for it to be revalidated
+     */
+    public EventTeamCache(GetTeamsAtEvent fetcher, Path cacheDirectory, Duration freshTtl, Duration maxStale) {
+        this.fetcher = fetcher;
+        this.cacheDirectory = cacheDirectory;
+        this.freshMillis = freshTtl.toMillis();
+        this.maxStaleMillis = maxStale.toMillis();
+    }
+
+    /**
+     * Get the teams at an event. Games for the same event share the returned catalog as long as the event's team list
+     * doesn't change.
+     *
+     * @return The teams at the event, or an empty catalog if TBA doesn't know the event or the code can't be an event.
+     * Completes immediately unless the event isn't cached or its list is older than the max stale age.
+     */
+    public CompletableFuture<TeamCatalog> getTeamsAtEvent(String eventCode) {
+        var key = eventCode.trim().toLowerCase(Locale.ROOT);
+        if (!EVENT_CODE.matcher(key).matches()) {
+            // Can't be a TBA event, so don't ask
+            return CompletableFuture.completedFuture(TeamCatalog.of(List.of()));
+        }
+
+        var entry = entries.get(key);
+        if (entry == null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                entries.putIfAbsent(key, entry);
+            }
+        }
+
+        if (entry == null || entry.isOlderThan(maxStaleMillis)) {
+            return revalidate(key).thenApply(updated -> toCatalog(key, updated));
+        }
+        if (entry.isOlderThan(freshMillis)) {
+            revalidate(key).exceptionally(e -> {
+                // Keep serving the stale list, the next request will try again
+                System.out.println("Error revalidating teams for " + key);
+                e.printStackTrace();
+                return null;
+            });
+        }
+        return CompletableFuture.completedFuture(toCatalog(key, entry));
+    }
+
+    private static TeamCatalog toCatalog(String key, Entry entry) {
+        if (entry.teamNumbers().isEmpty()) {
+            return TeamCatalog.of(List.of());
+        }
+        return TeamCatalog.forEvent(key, entry.teamNumbers());
+    }
+
+    /**
+     * Fetch a team list, conditionally if we have a cached copy, and store the result. Concurrent calls for the same
+     * event share a single request.
+     *
+     * @return The up-to-date entry
+     */
+    private CompletableFuture<Entry> revalidate(String key) {
+        var future = new CompletableFuture<Entry>();
+        var existing = revalidating.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        var cached = entries.get(key);
+        CompletableFuture<GetTeamsAtEvent.EventTeams> request;
+        try {
+            request = cached == null ? fetcher.fetchTeamsAtEvent(key, null, null)
+                    : fetcher.fetchTeamsAtEvent(key, cached.etag(), cached.lastModified());
+        } catch (RuntimeException e) {
+            // Otherwise the registered future never completes and every later lookup of the event waits on it
+            revalidating.remove(key, future);
+            future.completeExceptionally(e);
+            return future;
+        }
+        request.thenApply(response -> store(key, cached, response))
+                .whenComplete((entry, e) -> {
+                    revalidating.remove(key, future);
+                    if (e != null) {
+                        future.completeExceptionally(e);
+                    } else {
+                        future.complete(entry);
+                    }
+                });
+        return future;
+    }
+
+    private Entry store(String key, @Nullable Entry cached, GetTeamsAtEvent.EventTeams response) {
+        Entry updated;
+        if (response.notModified() && cached != null) {
+            updated = new Entry(cached.teamNumbers(),
+                    response.etag() != null ? response.etag() : cached.etag(),
+                    response.lastModified() != null ? response.lastModified() : cached.lastModified(),
+                    System.currentTimeMillis());
+        } else if (response.teamNumbers().isEmpty()) {
+            // Unknown event or a failed request. Don't cache it, and don't throw away a list we already had.
+            return cached != null ? cached : new Entry(List.of(), null, null, 0);
+        } else {
+            updated = new Entry(List.copyOf(response.teamNumbers()), response.etag(), response.lastModified(),
+                    System.currentTimeMillis());
+        }
+
+        entries.put(key, updated);
+        writeToDisk(key, updated);
+        return updated;
+    }
+
+    private @Nullable Entry readFromDisk(String key) {
+        var path = pathFor(key);
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+        try (var ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return (Entry) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.out.println("Error reading cached teams for " + key);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        var path = pathFor(key);
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheDirectory);
+            // Concurrent writers of the same event each use their own temp file, the last move wins
+            var tempPath = Files.createTempFile(cacheDirectory, key, ".tmp");
+            try (var oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                oos.writeObject(entry);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error caching teams for " + key);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The file an event's entry is stored in, or null if the event code isn't safe to use as a file name
+     */
+    private @Nullable Path pathFor(String key) {
+        if (!EVENT_CODE.matcher(key).matches()) {
+            return null;
+        }
+        return cacheDirectory.resolve(key + ".ser");
+    }
+}
@@ -1,70 +1,161 @@
 package com.dacubeking.fantasyfirst;
 
 import com.dacubeking.fantasyfirst.game.Game.Team;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import java.io.BufferedReader;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class GetTeamsAtEvent {
 
+    public static final String TBA_API_URL = "https://www.thebluealliance.com/api/v3";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    // Shared so requests reuse pooled connections (and HTTP/2 streams) to TBA
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
     private final String apiKey;
+    private final String baseUrl;
+
+    /**
+     * The result of a (possibly conditional) request for an event's teams
+     *
+     * @param notModified  True if the server answered 304, in which case teamNumbers is empty
+     * @param teamNumbers  The team numbers at the event
+     * @param etag         The {@code ETag} header of the response, if any
+     * @param lastModified The {@code Last-Modified} header of the response, if any
+     */
+    public record EventTeams(boolean notModified, List<String> teamNumbers, @Nullable String etag,
+                             @Nullable String lastModified) {
+    }
 
     public GetTeamsAtEvent(String apiKey) {
+        this(apiKey, TBA_API_URL);
+    }
+
+    /**
+     * @param baseUrl The root of the TBA API, e.g. a local server standing in for TBA
+     */
+    public GetTeamsAtEvent(String apiKey, String baseUrl) {
         this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
     }
 
+    /**
+     * Get the teams at an event, blocking until TBA responds
+     */
     public List<Team> getTeamsAtEvent(String eventCode) throws IOException {
-        List<Team> teamNumbers = new ArrayList<>();
-
         try {
-            // Create the URL for the API request
-            String apiUrl = "https://www.thebluealliance.com/api/v3/event/" + eventCode + "/teams/simple";
-            URL url = new URL(apiUrl);
-
-            // Open a connection to the URL
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("User-Agent", "Java TBA Teams Fetcher");
-            connection.setRequestProperty("X-TBA-Auth-Key", apiKey);
-
-            // Get the response code
-            int responseCode = connection.getResponseCode();
-
-            // Check if the request was successful (HTTP status 200)
-            if (responseCode == 200) {
-                // Read the response from the API
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                String line;
-                StringBuilder response = new StringBuilder();
-
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                // Parse the JSON response using Gson
-                JsonArray jsonArray = JsonParser.parseString(response.toString()).getAsJsonArray();
-                for (int i = 0; i < jsonArray.size(); i++) {
-                    JsonObject jsonObject = jsonArray.get(i).getAsJsonObject();
-                    String teamNumber = jsonObject.get("team_number").getAsString();
-                    teamNumbers.add(new Team(teamNumber));
-                }
-            } else {
-                System.err.println("Error: Unable to retrieve teams. HTTP Response Code: " + responseCode);
+            var teams = new ArrayList<Team>();
+            fetchTeamsAtEvent(eventCode, null, null).join().teamNumbers()
+                    .forEach(teamNumber -> teams.add(new Team(teamNumber)));
+            return teams;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
             throw e;
         }
+    }
+
+    /**
+     * Request the teams at an event without blocking. When a validator from an earlier response is passed the request is
+     * conditional and TBA answers with a 304 if the team list hasn't changed since.
+     *
+     * @param etag         The {@code ETag} of the cached response, or null
+     * @param lastModified The {@code Last-Modified} of the cached response, or null
+     * @return The teams, or an empty list if TBA answered with an error. Completes exceptionally on network errors,
+     * timeouts, malformed responses and requests that can't be built, e.g. without an API key.
+     */
+    public CompletableFuture<EventTeams> fetchTeamsAtEvent(String eventCode, @Nullable String etag,
+                                                           @Nullable String lastModified) {
+        HttpRequest.Builder request;
+        try {
+            // Encoded so user input can't change the path, URLEncoder is meant for forms and uses + for spaces
+            var encodedEventCode = URLEncoder.encode(eventCode, StandardCharsets.UTF_8).replace("+", "%20");
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/event/" + encodedEventCode + "/teams/simple"))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("User-Agent", "Java TBA Teams Fetcher")
+                    .header("X-TBA-Auth-Key", Objects.requireNonNull(apiKey, "No TBA API key"));
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        return teamNumbers;
+        return httpClient.sendAsync(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    var responseEtag = response.headers().firstValue("ETag").orElse(null);
+                    var responseLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+
+                    try (var body = response.body()) {
+                        if (response.statusCode() == 304) {
+                            return new EventTeams(true, List.of(), responseEtag, responseLastModified);
+                        }
+                        if (response.statusCode() != 200) {
+                            System.err.println("Error: Unable to retrieve teams. HTTP Response Code: "
+                                    + response.statusCode());
+                            return new EventTeams(false, List.of(), null, null);
+                        }
+
+                        var teamNumbers = new ArrayList<String>();
+                        readTeamNumbers(body, teamNumbers::add);
+                        return new EventTeams(false, teamNumbers, responseEtag, responseLastModified);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Stream the {@code team_number} of every team in a {@code /teams/simple} response, without building the whole
+     * document in memory
+     */
+    static void readTeamNumbers(InputStream body, Consumer<String> teamNumbers) throws IOException {
+        var reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String teamNumber = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("team_number") && reader.peek() != JsonToken.NULL) {
+                    teamNumber = reader.nextString(); // Numbers are read as their string form
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (teamNumber != null) {
+                teamNumbers.accept(teamNumber);
+            }
+        }
+        reader.endArray();
     }
 
     public static void main(String[] args) throws IOException {
@@ -3,12 +3,39 @@ package com.dacubeking.fantasyfirst;
 import com.dacubeking.fantasyfirst.game.Game;
 import com.dacubeking.fantasyfirst.game.Game.Player;
 import com.dacubeking.fantasyfirst.game.Game.Team;
+import com.dacubeking.fantasyfirst.game.GameLocks;
+import com.dacubeking.fantasyfirst.game.GameRandom;
+import com.dacubeking.fantasyfirst.game.GameRegistry;
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import com.dacubeking.fantasyfirst.game.TeamPool;
+import com.dacubeking.fantasyfirst.metrics.HandlerMetrics;
+import com.dacubeking.fantasyfirst.metrics.Metrics;
+import com.dacubeking.fantasyfirst.metrics.SlackCallMetrics;
+import com.dacubeking.fantasyfirst.persistence.GameJournal;
+import com.dacubeking.fantasyfirst.persistence.GameMutation;
+import com.dacubeking.fantasyfirst.persistence.GameMutation.*;
+import com.dacubeking.fantasyfirst.persistence.GameStore;
+import com.dacubeking.fantasyfirst.server.SlackServer;
+import com.dacubeking.fantasyfirst.server.TrafficCapture;
+import com.dacubeking.fantasyfirst.server.VirtualThreads;
+import com.dacubeking.fantasyfirst.slack.SlackClients;
+import com.dacubeking.fantasyfirst.slack.SlackOutbox;
+import com.dacubeking.fantasyfirst.slack.SlackOutbox.Priority;
+import com.dacubeking.fantasyfirst.slack.SlackRateLimiter;
+import com.dacubeking.fantasyfirst.slack.UserDirectory;
+import com.dacubeking.fantasyfirst.slack.UserProfileCache;
+import com.dacubeking.fantasyfirst.tracing.SlackCallTracing;
+import com.dacubeking.fantasyfirst.tracing.SpanExporter;
+import com.dacubeking.fantasyfirst.tracing.SpanRecorder;
+import com.dacubeking.fantasyfirst.tracing.Tracer;
+import com.dacubeking.fantasyfirst.tracing.TracingMiddleware;
 import com.slack.api.app_backend.views.response.ViewSubmissionResponse;
 import com.slack.api.bolt.App;
 import com.slack.api.bolt.AppConfig;
+import com.slack.api.bolt.context.Context;
 import com.slack.api.bolt.context.builtin.ActionContext;
 import com.slack.api.bolt.context.builtin.EventContext;
-import com.slack.api.bolt.jetty.SlackAppServer;
+import com.slack.api.bolt.context.builtin.SlashCommandContext;
 import com.slack.api.bolt.request.builtin.BlockActionRequest;
 import com.slack.api.bolt.response.Response;
 import com.slack.api.bolt.service.InstallationService;
@@ -20,13 +47,24 @@ import com.slack.api.model.block.LayoutBlock;
 import com.slack.api.model.block.composition.PlainTextObject;
 import com.slack.api.model.block.element.ButtonElement;
 import com.slack.api.model.event.AppHomeOpenedEvent;
+import com.slack.api.model.event.TeamJoinEvent;
+import com.slack.api.model.event.UserChangeEvent;
 import com.slack.api.model.view.View;
 import com.slack.api.model.view.ViewState.Value;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
@@ -42,6 +80,12 @@ public class Main {
 
     public static final String ADMIN_USER_ID = "U05L2LK6GCX";
 
+    public static final String SAVE_FILE = "games.ser"; // Only read to migrate it into the game store
+    public static final String GAMES_DIRECTORY = "games";
+    public static final String JOURNAL_FILE = "games.journal";
+    public static final String TBA_CACHE_DIRECTORY = "tba-cache";
+    private static final Duration OUTBOX_SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
     static {
         createEventButton.setText(new PlainTextObject("Create Event", true));
         createEventButton.setActionId("createEventButton");
@@ -56,33 +100,72 @@ public class Main {
 
     public static final ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>(); // <workspaceId, <gameId, game>>
 
+    private static final GameStore gameStore = new GameStore(Path.of(GAMES_DIRECTORY),
+            Duration.ofMillis(Long.parseLong(Objects.requireNonNullElse(System.getenv("SAVE_DEBOUNCE_MS"), "2000"))),
+            games);
+
+    private static final GameRegistry registry = new GameRegistry(games, gameStore);
+
     static final Logger logger = LoggerFactory.getLogger(Main.class);
 
+    private static final GameJournal journal = new GameJournal(Path.of(JOURNAL_FILE), Duration.ofMillis(50),
+            Duration.ofMinutes(10), 4 * 1024 * 1024);
+
+    private static final SlackRateLimiter rateLimiter = new SlackRateLimiter();
+
+    private static final SlackOutbox outbox = new SlackOutbox(
+            Integer.parseInt(Objects.requireNonNullElse(System.getenv("SLACK_OUTBOX_THREADS"), "4")), rateLimiter);
+
+    private static final UserProfileCache userProfiles = new UserProfileCache(10_000, Duration.ofHours(6),
+            Duration.ofMinutes(5));
+
+    private static final UserDirectory userDirectory = new UserDirectory(rateLimiter, Duration.ofHours(12));
+
+    static {
+        Metrics.gauge("fantasyfirst_games", "Loaded games by draft state", "state", Main::countGamesByState);
+        Metrics.gauge("fantasyfirst_stored_games", "Games in the game store, loaded or not", gameStore::size);
+        Metrics.gauge("fantasyfirst_players", "Players across loaded games", () -> games.values().stream()
+                .flatMap(workspaceGames -> workspaceGames.values().stream())
+                .mapToInt(game -> game.getPlayers().size())
+                .sum());
+        Metrics.gauge("fantasyfirst_slack_outbox_jobs", "Slack outbox jobs that haven't finished",
+                outbox::getQueueDepth);
+        Metrics.gauge("fantasyfirst_slack_outbox_ready_jobs", "Slack outbox jobs waiting for a free worker",
+                outbox::getReadyJobs);
+        Metrics.gauge("fantasyfirst_slack_rate_limited_calls", "Slack calls blocked waiting on a rate limit",
+                outbox::getRateLimitedCalls);
+    }
+
 
     public static void main(String[] args) throws Exception {
-        try (FileInputStream fis = new FileInputStream("games.ser")) {
-            ObjectInputStream ois = new ObjectInputStream(fis);
-            Object object = ois.readObject();
-            var gamesRead = (ConcurrentMap<String, ConcurrentMap<UUID, Game>>) object;
-            games.putAll(gamesRead);
-        } catch (FileNotFoundException e) {
-            System.out.println("No save file found");
-            e.printStackTrace();
-        } catch (ClassNotFoundException | ClassCastException e) {
-            System.out.println("Save file is corrupted");
-            throw new RuntimeException(e);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        var traceFile = System.getenv("TRACE_FILE");
+        if (traceFile != null) {
+            startTracing(Path.of(traceFile));
         }
 
-        GetTeamsAtEvent getTeams = new GetTeamsAtEvent(System.getenv("TBA_API_KEY"));
+        loadState();
+
+        EventTeamCache eventTeams = new EventTeamCache(
+                new GetTeamsAtEvent(System.getenv("TBA_API_KEY"),
+                        Objects.requireNonNullElse(System.getenv("TBA_API_URL"), GetTeamsAtEvent.TBA_API_URL)),
+                Path.of(TBA_CACHE_DIRECTORY), Duration.ofMinutes(15), Duration.ofDays(7));
 
         var appConfig = new AppConfig();
+
+        boolean virtualThreads = Boolean.parseBoolean(System.getenv("SLACK_VIRTUAL_THREADS"));
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            System.out.println("SLACK_VIRTUAL_THREADS is set but virtual threads need Java 21 or newer, running on "
+                    + Runtime.version() + ". Using platform threads.");
+            virtualThreads = false;
+        }
+        if (virtualThreads) {
+            appConfig.setExecutorServiceProvider(VirtualThreads.executorServiceProvider());
+        }
 //        new File(DATA_DIR).mkdirs();
 //        InstallationService installationService = new FileInstallationService(appConfig, DATA_DIR);
 //        installationService.setHistoricalDataEnabled(true);
 
-        var app = new App(appConfig);
+        var app = createApp(appConfig, eventTeams);
 //        app.service(installationService);
 
 //        App oauthApp = new App(AppConfig.builder()
@@ -102,21 +185,147 @@ public class Main {
 //                "/slack/oauth", oauthApp // GET  /slack/oauth/start, /slack/oauth/callback (user access)
 //        )));
 
-        SlackAppServer server = new SlackAppServer(app);
+        var captureDirectory = System.getenv("SLACK_CAPTURE_DIR");
+        var capture = captureDirectory == null ? null : startCapture(Path.of(captureDirectory));
+
+        SlackServer server = new SlackServer(app, SlackServer.DEFAULT_PORT, virtualThreads, capture);
+        server.serveMetrics(System.getenv("METRICS_TOKEN"));
+
+        server.start();
+    }
+
+    /**
+     * Open the game store and replay the journal into the games it changed, then start journaling. Games are otherwise
+     * only loaded once they're used. Paths are relative to the working directory.
+     */
+    public static void loadState() throws IOException {
+        gameStore.open(Path.of(SAVE_FILE));
+
+        System.out.println("Replayed " + journal.replay((mutation, sequence) -> {
+            registry.get(mutation.workspaceId(), mutation.gameId());
+            if (mutation.apply(games, sequence)) {
+                // The journal is dropped at the next compaction, so the game has to be written by then
+                gameStore.changed(mutation);
+            }
+        }) + " journaled changes");
+        registry.rebuildIndexes();
+        journal.start(gameStore::writeNow, gameStore::changed, gameStore.getJournalSequence());
+        // Finished drafts and abandoned games are only looked at from App Home or /debug, so they don't need to stay loaded
+        gameStore.startEviction(registry,
+                Duration.ofMinutes(Long.parseLong(
+                        Objects.requireNonNullElse(System.getenv("EVICT_FINISHED_AFTER_MINUTES"), "60"))),
+                Duration.ofMinutes(Long.parseLong(
+                        Objects.requireNonNullElse(System.getenv("EVICT_UNSTARTED_AFTER_MINUTES"), "10080"))));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // Queued posts record their message ts in their game, so they go out before the games are written
+            try {
+                if (!outbox.drain(OUTBOX_SHUTDOWN_TIMEOUT)) {
+                    System.out.println("Shutting down with " + outbox.getQueueDepth() + " Slack outbox jobs unsent");
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            journal.compact();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            gameStore.flush();
+        }, "persistence-shutdown"));
+    }
+
+    /**
+     * Start capturing incoming traffic for a later replay. Game randomness is seeded and the current games are saved next
+     * to the capture, so a replay starts from the same state and creates the same game ids and draft orders.
+     *
+     * @param captureDirectory Where to write the capture and the games it starts from
+     */
+    private static TrafficCapture startCapture(Path captureDirectory) throws IOException {
+        Files.createDirectories(captureDirectory);
+        var name = "capture-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").format(LocalDateTime.now());
+        long seed = new SecureRandom().nextLong();
+        GameRandom.seed(seed);
+
+        gameStore.copyTo(captureDirectory.resolve(name + ".games"));
+
+        var capture = new TrafficCapture(captureDirectory.resolve(name + ".ffcap"), seed);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "traffic-capture-shutdown"));
+        System.out.println("Capturing traffic to " + captureDirectory.resolve(name + ".ffcap"));
+        return capture;
+    }
+
+    /**
+     * Trace every interaction and export the spans to a file, see {@link SpanExporter} for the format. The file is
+     * rotated at 64 MB.
+     *
+     * @param traceFile The file to append spans to
+     */
+    public static void startTracing(Path traceFile) throws IOException {
+        var recorder = new SpanRecorder(Integer.parseInt(
+                Objects.requireNonNullElse(System.getenv("TRACE_BUFFER_SPANS"), "16384")));
+        var exporter = new SpanExporter(recorder, traceFile, 64 * 1024 * 1024);
+        Tracer.enable(recorder);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                exporter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "tracing-shutdown"));
+        System.out.println("Writing traces to " + traceFile);
+    }
+
+    /**
+     * Create the Bolt app with all the bot's listeners
+     *
+     * @param appConfig  The app's config, e.g. pointing the Slack client at another API endpoint
+     * @param eventTeams Where to look up the teams at TBA events
+     */
+    public static App createApp(AppConfig appConfig, EventTeamCache eventTeams) {
+        appConfig.setSlack(SlackClients.withInterceptors(appConfig.getSlack(), new SlackCallTracing(),
+                new SlackCallMetrics()));
+        var app = new App(appConfig);
+        app.use(new HandlerMetrics());
+        app.use(new TracingMiddleware());
+
+        app.event(UserChangeEvent.class, (payload, ctx) -> {
+            userDirectory.update(ctx.getTeamId(), payload.getEvent().getUser());
+            userProfiles.invalidate(ctx.getTeamId(), payload.getEvent().getUser().getId());
+            return ctx.ack();
+        });
+
+        app.event(TeamJoinEvent.class, (payload, ctx) -> {
+            userDirectory.update(ctx.getTeamId(), payload.getEvent().getUser());
+            return ctx.ack();
+        });
 
         app.event(AppHomeOpenedEvent.class, (payload, ctx) -> {
-            var myGames = games.get(ctx.getTeamId()).values().stream()
-                    .filter(game -> game.getGameOwnerSlackId().equals(payload.getEvent().getUser())).collect(Collectors.toList());
+            userDirectory.ensureSynced(ctx.getTeamId(), ctx.client());
+            var myGames = registry.getGamesOwnedBy(ctx.getTeamId(), payload.getEvent().getUser());
 
             var gamesText = myGames.stream().map(
                             game -> {
                                 var list = new ArrayList<String>();
-                                list.add("*%s* (%s) (%s)\n%s"
-                                        .formatted(game.getGameName(), game.getGameUuid().toString(),
-                                                game.getLastMessagesTs() != null && !game.getLastMessagesTs().isEmpty() ?
-                                                        getMessageLink(ctx, game.getChannelId(), game.getLastMessagesTs().get(0))
-                                                        : "no message link",
-                                                game.getMarkdownTable()));
+                                var lock = GameLocks.lockFor(game.getGameUuid());
+                                lock.lock();
+                                try {
+                                    list.add("*%s* (%s) (%s)\n%s"
+                                            .formatted(game.getGameName(), game.getGameUuid().toString(),
+                                                    game.getLastMessagesTs() != null && !game.getLastMessagesTs().isEmpty() ?
+                                                            getMessageLink(ctx, game.getChannelId(), game.getLastMessagesTs().get(0))
+                                                            : "no message link",
+                                                    game.getMarkdownTable()));
+                                } finally {
+                                    lock.unlock();
+                                }
                                 return list;
                             })
                     .flatMap(Collection::stream)
@@ -134,12 +343,12 @@ public class Main {
                     )
             );
 
-            var res = ctx.client().viewsPublish(r -> r
-                    .userId(payload.getEvent().getUser())
-                    .view(appHomeView)
-            );
-
-            print(res);
+            // App Home isn't tied to a channel, so queue it behind other updates for the same user
+            outbox.enqueue(ctx.getTeamId(), payload.getEvent().getUser(), Priority.LOW, ctx.client(),
+                    sender -> print(sender.call("views.publish", client -> client.viewsPublish(r -> r
+                            .userId(payload.getEvent().getUser())
+                            .view(appHomeView)
+                    ))));
 
             return ctx.ack();
         });
@@ -163,141 +372,165 @@ public class Main {
                     .orElseThrow().getValue());
             String gameName = extractValueByElementName(values, "event_name").orElseThrow().getValue();
 
-            List<Team> teams;
+            CompletableFuture<TeamCatalog> teams;
 
             if (teamListValue.contains(",")) {
 
-                teams = new ArrayList<>();
+                var teamList = new ArrayList<Team>();
                 for (String team : teamListValue.split(",")) {
                     var teamNum = team.trim();
-                    if (teamNum.isEmpty() || !Pattern.matches("\\d+", teamNum) || teams.stream().anyMatch(
+                    if (teamNum.isEmpty() || !Pattern.matches("\\d+", teamNum) || teamList.stream().anyMatch(
                             t -> t.number().equals(teamNum))) {
                         continue;
                     }
-                    teams.add(new Team(teamNum));
+                    teamList.add(new Team(teamNum));
                 }
+                teams = CompletableFuture.completedFuture(TeamCatalog.of(teamList));
             } else {
-                teams = getTeams.getTeamsAtEvent(teamListValue);
+                // Don't hold the handler thread while TBA responds, the game is created once the teams arrive
+                teams = eventTeams.getTeamsAtEvent(teamListValue);
             }
 
-            var game = new Game(selectedChannel, teamsPerAllianceValue, teams, ctx.getRequestUserId(), gameName, targetPlayerCountPerGame);
-            games.putIfAbsent(ctx.getTeamId(), new ConcurrentHashMap<>());
-            games.get(ctx.getTeamId()).put(game.getGameUuid(), game);
-
-            System.out.println(game);
-
-            game.setLastMessagesTs(List.of(ctx.client().chatPostMessage(r -> r
-                    .channel(selectedChannel)
-                    .blocks(game.getGameRegistrationMessage())).getTs()));
-
-            save();
+            teams.thenAccept(teamCatalog -> {
+                var game = new Game(selectedChannel, teamsPerAllianceValue, new TeamPool(teamCatalog),
+                        ctx.getRequestUserId(), gameName, targetPlayerCountPerGame);
+                try {
+                    GameLocks.withLock(game.getGameUuid(), () -> {
+                        registry.put(ctx.getTeamId(), game);
+
+                        System.out.println(game);
+
+                        journal(new GameUpserted(ctx.getTeamId(), game));
+                        postMessages(ctx.getTeamId(), game, ctx.client(), List.of(game.getGameRegistrationMessage()),
+                                Priority.NORMAL, true);
+                        return null;
+                    });
+                } catch (IOException | SlackApiException e) {
+                    throw new CompletionException(e);
+                }
+            }).exceptionally(e -> {
+                System.out.println("Error creating game " + gameName);
+                e.printStackTrace();
+                // The modal is already closed, so tell the submitter in a DM from the app
+                var userId = ctx.getRequestUserId();
+                outbox.enqueue(ctx.getTeamId(), userId, Priority.NORMAL, ctx.client(),
+                        sender -> print(sender.call("chat.postMessage", client -> client.chatPostMessage(r -> r
+                                .channel(userId)
+                                .text("Something went wrong creating " + gameName + ", please try again")
+                        ))));
+                return null;
+            });
             System.out.printf("teamList: %s selectedChannel: %s teamsPerAlliance: %d%n", teamListValue, selectedChannel,
                     teamsPerAllianceValue);
             return ctx.ack();
         });
 
         app.blockAction("joinGame", (request, ctx) -> {
-            Game game;
-            try {
-                game = games.get(ctx.getTeamId()).get(UUID.fromString(request.getPayload().getActions().get(0).getValue()));
-            } catch (NullPointerException e) {
+            var game = findGame(ctx.getTeamId(), request.getPayload().getActions().get(0).getValue());
+            if (game == null) {
                 return Response.ok(ctx.respond("Could not find your game"));
             }
 
 
-            MethodsClient methods = ctx.client();
             var userId = request.getPayload().getUser().getId();
             System.out.println(userId);
-            var realName = methods.usersInfo(r -> r.user(userId)).getUser().getProfile().getRealName();
-            if (realName == null || realName.isEmpty()) {
-                realName = request.getPayload().getUser().getName();
-            }
+            var realName = getDisplayName(ctx, userId, request.getPayload().getUser().getName());
 
-            if (game.isFull()) {
-                return Response.ok(ctx.respond("This game is full"));
-            }
-            if (game.getPlayers().stream().anyMatch(player -> player.slackId().equals(userId))) {
-                return Response.ok(ctx.respond("You are already in this game"));
-            }
+            return GameLocks.withLock(game.getGameUuid(), () -> {
+                if (game.isFull()) {
+                    return Response.ok(ctx.respond("This game is full"));
+                }
+                if (game.getPlayers().stream().anyMatch(player -> player.slackId().equals(userId))) {
+                    return Response.ok(ctx.respond("You are already in this game"));
+                }
 
-            game.addPlayer(new Player(userId, realName));
-            save();
-            postLeaveJoinMessage(game, ctx, request);
-            return ctx.ack();
+                game.addPlayer(new Player(userId, realName));
+                registry.reindex(ctx.getTeamId(), game);
+                journal(new PlayerAdded(ctx.getTeamId(), game.getGameUuid(), userId, realName));
+                postLeaveJoinMessage(game, ctx, request);
+                return ctx.ack();
+            });
         });
 
         app.blockAction("leaveGame", (request, ctx) -> {
-            Game game;
-            try {
-                game = games.get(ctx.getTeamId()).get(UUID.fromString(request.getPayload().getActions().get(0).getValue()));
-            } catch (NullPointerException e) {
+            var game = findGame(ctx.getTeamId(), request.getPayload().getActions().get(0).getValue());
+            if (game == null) {
                 return Response.ok(ctx.respond("Could not find your game"));
             }
 
-            var userId = request.getPayload().getUser().getId();
-            game.removePlayer(userId);
+            return GameLocks.withLock(game.getGameUuid(), () -> {
+                var userId = request.getPayload().getUser().getId();
+                game.removePlayer(userId);
+                registry.reindex(ctx.getTeamId(), game);
+                journal(new PlayerRemoved(ctx.getTeamId(), game.getGameUuid(), userId));
 
-            postLeaveJoinMessage(game, ctx, request);
-            save();
+                postLeaveJoinMessage(game, ctx, request);
 
-            return ctx.ack();
+                return ctx.ack();
+            });
         });
 
         app.blockAction("startGame", (request, ctx) -> {
-            Game game;
-            try {
-                game = games.get(ctx.getTeamId()).get(UUID.fromString(request.getPayload().getActions().get(0).getValue()));
-            } catch (NullPointerException e) {
+            var game = findGame(ctx.getTeamId(), request.getPayload().getActions().get(0).getValue());
+            if (game == null) {
                 return Response.ok(ctx.respond("Could not find your game"));
             }
 
-            var userId = request.getPayload().getUser().getId();
-            if (!game.getGameOwnerSlackId().equals(userId) && !userId.equals(ADMIN_USER_ID)) {
-                return Response.ok(ctx.respond("You don't have permission to start this game"));
-            }
-
-            if (game.getPlayers().isEmpty()) {
-                return Response.ok(ctx.respond("You need a player to start a game"));
-            }
+            // The games split off this one are started under their own locks after releasing this game's, and the
+            // Slack calls run after releasing it too, so we never hold two games' locks or wait on Slack with one
+            GameLocks.LockedAction<Response> reply = GameLocks.withLock(game.getGameUuid(), () -> {
+                var userId = request.getPayload().getUser().getId();
+                if (!game.getGameOwnerSlackId().equals(userId) && !userId.equals(ADMIN_USER_ID)) {
+                    return () -> Response.ok(ctx.respond("You don't have permission to start this game"));
+                }
 
-            if (game.hasStarted()) {
-                return Response.ok(ctx.respond("This game has already started"));
-            } else {
-                var splitPlayers = game.splitPlayers();
+                if (game.getPlayers().isEmpty()) {
+                    return () -> Response.ok(ctx.respond("You need a player to start a game"));
+                }
 
-                game.getPlayers().clear();
-                game.getPlayers().addAll(splitPlayers.get(0));
-                List<Game> gamesFromThisGame = new ArrayList<>();
-                gamesFromThisGame.add(game);
+                if (game.hasStarted()) {
+                    return () -> Response.ok(ctx.respond("This game has already started"));
+                }
 
+                var splitPlayers = game.splitPlayers();
+                game.setPlayers(splitPlayers.get(0));
 
+                List<Game> splitGames = new ArrayList<>();
                 for (int i = 1; i < splitPlayers.size(); i++) {
-                    var newGame = new Game(game.getChannelId(), game.getTeamsPerAlliance(), game.getTeams(),
-                            game.getGameOwnerSlackId(), game.getGameName() + " " + (i + 1));
-                    newGame.getPlayers().addAll(splitPlayers.get(i));
-                    gamesFromThisGame.add(newGame);
-                    games.get(ctx.getTeamId()).put(newGame.getGameUuid(), newGame);
+                    var newGame = new Game(game.getChannelId(), game.getTeamsPerAlliance(), game.copyTeamPool(),
+                            game.getGameOwnerSlackId(), game.getGameName() + " " + (i + 1), 0);
+                    newGame.setPlayers(splitPlayers.get(i));
+                    newGame.setPickNotifications(game.hasPickNotifications());
+                    splitGames.add(newGame);
+                    registry.put(ctx.getTeamId(), newGame);
                 }
 
+                registry.reindex(ctx.getTeamId(), game);
+
                 if (splitPlayers.size() > 1) {
                     game.setGameName(game.getGameName() + " 1");
+                    journal(new GameRenamed(ctx.getTeamId(), game.getGameUuid(), game.getGameName()));
                 }
 
-
-                for (Game gameFromThisGame : gamesFromThisGame) {
-                    gameFromThisGame.start();
-                    var messageTs = new ArrayList<String>();
-                    for (List<LayoutBlock> layoutBlocks : gameFromThisGame.getDraftingMessage()) {
-                        messageTs.add(ctx.client().chatPostMessage(r -> r
-                                .channel(gameFromThisGame.getChannelId())
-                                .blocks(layoutBlocks)).getTs());
+                game.start();
+                journal(new GameStarted(ctx.getTeamId(), game.getGameUuid(),
+                        game.getPlayers().stream().map(Player::slackId).collect(Collectors.toList())));
+                postMessages(ctx.getTeamId(), game, ctx.client(), game.getDraftingMessage(), Priority.HIGH, true);
+
+                return () -> {
+                    for (Game splitGame : splitGames) {
+                        GameLocks.withLock(splitGame.getGameUuid(), () -> {
+                            splitGame.start();
+                            journal(new GameUpserted(ctx.getTeamId(), splitGame));
+                            postMessages(ctx.getTeamId(), splitGame, ctx.client(), splitGame.getDraftingMessage(),
+                                    Priority.HIGH, true);
+                            return null;
+                        });
                     }
-                    gameFromThisGame.setLastMessagesTs(messageTs);
-                }
-            }
-            save();
-
-            return ctx.ack();
+                    return ctx.ack();
+                };
+            });
+            return reply.run();
         });
 
         app.blockAction(Pattern.compile("^pickTeam.*$"), (request, ctx) -> {
@@ -305,45 +538,40 @@ public class Main {
                 String uuids = request.getPayload().getActions().get(0).getValue();
                 String[] uuidsArray = uuids.split(",");
 
-                Game game;
-                try {
-                    var teamId = ctx.getTeamId();
-                    var gameId = UUID.fromString(uuidsArray[0]);
-                    game = games.get(teamId).get(gameId);
-                } catch (NullPointerException e) {
+                var game = findGame(ctx.getTeamId(), uuidsArray[0]);
+                if (game == null) {
                     return Response.ok(ctx.respond("Could not find your game"));
                 }
 
-                var turnCount = uuidsArray[2];
-
-                if (game.getTurnCount() != Long.parseLong(turnCount)) {
-                    return Response.ok(ctx.respond("This picklist is out of date, scroll down to see the current pick!"));
-                }
-
-                if (!game.hasStarted()) {
-                    return Response.ok(ctx.respond("The game has not started"));
-                }
+                return GameLocks.withLock(game.getGameUuid(), () -> {
+                    var turnCount = uuidsArray[2];
 
-                var userId = request.getPayload().getUser().getId();
-                var nextPlayerInDraft = game.getNextPlayerInDraft();
-                if (nextPlayerInDraft != null && nextPlayerInDraft.slackId().equals(userId)) {
-                    System.out.println(request.getPayload());
-                    var teamUuid = UUID.fromString(uuidsArray[1]);
-                    if (!game.pickTeam(teamUuid)) {
-                        return Response.ok(ctx.respond("This team is not available"));
+                    if (game.getTurnCount() != Long.parseLong(turnCount)) {
+                        return Response.ok(ctx.respond("This picklist is out of date, scroll down to see the current pick!"));
                     }
-                    for (List<LayoutBlock> layoutBlocks : game.getDraftingMessage()) {
-                        print(ctx.client().chatPostMessage(r -> r
-                                .channel(game.getChannelId())
-                                .blocks(layoutBlocks)));
+
+                    if (!game.hasStarted()) {
+                        return Response.ok(ctx.respond("The game has not started"));
                     }
-                } else {
-                    return Response.ok(ctx.respond("It is not your turn to pick"));
-                }
 
-                save();
+                    var userId = request.getPayload().getUser().getId();
+                    var nextPlayerInDraft = game.getNextPlayerInDraft();
+                    if (nextPlayerInDraft != null && nextPlayerInDraft.slackId().equals(userId)) {
+                        System.out.println(request.getPayload());
+                        var teamUuid = UUID.fromString(uuidsArray[1]);
+                        var team = game.getAvailableTeam(teamUuid);
+                        if (team.isEmpty() || !game.pickTeam(teamUuid)) {
+                            return Response.ok(ctx.respond("This team is not available"));
+                        }
+                        journal(new TeamPicked(ctx.getTeamId(), game.getGameUuid(), team.get().number(), userId));
+                        updateDraftBoard(ctx.getTeamId(), game, ctx.client(),
+                                getPickNotification(game, nextPlayerInDraft, team.get()));
+                    } else {
+                        return Response.ok(ctx.respond("It is not your turn to pick"));
+                    }
 
-                return ctx.ack();
+                    return ctx.ack();
+                });
             } catch (Exception e) {
                 e.printStackTrace();
                 return Response.ok(ctx.respond("Something went wrong"));
@@ -354,28 +582,33 @@ public class Main {
             try {
                 var teamId = ctx.getTeamId();
                 var gameId = UUID.fromString(blockActionRequest.getPayload().getActions().get(0).getValue());
-                var game = games.get(teamId).get(gameId);
-                var turnToPick = game.getNextPlayerInDraft();
-
-                var availableTeams = game.getAvailableTeams();
-                if (turnToPick == null) {
-                    return Response.ok(ctx.respond("The draft is over"));
-                }
-
-                if (!turnToPick.slackId().equals(blockActionRequest.getContext().getRequestUserId())) {
-                    return Response.ok(ctx.respond("It is not your turn to pick"));
-                }
-
-                var teamsString = availableTeams.stream().map(Team::number).collect(Collectors.joining(", "));
-
+                var game = registry.get(teamId, gameId);
+                // Only the view is built under the lock, the Slack calls run after releasing it so a slow views.open
+                // doesn't hold up every other click on the game
+                GameLocks.LockedAction<Response> reply = GameLocks.withLock(gameId, () -> {
+                    var turnToPick = game.getNextPlayerInDraft();
+
+                    var availableTeams = game.getAvailableTeams();
+                    if (turnToPick == null) {
+                        return () -> Response.ok(ctx.respond("The draft is over"));
+                    }
 
-                print(ctx.client().viewsOpen(viewsOpenRequestBuilder ->
-                        viewsOpenRequestBuilder.viewAsString(
-                                Screens.PICK_A_TEAM.formatted(Screens.PICK_TEAM_CALLBACK_ID + "," + gameId.toString(),
-                                        "<@" + turnToPick.slackId() + ">",
-                                        teamsString)).triggerId(blockActionRequest.getContext().getTriggerId())));
+                    if (!turnToPick.slackId().equals(blockActionRequest.getContext().getRequestUserId())) {
+                        return () -> Response.ok(ctx.respond("It is not your turn to pick"));
+                    }
 
-                return ctx.ack();
+                    var teamsString = availableTeams.stream().map(Team::number).collect(Collectors.joining(", "));
+                    var pickView = Screens.buildPickATeamView(Screens.PICK_TEAM_CALLBACK_ID + "," + gameId.toString(),
+                            turnToPick.slackId(), teamsString);
+
+                    return () -> {
+                        print(ctx.client().viewsOpen(viewsOpenRequestBuilder ->
+                                viewsOpenRequestBuilder.viewAsString(pickView)
+                                        .triggerId(blockActionRequest.getContext().getTriggerId())));
+                        return ctx.ack();
+                    };
+                });
+                return reply.run();
             } catch (Exception e) {
                 e.printStackTrace();
                 return Response.ok(ctx.respond("Something went wrong"));
@@ -389,57 +622,36 @@ public class Main {
                 var teamId = ctx.getTeamId();
 
                 var gameId = UUID.fromString(viewSubmissionRequest.getPayload().getView().getCallbackId().split(",")[1]);
-                var game = games.get(teamId).get(gameId);
+                var game = registry.get(teamId, gameId);
                 var userId = viewSubmissionRequest.getPayload().getUser().getId();
 
-                var teamsString = game.getAvailableTeams().stream().map(Team::number).collect(Collectors.joining(", "));
-
-
-                var nextPlayerInDraft = game.getNextPlayerInDraft();
-                if (nextPlayerInDraft != null && nextPlayerInDraft.slackId().equals(userId)) {
-                    var teamPicked = game.pickTeam(teamPickNumber);
-                    if (teamPicked.isEmpty()) {
-                        return ctx.ack("update", Screens.buildPickATeamErrorView(
-                                Screens.PICK_TEAM_CALLBACK_ID + "," + gameId.toString(),
-                                "<@" + nextPlayerInDraft.slackId() + ">",
-                                teamsString,
-                                "You chose a team that isn't available to pick!"
-                                ));
-                    }
-                    var team = teamPicked.get();
-                    String pickerName = nextPlayerInDraft.name();
-
-                    var messageTs = new ArrayList<String>();
-                    for (List<LayoutBlock> layoutBlocks : game.getDraftingMessage()) {
-                        messageTs.add(ctx.client().chatPostMessage(r -> r
-                                .channel(game.getChannelId())
-                                .blocks(layoutBlocks)).getTs());
-                    }
-
-                    if (game.getLastMessagesTs() != null) {
-                        if (!game.getLastMessagesTs().isEmpty()) {
-                            ctx.client().chatUpdate(r -> r
-                                    .channel(game.getChannelId())
-                                    .ts(game.getLastMessagesTs().get(0))
-                                    .blocks(asBlocks(section(section -> section.text(
-                                            markdownText(game.getGameName() + ": *" + pickerName + "* picked " + team.name()
-                                            )))))
-                            );
-                        }
-
-                        for (int i = 1; i < game.getLastMessagesTs().size(); i++) {
-                            var s = game.getLastMessagesTs().get(i);
-                            ctx.client().chatDelete(r -> r.channel(game.getChannelId()).ts(s));
+                return GameLocks.withLock(gameId, () -> {
+                    var teamsString = game.getAvailableTeams().stream().map(Team::number).collect(Collectors.joining(", "));
+
+
+                    var nextPlayerInDraft = game.getNextPlayerInDraft();
+                    if (nextPlayerInDraft != null && nextPlayerInDraft.slackId().equals(userId)) {
+                        var teamPicked = game.pickTeam(teamPickNumber);
+                        if (teamPicked.isEmpty()) {
+                            return Response.builder()
+                                    .statusCode(200)
+                                    .contentType(Response.CONTENT_TYPE_APPLICATION_JSON_UTF8)
+                                    .body(Screens.buildPickATeamErrorResponse(
+                                            Screens.PICK_TEAM_CALLBACK_ID + "," + gameId.toString(),
+                                            nextPlayerInDraft.slackId(),
+                                            teamsString,
+                                            "You chose a team that isn't available to pick!"
+                                    ))
+                                    .build();
                         }
+                        var team = teamPicked.get();
+                        journal(new TeamPicked(teamId, game.getGameUuid(), team.number(), userId));
+                        updateDraftBoard(teamId, game, ctx.client(), getPickNotification(game, nextPlayerInDraft, team));
+                    } else {
+                        return ctx.ackWithErrors(Map.of(Screens.PICK_TEAM_CALLBACK_ID, "It's not your turn to pick"));
                     }
-
-                    game.setLastMessagesTs(messageTs);
-                } else {
-                    return ctx.ackWithErrors(Map.of(Screens.PICK_TEAM_CALLBACK_ID, "It's not your turn to pick"));
-                }
-
-                save();
-                return ctx.ack();
+                    return ctx.ack();
+                });
             } catch (Exception e) {
                 e.printStackTrace();
                 return ctx.ackWithErrors(Map.of(Screens.PICK_TEAM_CALLBACK_ID, "Something went wrong"));
@@ -455,10 +667,21 @@ public class Main {
                 return ctx.ack("```" + games.toString() + "```");
             }
 
+            if (ctx.getRequestUserId().equalsIgnoreCase(ADMIN_USER_ID) && (dArgs[0].equalsIgnoreCase("userCache"))) {
+                return ctx.ack("User directory size: %d, user cache size: %d, hits: %d, misses: %d".formatted(
+                        userDirectory.size(ctx.getTeamId()), userProfiles.size(), userProfiles.getHits(),
+                        userProfiles.getMisses()));
+            }
+
+            if (ctx.getRequestUserId().equalsIgnoreCase(ADMIN_USER_ID) && (dArgs[0].equalsIgnoreCase("outbox"))) {
+                return ctx.ack("Outbox queue depth: %d, ready: %d, rate limited calls: %d".formatted(
+                        outbox.getQueueDepth(), outbox.getReadyJobs(), outbox.getRateLimitedCalls()));
+            }
+
 
             UUID gameUUID = UUID.fromString(dArgs[0]);
             System.out.println(gameUUID);
-            Game game = games.get(ctx.getTeamId()).get(gameUUID);
+            Game game = registry.get(ctx.getTeamId(), gameUUID);
             if (game == null) {
                 return ctx.ack("Game not found");
             }
@@ -468,134 +691,179 @@ public class Main {
                 return ctx.ack("You are not the owner of this game");
             }
 
-            dArgs = Arrays.copyOfRange(dArgs, 1, dArgs.length);
-
-            if (dArgs[0].equalsIgnoreCase("p")) {
-                return ctx.ack("```" + game + "```");
-            }
-
-            if (dArgs[0].equalsIgnoreCase("set")) {
-                if (dArgs[1].equalsIgnoreCase("targetPlayerCount")){
-                    game.setTargetPlayerCount(Integer.parseInt(dArgs[2]));
-                    return ctx.ack("```" + game + "```");
-
-                }
-                if (dArgs[1].equalsIgnoreCase("allianceSize")){
-                    game.setAllianceSize(Integer.parseInt(dArgs[2]));
-                    return ctx.ack("```" + game + "```");
+            var subArgs = Arrays.copyOfRange(dArgs, 1, dArgs.length);
+            // Names are looked up before taking the game's lock, like joining does, so Slack calls don't hold it
+            var displayNames = new HashMap<String, String>();
+            if (subArgs.length > 0 && subArgs[0].equalsIgnoreCase("addPlayer")) {
+                for (int i = 1; i < subArgs.length; i++) {
+                    String playerSlackId = Utils.getSlackIdFromMention(subArgs[i]);
+                    displayNames.put(playerSlackId, getDisplayName(ctx, playerSlackId, playerSlackId));
                 }
             }
+            return GameLocks.withLock(gameUUID, () -> runDebugCommand(ctx, game, gameUUID, subArgs, displayNames));
+        });
 
-            if (dArgs[0].equalsIgnoreCase("pPlayers")) {
-                return ctx.ack("```" + game.getPlayers().toString() + "```");
-            }
+//        oauthApp.endpoint("GET", "/slack/oauth/completion", (req, ctx) -> {
+//            logger.info("completion: {}", req.getRequestBodyAsString());
+//            return Response.builder()
+//                    .statusCode(200)
+//                    .contentType("text/html")
+//                    .body(req.getRequestBodyAsString())
+//                    .build();
+//        });
+//
+//        oauthApp.endpoint("GET", "/slack/oauth/cancellation", (req, ctx) -> {
+//            logger.info("cancellation: {}", req.getRequestBodyAsString());
+//            return Response.builder()
+//                    .statusCode(200)
+//                    .contentType("text/html")
+//                    .body(req.getRequestBodyAsString())
+//                    .build();
+//        });
 
-            if (dArgs[0].equalsIgnoreCase("pTeams")) {
-                return ctx.ack("```" + game.getTeams().toString() + "```");
-            }
+        return app;
+    }
 
-            if (dArgs[0].equalsIgnoreCase("addPlayer")) {
 
-                ArrayList<Player> playersAdded = new ArrayList<>();
-                for (int i = 1; i < dArgs.length; i++) {
-                    String playerSlackId = Utils.getSlackIdFromMention(dArgs[i]);
+    /**
+     * Run a /debug subcommand against a game. Must be called while holding the game's lock.
+     *
+     * @param displayNames The names of the players the subcommand adds, by Slack id
+     */
+    private static Response runDebugCommand(SlashCommandContext ctx, Game game, UUID gameUUID, String[] dArgs,
+                                            Map<String, String> displayNames) throws IOException, SlackApiException {
+        if (dArgs[0].equalsIgnoreCase("p")) {
+            return ctx.ack("```" + game + "```");
+        }
 
-                    var realName = ctx.client().usersInfo(r -> r.user(playerSlackId)).getUser().getProfile().getRealName();
-                    if (realName == null || realName.isEmpty()) {
-                        realName = ctx.client().usersInfo(r -> r.user(playerSlackId)).getUser().getName();
-                    }
-                    if (game.getPlayers().stream().noneMatch(player -> player.slackId().equals(playerSlackId))) {
-                        game.addPlayer(new Player(playerSlackId, realName));
-                        playersAdded.add(new Player(playerSlackId, realName));
-                    }
-                }
+        if (dArgs[0].equalsIgnoreCase("set")) {
+            if (dArgs[1].equalsIgnoreCase("targetPlayerCount")){
+                var targetPlayerCount = Integer.parseInt(dArgs[2]);
+                game.setTargetPlayerCount(targetPlayerCount);
+                journal(new TargetPlayerCountSet(ctx.getTeamId(), gameUUID, targetPlayerCount));
+                return ctx.ack("```" + game + "```");
 
+            }
+            if (dArgs[1].equalsIgnoreCase("pickNotifications")) {
+                var pickNotifications = Boolean.parseBoolean(dArgs[2]);
+                game.setPickNotifications(pickNotifications);
+                journal(new PickNotificationsSet(ctx.getTeamId(), gameUUID, pickNotifications));
+                return ctx.ack("```" + game + "```");
+            }
+            if (dArgs[1].equalsIgnoreCase("allianceSize")){
+                var allianceSize = Integer.parseInt(dArgs[2]);
+                game.setAllianceSize(allianceSize);
+                journal(new AllianceSizeSet(ctx.getTeamId(), gameUUID, allianceSize));
+                return ctx.ack("```" + game + "```");
+            }
+        }
 
-                save();
+        if (dArgs[0].equalsIgnoreCase("pPlayers")) {
+            return ctx.ack("```" + game.getPlayers().toString() + "```");
+        }
 
-                return ctx.ack("Added player : " + playersAdded.toString());
-            }
+        if (dArgs[0].equalsIgnoreCase("pTeams")) {
+            return ctx.ack("```" + game.getTeams().toString() + "```");
+        }
 
-            if (dArgs[0].equalsIgnoreCase("removePlayer")) {
-                String playerSlackId = Utils.getSlackIdFromMention(dArgs[1]);
-                game.removePlayer(playerSlackId);
-                save();
-                return ctx.ack("Removed player : " + playerSlackId);
-            }
+        if (dArgs[0].equalsIgnoreCase("addPlayer")) {
 
-            if (dArgs[0].equalsIgnoreCase("unStartGame")) {
-                game.unStart();
-                save();
-                return ctx.ack("Game unstarted");
-            }
+            ArrayList<Player> playersAdded = new ArrayList<>();
+            for (int i = 1; i < dArgs.length; i++) {
+                String playerSlackId = Utils.getSlackIdFromMention(dArgs[i]);
 
-            if (dArgs[0].equalsIgnoreCase("reprint")) {
-                if (game.hasStarted()) {
-                    var messageTs = new ArrayList<String>();
-                    for (List<LayoutBlock> layoutBlocks : game.getDraftingMessage()) {
-                        messageTs.add(ctx.client().chatPostMessage(r -> r
-                                .channel(game.getChannelId())
-                                .blocks(layoutBlocks)).getTs());
-                    }
-                    game.setLastMessagesTs(messageTs);
-                } else {
-                    game.setLastMessagesTs(List.of(ctx.client().chatPostMessage(r -> r
-                            .channel(game.getChannelId())
-                            .blocks(game.getGameRegistrationMessage())).getTs()));
+                var realName = displayNames.getOrDefault(playerSlackId, playerSlackId);
+                if (game.getPlayers().stream().noneMatch(player -> player.slackId().equals(playerSlackId))) {
+                    game.addPlayer(new Player(playerSlackId, realName));
+                    registry.reindex(ctx.getTeamId(), game);
+                    playersAdded.add(new Player(playerSlackId, realName));
+                    journal(new PlayerAdded(ctx.getTeamId(), gameUUID, playerSlackId, realName));
                 }
-                return ctx.ack("Reprinted");
             }
 
-            if (dArgs[0].equalsIgnoreCase("setTargetPlayerCount")) {
-                game.setTargetPlayerCount(Integer.parseInt(dArgs[1]));
-                save();
-                return ctx.ack("Set target player count to " + dArgs[1]);
-            }
+            return ctx.ack("Added player : " + playersAdded.toString());
+        }
 
-            if (dArgs[0].equalsIgnoreCase("rename")) {
-                String name = "";
-                for (int i = 1; i < dArgs.length; i++) {
-                    name += dArgs[i] + " ";
-                }
-                game.setGameName(name.trim());
-                save();
-                return ctx.ack("Renamed game to " + name.trim());
-            }
+        if (dArgs[0].equalsIgnoreCase("removePlayer")) {
+            String playerSlackId = Utils.getSlackIdFromMention(dArgs[1]);
+            game.removePlayer(playerSlackId);
+            registry.reindex(ctx.getTeamId(), game);
+            journal(new PlayerRemoved(ctx.getTeamId(), gameUUID, playerSlackId));
+            return ctx.ack("Removed player : " + playerSlackId);
+        }
+
+        if (dArgs[0].equalsIgnoreCase("unStartGame")) {
+            game.unStart();
+            journal(new GameUnstarted(ctx.getTeamId(), gameUUID));
+            return ctx.ack("Game unstarted");
+        }
 
-            if (dArgs[0].equalsIgnoreCase("previewSplit")) {
-                return ctx.ack("``` " + game.splitPlayers().toString() + " ```");
+        if (dArgs[0].equalsIgnoreCase("reprint")) {
+            if (game.hasStarted()) {
+                postMessages(ctx.getTeamId(), game, ctx.client(), game.getDraftingMessage(), Priority.HIGH, true);
+            } else {
+                postMessages(ctx.getTeamId(), game, ctx.client(), List.of(game.getGameRegistrationMessage()),
+                        Priority.NORMAL, true);
             }
+            return ctx.ack("Reprinted");
+        }
+
+        if (dArgs[0].equalsIgnoreCase("setTargetPlayerCount")) {
+            var targetPlayerCount = Integer.parseInt(dArgs[1]);
+            game.setTargetPlayerCount(targetPlayerCount);
+            journal(new TargetPlayerCountSet(ctx.getTeamId(), gameUUID, targetPlayerCount));
+            return ctx.ack("Set target player count to " + dArgs[1]);
+        }
 
-            if (dArgs[0].equalsIgnoreCase("delete")) {
-                games.get(ctx.getTeamId()).remove(gameUUID);
-                save();
-                return ctx.ack("Deleted game");
+        if (dArgs[0].equalsIgnoreCase("rename")) {
+            String name = "";
+            for (int i = 1; i < dArgs.length; i++) {
+                name += dArgs[i] + " ";
             }
+            game.setGameName(name.trim());
+            journal(new GameRenamed(ctx.getTeamId(), gameUUID, name.trim()));
+            return ctx.ack("Renamed game to " + name.trim());
+        }
 
-            return ctx.ack("```" + games.toString() + "```");
-        });
+        if (dArgs[0].equalsIgnoreCase("previewSplit")) {
+            return ctx.ack("``` " + game.splitPlayers().toString() + " ```");
+        }
 
-//        oauthApp.endpoint("GET", "/slack/oauth/completion", (req, ctx) -> {
-//            logger.info("completion: {}", req.getRequestBodyAsString());
-//            return Response.builder()
-//                    .statusCode(200)
-//                    .contentType("text/html")
-//                    .body(req.getRequestBodyAsString())
-//                    .build();
-//        });
-//
-//        oauthApp.endpoint("GET", "/slack/oauth/cancellation", (req, ctx) -> {
-//            logger.info("cancellation: {}", req.getRequestBodyAsString());
-//            return Response.builder()
-//                    .statusCode(200)
-//                    .contentType("text/html")
-//                    .body(req.getRequestBodyAsString())
-//                    .build();
-//        });
+        if (dArgs[0].equalsIgnoreCase("delete")) {
+            registry.remove(ctx.getTeamId(), gameUUID);
+            journal(new GameDeleted(ctx.getTeamId(), gameUUID));
+            return ctx.ack("Deleted game");
+        }
 
-        server.start();
+        return ctx.ack("```" + games.toString() + "```");
     }
 
+    /**
+     * Get the name to show for a user. Uses the workspace's user directory when it knows the user, so resolving names
+     * normally doesn't call the Slack API at all, and falls back to a cached {@code users.info} lookup otherwise.
+     *
+     * @param fallback The name to use if Slack doesn't know the user
+     */
+    private static String getDisplayName(Context ctx, String userId, String fallback)
+            throws IOException, SlackApiException {
+        userDirectory.ensureSynced(ctx.getTeamId(), ctx.client());
+        var name = userDirectory.getDisplayName(ctx.getTeamId(), userId);
+        if (name.isPresent()) {
+            return name.get();
+        }
+        return userProfiles.getDisplayName(ctx.getTeamId(), userId, ctx.client()).orElse(fallback);
+    }
+
+    private static Game findGame(String workspaceId, String gameId) {
+        if (gameId == null) {
+            return null;
+        }
+        try {
+            return registry.get(workspaceId, UUID.fromString(gameId));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 
     // Define a function to extract a value by element name
     private static Optional<Value> extractValueByElementName(Map<String, Map<String, Value>> values, String elementName) {
@@ -605,34 +873,164 @@ public class Main {
         return elementData.map(stringValueMap -> stringValueMap.get(elementName));
     }
 
-    private static void postLeaveJoinMessage(Game game, ActionContext ctx,
-                                             BlockActionRequest request) throws SlackApiException, IOException {
+    private static void postLeaveJoinMessage(Game game, ActionContext ctx, BlockActionRequest request) {
         if (game.hasStarted()) {
-            for (List<LayoutBlock> layoutBlocks : game.getDraftingMessage()) {
-                print(ctx.client().chatPostMessage(r -> r
+            updateDraftBoard(ctx.getTeamId(), game, ctx.client(), null);
+        } else {
+            var registrationMessage = game.getGameRegistrationMessage();
+            outbox.enqueue(ctx.getTeamId(), game.getChannelId(), Priority.LOW, ctx.client(),
+                    sender -> print(sender.call("chat.update", client -> client.chatUpdate(r -> r
+                            .channel(game.getChannelId())
+                            .ts(request.getPayload().getMessage().getTs())
+                            .blocks(registrationMessage)))));
+        }
+    }
+
+    /**
+     * Queue posting messages to a game's channel. Must be called while holding the game's lock so messages are queued in
+     * the same order as the changes they show.
+     *
+     * @param recordTs If the posted messages should become the game's last messages once they've been sent
+     */
+    private static void postMessages(String workspaceId, Game game, MethodsClient client,
+                                     List<List<LayoutBlock>> messages, Priority priority, boolean recordTs) {
+        outbox.enqueue(workspaceId, game.getChannelId(), priority, client, sender -> {
+            var messageTs = new ArrayList<String>();
+            for (List<LayoutBlock> layoutBlocks : messages) {
+                messageTs.add(sender.call("chat.postMessage", c -> c.chatPostMessage(r -> r
                         .channel(game.getChannelId())
-                        .blocks(layoutBlocks)));
+                        .blocks(layoutBlocks))).getTs());
+            }
+            if (recordTs) {
+                recordMessagesTs(workspaceId, game, messageTs);
+            }
+        });
+    }
+
+    /**
+     * Queue updating a started game's draft board in place, see {@link DraftBoard#update}. A board that had to be posted
+     * again, e.g. because it was deleted, is recorded as the game's new board. Must be called while holding the game's
+     * lock.
+     *
+     * @param pickNotification A short message to post alongside the update if the game has pick notifications enabled,
+     *                         or null if there is nothing to announce
+     */
+    private static void updateDraftBoard(String workspaceId, Game game, MethodsClient client,
+                                         @Nullable List<LayoutBlock> pickNotification) {
+        var draftingMessage = game.getDraftingMessage();
+        var notification = game.hasPickNotifications() ? pickNotification : null;
+
+        outbox.enqueue(workspaceId, game.getChannelId(), Priority.HIGH, client, sender -> {
+            // Read the board here rather than in the handler, earlier jobs for this channel may have replaced it since
+            var boardTs = GameLocks.withLock(game.getGameUuid(), game::getLastMessagesTs);
+
+            var messageTs = DraftBoard.update(new DraftBoard.Messages<>() {
+                @Override
+                public boolean update(String ts, List<LayoutBlock> layoutBlocks) throws IOException, SlackApiException {
+                    return sender.call("chat.update", c -> c.chatUpdate(r -> r
+                            .channel(game.getChannelId())
+                            .ts(ts)
+                            .blocks(layoutBlocks))).isOk();
+                }
+
+                @Override
+                public String post(List<LayoutBlock> layoutBlocks) throws IOException, SlackApiException {
+                    return sender.call("chat.postMessage", c -> c.chatPostMessage(r -> r
+                            .channel(game.getChannelId())
+                            .blocks(layoutBlocks))).getTs();
+                }
+
+                @Override
+                public void delete(String ts) throws IOException, SlackApiException {
+                    sender.call("chat.delete", c -> c.chatDelete(r -> r
+                            .channel(game.getChannelId())
+                            .ts(ts)));
+                }
+            }, boardTs, draftingMessage);
+            if (!messageTs.equals(boardTs)) {
+                recordMessagesTs(workspaceId, game, messageTs);
+            }
+
+            if (notification != null) {
+                print(sender.call("chat.postMessage", c -> c.chatPostMessage(r -> r
+                        .channel(game.getChannelId())
+                        .blocks(notification))));
+            }
+        });
+    }
+
+    /**
+     * A one line "X picked Y" message, mentioning the next player so they get notified that it's their turn. Must be
+     * called after the pick has been made.
+     */
+    private static List<LayoutBlock> getPickNotification(Game game, Player picker, Team team) {
+        var nextPlayerInDraft = game.getNextPlayerInDraft();
+        var text = game.getGameName() + ": *" + picker.name() + "* picked " + team.name()
+                + (nextPlayerInDraft == null ? ". The draft is over!" : ". <@" + nextPlayerInDraft.slackId() + "> is up next");
+        return asBlocks(section(section -> section.text(markdownText(text))));
+    }
+
+    private static void recordMessagesTs(String workspaceId, Game game, List<String> messageTs)
+            throws IOException, SlackApiException {
+        GameLocks.withLock(game.getGameUuid(), () -> {
+            game.setLastMessagesTs(messageTs);
+            journal(new MessagesPosted(workspaceId, game.getGameUuid(), messageTs));
+            return null;
+        });
+    }
+
+    /**
+     * @return The registry over {@link #games}. Anything that changes games through it must hold the game's lock.
+     */
+    public static GameRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return The number of games that haven't started, are drafting and have finished drafting
+     */
+    private static Map<String, Integer> countGamesByState() {
+        int waiting = 0, drafting = 0, finished = 0;
+        for (var workspaceGames : games.values()) {
+            for (Game game : workspaceGames.values()) {
+                var lock = GameLocks.lockFor(game.getGameUuid());
+                lock.lock();
+                try {
+                    if (!game.hasStarted()) {
+                        waiting++;
+                    } else if (game.getNextPlayerInDraft() != null) {
+                        drafting++;
+                    } else {
+                        finished++;
+                    }
+                } finally {
+                    lock.unlock();
+                }
             }
-        } else {
-            print(ctx.client().chatUpdate(r -> r
-                    .channel(game.getChannelId())
-                    .ts(request.getPayload().getMessage().getTs())
-                    .blocks(game.getGameRegistrationMessage())));
         }
+        return Map.of("waiting", waiting, "drafting", drafting, "finished", finished);
     }
 
     public static SlackApiResponse print(SlackApiResponse response) {
         return response;
     }
 
-    public static void save() {
-        try (FileOutputStream fos = new FileOutputStream("games.ser");) {
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(games);
-            oos.close();
-        } catch (Exception e) {
-            System.out.println("Error saving");
-            e.printStackTrace();
+    /**
+     * Record a change to a game in the journal, which also marks the game as changed in the game store. The game's file
+     * is only rewritten when the journal is compacted. Must be called while holding the game's lock, after the change was
+     * made.
+     */
+    public static void journal(GameMutation mutation) {
+        long sequence;
+        try (var span = Tracer.span("journal.append")) {
+            span.setAttribute("journal.mutation", mutation.getClass().getSimpleName());
+            sequence = journal.append(mutation);
+        }
+        var workspaceGames = games.get(mutation.workspaceId());
+        var game = workspaceGames == null ? null : workspaceGames.get(mutation.gameId());
+        if (game != null && sequence > game.getJournalSequence()) {
+            // Stored along with the change, so replay knows the game already contains this entry
+            game.setJournalSequence(sequence);
         }
     }
 
@@ -1,18 +1,11 @@
 package com.dacubeking.fantasyfirst;
 
-import com.slack.api.model.view.View;
-import com.slack.api.model.view.ViewClose;
-import com.slack.api.model.view.ViewSubmit;
-import com.slack.api.model.view.ViewTitle;
-
-import static com.slack.api.model.block.Blocks.*;
-import static com.slack.api.model.block.composition.BlockCompositions.markdownText;
-import static com.slack.api.model.block.composition.BlockCompositions.plainText;
-import static com.slack.api.model.block.element.BlockElements.*;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 public class Screens {
     public static final String CREATE_EVENT_CALLBACK_ID = "createEventButton";
-    public static final String CREATE_EVENT = """
+    public static final String CREATE_EVENT = ViewTemplate.compile("""
             {
             	"title": {
             		"type": "plain_text",
@@ -30,7 +23,7 @@ public class Screens {
             		"text": "Cancel",
             		"emoji": true
             	},
-            	"callback_id": "%s",
+            	"callback_id": "{{callbackId}}",
             	"blocks": [
             		{
             			"type": "input",
@@ -107,7 +100,7 @@ public class Screens {
             		}
             	]
             }
-            """.formatted(CREATE_EVENT_CALLBACK_ID);
+            """).render(CREATE_EVENT_CALLBACK_ID);
 
     public static final String PICK_TEAM_CALLBACK_ID = "team_pick_number";
 
@@ -129,7 +122,7 @@ public class Screens {
             		"text": "Cancel",
             		"emoji": true
             	},
-            	"callback_id": "%s",
+            	"callback_id": "{{callbackId}}",
             	"blocks": [
             		{
             			"type": "divider"
@@ -139,7 +132,7 @@ public class Screens {
             			"block_id": "sectionBlockOnlyMrkdwn",
             			"text": {
             				"type": "mrkdwn",
-            				"text": "*It's %s's turn to pick!*"
+            				"text": "*It's <@{{playerSlackId:mrkdwn}}>'s turn to pick!*"
             			}
             		},
             		{
@@ -159,7 +152,7 @@ public class Screens {
             			"elements": [
             				{
             					"type": "plain_text",
-            					"text": "%s",
+            					"text": "{{teams}}",
             					"emoji": true
             				}
             			]
@@ -188,57 +181,61 @@ public class Screens {
             		}
             	]
             }
-            """; // .formatted(player.slackId(), teamsString);
+            """;
+
+    private static final ViewTemplate PICK_A_TEAM_VIEW = ViewTemplate.compile(PICK_A_TEAM);
+
+    /**
+     * The whole response body for a pick that failed, so the modal can be updated without building a {@link
+     * com.slack.api.model.view.View} and serializing it again
+     */
+    private static final ViewTemplate PICK_A_TEAM_ERROR_RESPONSE = ViewTemplate.compile(buildPickATeamErrorResponse());
+
+    private static String buildPickATeamErrorResponse() {
+        var view = JsonParser.parseString(PICK_A_TEAM).getAsJsonObject();
+        var blocks = view.getAsJsonArray("blocks");
+        // Show the error above the hint at the bottom
+        var hint = blocks.remove(blocks.size() - 1);
+        blocks.add(JsonParser.parseString("""
+                {
+                	"type": "context",
+                	"elements": [
+                		{
+                			"type": "image",
+                			"image_url": "https://api.slack.com/img/blocks/bkb_template_images/notificationsWarningIcon.png",
+                			"alt_text": "notifications warning icon"
+                		},
+                		{
+                			"type": "mrkdwn",
+                			"text": "*{{errorMessage:mrkdwn}}*"
+                		}
+                	]
+                }
+                """));
+        blocks.add(hint);
 
+        var response = new JsonObject();
+        response.addProperty("response_action", "update");
+        response.add("view", view);
+        return response.toString();
+    }
+
+    /**
+     * @param callbackId    The modal's callback id
+     * @param playerSlackId The slack id of the player whose turn it is
+     * @param teamsString   The available teams
+     * @return The view's JSON
+     */
+    public static String buildPickATeamView(String callbackId, String playerSlackId, String teamsString) {
+        return PICK_A_TEAM_VIEW.render(callbackId, playerSlackId, teamsString);
+    }
 
-    public static View buildPickATeamErrorView(String callbackId, String playerSlackId, String teamsString, String errorMessage) {
-        return View.builder()
-                .type("modal")
-                .callbackId(callbackId)
-                .title(ViewTitle.builder().text("Pick A Team").emoji(true).build())
-                .submit(ViewSubmit.builder().text("Submit Pick").emoji(true).build())
-                .close(ViewClose.builder().text("Cancel").emoji(true).build())
-                .blocks(asBlocks(
-                        divider(),
-                        section(section -> section
-                                .blockId("sectionBlockOnlyMrkdwn")
-                                .text(markdownText("*It's " + playerSlackId + "'s turn to pick!*"))
-                        ),
-                        divider(),
-                        context(ctx -> ctx
-                                .elements(asContextElements(
-                                        markdownText("*Available Teams:*")
-                                ))
-                        ),
-                        context(ctx -> ctx
-                                .elements(asContextElements(
-                                        plainText(pt -> pt.text(teamsString).emoji(true))
-                                ))
-                        ),
-                        input(input -> input
-                                .label(plainText(pt -> pt.text("Enter your pick (e.g 254)").emoji(true)))
-                                .element(numberInput(inputElement -> inputElement
-                                        .actionId("team_pick_number").
-                                        decimalAllowed(false)
-                                ))
-                        ),
-                        context(ctx -> ctx
-                                .elements(asContextElements(
-                                        imageElement(img -> img
-                                                .imageUrl("https://api.slack.com/img/blocks/bkb_template_images/notificationsWarningIcon.png")
-                                                .altText("notifications warning icon")
-                                        ),
-                                        markdownText("*" + errorMessage + "*")
-                                ))
-                        ),
-                        section(section -> section
-                                .blockId("sectionBlockOnlyPlainText")
-                                .text(plainText(pt -> pt
-                                        .text("If you're not able to submit this form check that you've entered a valid team & that it's your turn to pick")
-                                        .emoji(true)
-                                ))
-                        )
-                ))
-                .build();
+    /**
+     * Build the pick a team view with an error, as a view submission response that replaces the modal
+     *
+     * @return The response's JSON body
+     */
+    public static String buildPickATeamErrorResponse(String callbackId, String playerSlackId, String teamsString, String errorMessage) {
+        return PICK_A_TEAM_ERROR_RESPONSE.render(callbackId, playerSlackId, teamsString, errorMessage);
     }
 }
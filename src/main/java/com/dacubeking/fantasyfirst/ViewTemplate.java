@@ -0,0 +1,172 @@
+package com.dacubeking.fantasyfirst;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A Slack view (or any other JSON payload) with slots that are filled in per request.
+ * <p>
+ * Templates are JSON with {@code {{name}}} placeholders inside string values. They're parsed and minified once, then
+ * split into literal chunks and slots, so rendering is a single pass that appends the chunks and the escaped values into
+ * one pre-sized buffer. Every value is escaped for JSON, and values in {@link SlotType#MRKDWN} slots
+ * ({@code {{name:mrkdwn}}}) are also escaped for Slack's mrkdwn, so user input can't break the payload or inject
+ * mentions and links.
+ */
+public final class ViewTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{(\\w+)(?::(\\w+))?}}");
+
+    /**
+     * How a slot's value is escaped before being inserted
+     */
+    public enum SlotType {
+        /**
+         * Only escaped for JSON, for plain_text fields and ids
+         */
+        PLAIN_TEXT,
+        /**
+         * Also escapes {@code &}, {@code <} and {@code >} so Slack shows the value as-is in mrkdwn
+         */
+        MRKDWN
+    }
+
+    public record Slot(String name, SlotType type) {
+    }
+
+    private final String[] literals; // literals[i] comes before slot i, the last literal comes after the last slot
+    private final int[] slotIndexes; // The index in slots of the value to insert after literals[i]
+    private final List<Slot> slots;
+    private final int literalLength;
+
+    private ViewTemplate(String[] literals, int[] slotIndexes, List<Slot> slots) {
+        this.literals = literals;
+        this.slotIndexes = slotIndexes;
+        this.slots = List.copyOf(slots);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parse a template. Fails fast on invalid JSON and on placeholders outside string values, so broken templates are
+     * caught at startup instead of on the first click.
+     *
+     * @param json The template, with {@code {{name}}} or {@code {{name:mrkdwn}}} placeholders inside string values
+     */
+    public static ViewTemplate compile(String json) {
+        JsonElement tree = JsonParser.parseString(json);
+        checkKeys(tree);
+        // Minify, and keep < > & as-is so they don't turn into < etc.
+        String minified = new GsonBuilder().disableHtmlEscaping().create().toJson(tree);
+
+        var literals = new ArrayList<String>();
+        var slotIndexes = new ArrayList<Integer>();
+        var slots = new ArrayList<Slot>();
+        var matcher = PLACEHOLDER.matcher(minified);
+        int literalStart = 0;
+        while (matcher.find()) {
+            var type = matcher.group(2) == null ? SlotType.PLAIN_TEXT : SlotType.valueOf(matcher.group(2).toUpperCase());
+            var slot = new Slot(matcher.group(1), type);
+            int index = indexOf(slots, slot.name());
+            if (index < 0) {
+                index = slots.size();
+                slots.add(slot);
+            } else if (slots.get(index).type() != type) {
+                throw new IllegalArgumentException("Slot " + slot.name() + " is used with different types");
+            }
+            literals.add(minified.substring(literalStart, matcher.start()));
+            slotIndexes.add(index);
+            literalStart = matcher.end();
+        }
+        literals.add(minified.substring(literalStart));
+
+        return new ViewTemplate(literals.toArray(new String[0]),
+                slotIndexes.stream().mapToInt(Integer::intValue).toArray(), slots);
+    }
+
+    private static int indexOf(List<Slot> slots, String name) {
+        for (int i = 0; i < slots.size(); i++) {
+            if (slots.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void checkKeys(JsonElement element) {
+        if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                if (PLACEHOLDER.matcher(entry.getKey()).find()) {
+                    throw new IllegalArgumentException("Placeholders are only allowed in values: " + entry.getKey());
+                }
+                checkKeys(entry.getValue());
+            }
+        } else if (element.isJsonArray()) {
+            element.getAsJsonArray().forEach(ViewTemplate::checkKeys);
+        }
+    }
+
+    /**
+     * @return The template's slots, in the order their values are passed to {@link #render(String...)}
+     */
+    public List<Slot> getSlots() {
+        return slots;
+    }
+
+    /**
+     * Fill in the slots
+     *
+     * @param values One value per slot, in the order of {@link #getSlots()}
+     * @return The JSON payload
+     */
+    public String render(String... values) {
+        if (values.length != slots.size()) {
+            throw new IllegalArgumentException("Expected " + slots.size() + " values for " + slots + " but got "
+                    + values.length);
+        }
+
+        int valuesLength = 0;
+        for (int index : slotIndexes) {
+            valuesLength += values[index].length();
+        }
+        // Leave a little room for escapes so the buffer normally doesn't have to grow
+        var json = new StringBuilder(literalLength + valuesLength + valuesLength / 8 + 16);
+        for (int i = 0; i < slotIndexes.length; i++) {
+            json.append(literals[i]);
+            appendEscaped(json, values[slotIndexes[i]], slots.get(slotIndexes[i]).type());
+        }
+        json.append(literals[literals.length - 1]);
+        return json.toString();
+    }
+
+    private static void appendEscaped(StringBuilder json, String value, SlotType type) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                case '&' -> json.append(type == SlotType.MRKDWN ? "&amp;" : "&");
+                case '<' -> json.append(type == SlotType.MRKDWN ? "&lt;" : "<");
+                case '>' -> json.append(type == SlotType.MRKDWN ? "&gt;" : ">");
+                default -> {
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
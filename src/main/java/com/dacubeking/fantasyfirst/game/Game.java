@@ -1,11 +1,15 @@
 package com.dacubeking.fantasyfirst.game;
 
 import com.dacubeking.fantasyfirst.Main;
+import com.dacubeking.fantasyfirst.tracing.Tracer;
 import com.slack.api.model.Option;
 import com.slack.api.model.block.LayoutBlock;
+import com.slack.api.model.block.composition.TextObject;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -23,11 +27,12 @@ public class Game implements Serializable {
 
     public void setTargetPlayerCount(int i) {
         targetPlayersPerGame = i;
+        markChanged();
     }
 
     public record Team(String name, String number, String elo, UUID uuid) implements Serializable {
         public Team(String number) {
-            this(number, number, "0", UUID.randomUUID());
+            this(number, number, "0", GameRandom.randomUUID());
         }
     }
 
@@ -37,13 +42,15 @@ public class Game implements Serializable {
         }
     }
 
-    private final ArrayList<Team> availableTeams;
+    private TeamPool teamPool;
+    // Games saved before the team pool existed stored their available teams here, see readObject
+    private @Nullable ArrayList<Team> availableTeams;
 
     private final ArrayList<Player> players = new ArrayList<>();
 
     private String channelId;
     private int allianceSize;
-    private final UUID uuid = UUID.randomUUID();
+    private final UUID uuid;
 
     private final String gameOwnerSlackId;
     private String gameName;
@@ -51,6 +58,46 @@ public class Game implements Serializable {
     private long turnCount = 0;
     private @Nullable List<String> lastMessagesTs;
     private int targetPlayersPerGame = 0;
+    private boolean pickNotifications = false;
+    // The sequence number of the last journal entry applied to this game, so replay can skip the ones it already has
+    private long journalSequence = 0;
+
+    // Snake draft cursor: the round (1 based) and the position within that round's pick order of the next player to pick.
+    // Rounds go forwards through the players on odd rounds and backwards on even rounds. Picks only ever move the cursor
+    // forwards, anything else that changes the order or the number of teams per player invalidates it and it is rebuilt
+    // on the next lookup. Not serialized, so it is also rebuilt after loading a game.
+    private transient boolean draftCursorValid = false;
+    private transient int draftCursorRound;
+    private transient int draftCursorPosition;
+
+    // Rendered messages, reused until the game changes. Not serialized.
+    private transient long renderVersion;
+    private transient @Nullable RenderCache renderCache;
+
+    /**
+     * Rendered messages and table rows of a game, each tagged with the render version it was built for
+     */
+    private static final class RenderCache {
+        /**
+         * A player's line in the draft board and the markdown table
+         *
+         * @param teamCount        How many teams the player had when the row was rendered. Picks only ever append a
+         *                         team, so a row is stale once the count differs.
+         * @param field            The player's field in the draft board
+         * @param markdownRow      The player's row in the markdown table, or null if it hasn't been rendered yet
+         * @param markdownRowWidth The name width, team width and alliance size the markdown row was padded for
+         */
+        private record Row(int teamCount, TextObject field, @Nullable String markdownRow, long markdownRowWidth) {
+        }
+
+        long registrationVersion = -1;
+        List<LayoutBlock> registrationMessage;
+        long draftingVersion = -1;
+        List<List<LayoutBlock>> draftingMessage;
+        long markdownVersion = -1;
+        String markdownTable;
+        final Map<Player, Row> rows = new IdentityHashMap<>();
+    }
 
     /**
      * Create a new game
@@ -80,35 +127,88 @@ public class Game implements Serializable {
      */
     public Game(String channelId, int allianceSize, List<Team> teams, String gameOwnerSlackId, String gameName,
                 int targetPlayersPerGame) {
+        this(channelId, allianceSize, new TeamPool(teams), gameOwnerSlackId, gameName, targetPlayersPerGame);
+    }
+
+    /**
+     * Create a new game from a pool of teams, e.g. one sharing an event's {@link TeamCatalog}
+     *
+     * @param channelId            The channel that the game is in
+     * @param allianceSize         The number of teams that each player will pick
+     * @param teamPool             The teams that are available to be picked. Owned by the game from now on.
+     * @param gameOwnerSlackId     The slack id of the person who created the game
+     * @param gameName             The name of the game
+     * @param targetPlayersPerGame The maximum number of players that can be in the game. If 0, there is no limit
+     */
+    public Game(String channelId, int allianceSize, TeamPool teamPool, String gameOwnerSlackId, String gameName,
+                int targetPlayersPerGame) {
+        this.uuid = GameRandom.randomUUID();
+        this.channelId = channelId;
+        this.allianceSize = allianceSize;
+        this.teamPool = teamPool;
+        this.gameOwnerSlackId = gameOwnerSlackId;
+        this.gameName = gameName;
+        this.targetPlayersPerGame = targetPlayersPerGame;
+    }
+
+    /**
+     * Restore a stored game, see {@link GameCodec}
+     */
+    Game(UUID uuid, String channelId, int allianceSize, TeamPool teamPool, String gameOwnerSlackId, String gameName,
+         int targetPlayersPerGame, List<Player> players, boolean hasStarted, long turnCount,
+         @Nullable List<String> lastMessagesTs, boolean pickNotifications, long journalSequence) {
+        this.uuid = uuid;
         this.channelId = channelId;
         this.allianceSize = allianceSize;
-        this.availableTeams = new ArrayList<>(teams);
+        this.teamPool = teamPool;
         this.gameOwnerSlackId = gameOwnerSlackId;
         this.gameName = gameName;
-        availableTeams.sort(Comparator.comparingInt(o -> Integer.parseInt(o.number)));
         this.targetPlayersPerGame = targetPlayersPerGame;
+        this.players.addAll(players);
+        this.hasStarted = hasStarted;
+        this.turnCount = turnCount;
+        this.lastMessagesTs = lastMessagesTs;
+        this.pickNotifications = pickNotifications;
+        this.journalSequence = journalSequence;
     }
 
     public void addPlayer(Player player) {
         players.add(player);
+        invalidateDraftCursor();
+        markChanged();
+    }
+
+    /**
+     * Replace the players in the game, e.g. with one group of a split
+     */
+    public void setPlayers(List<Player> players) {
+        var newPlayers = new ArrayList<>(players); // players may be a view of this game's players
+        this.players.clear();
+        this.players.addAll(newPlayers);
+        invalidateDraftCursor();
+        markRowsChanged();
     }
 
     public void addTeam(Team team) {
-        availableTeams.add(team);
-        availableTeams.sort(Comparator.comparingInt(o -> Integer.parseInt(o.number)));
+        teamPool.add(team);
+        markChanged();
     }
 
     public void removeTeam(Team team) {
-        availableTeams.remove(team);
+        teamPool.remove(team);
 
         for (Player player : players) {
             player.selectedTeams.remove(team);
         }
+        invalidateDraftCursor();
+        markRowsChanged();
     }
 
     public void removePlayer(Player player) {
         if (players.remove(player)) {
-            availableTeams.addAll(player.selectedTeams);
+            player.selectedTeams.forEach(teamPool::release);
+            invalidateDraftCursor();
+            markRowsChanged();
         }
     }
 
@@ -134,14 +234,30 @@ public class Game implements Serializable {
     }
     public void setAllianceSize(int size) {
         this.allianceSize = size;
+        invalidateDraftCursor();
+        markChanged();
     }
 
+    /**
+     * @return The teams that haven't been picked yet, sorted by team number
+     */
     public List<Team> getAvailableTeams() {
-        return availableTeams;
+        return teamPool.getAvailableTeams();
     }
 
+    /**
+     * @return The team with the UUID if it hasn't been picked yet
+     */
+    public Optional<Team> getAvailableTeam(UUID teamUuid) {
+        return Optional.ofNullable(teamPool.getAvailable(teamUuid));
+    }
+
+    /**
+     * @return The players in draft order. Use {@link #addPlayer(Player)}, {@link #removePlayer(String)} or
+     * {@link #setPlayers(List)} to change them.
+     */
     public List<Player> getPlayers() {
-        return players;
+        return Collections.unmodifiableList(players);
     }
 
     public boolean isFull() {
@@ -164,21 +280,61 @@ public class Game implements Serializable {
         if (hasStarted) {
             return;
         }
-        Collections.shuffle(players);
+        GameRandom.shuffle(players);
+        hasStarted = true;
+        invalidateDraftCursor();
+        markChanged();
+    }
+
+    /**
+     * Start the game with a known draft order instead of shuffling the players. Used when replaying the journal.
+     *
+     * @param draftOrder The slack ids of the players in draft order. Players not in this list are removed from the game.
+     */
+    public void start(List<String> draftOrder) {
+        players.removeIf(player -> {
+            if (draftOrder.contains(player.slackId)) {
+                return false;
+            }
+            player.selectedTeams.forEach(teamPool::release);
+            return true;
+        });
+        players.sort(Comparator.comparingInt(player -> draftOrder.indexOf(player.slackId)));
         hasStarted = true;
+        invalidateDraftCursor();
+        markRowsChanged();
     }
 
     public void unStart() {
         hasStarted = false;
 
         for (Player player : players) {
-            availableTeams.addAll(player.selectedTeams);
+            player.selectedTeams.forEach(teamPool::release);
             player.selectedTeams.clear();
         }
+        invalidateDraftCursor();
+        markRowsChanged();
     }
 
     public void setGameName(String name) {
         gameName = name;
+        markChanged();
+    }
+
+    /**
+     * Games saved before the team pool existed only stored the available teams, the picked ones are in the players'
+     * selected teams. Build the pool from both.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (teamPool == null) {
+            var pickedTeams = new ArrayList<Team>();
+            for (Player player : players) {
+                pickedTeams.addAll(player.selectedTeams);
+            }
+            teamPool = new TeamPool(availableTeams == null ? List.of() : availableTeams, pickedTeams);
+            availableTeams = null;
+        }
     }
 
     @Override
@@ -186,7 +342,7 @@ public class Game implements Serializable {
         return "Game{" +
                 "gameName='" + gameName + '\'' +
                 ", lastMessagesTs=" + lastMessagesTs +
-                ", availableTeams=" + availableTeams +
+                ", availableTeams=" + teamPool +
                 ", players=" + players +
                 ", channelId='" + channelId + '\'' +
                 ", allianceSize=" + allianceSize +
@@ -195,10 +351,43 @@ public class Game implements Serializable {
                 ", hasStarted=" + hasStarted +
                 ", turnCount=" + turnCount +
                 ", targetPlayersPerGame=" + targetPlayersPerGame +
+                ", pickNotifications=" + pickNotifications +
+                ", journalSequence=" + journalSequence +
                 '}';
     }
 
+    private RenderCache getRenderCache() {
+        if (renderCache == null) {
+            renderCache = new RenderCache();
+        }
+        return renderCache;
+    }
+
+    /**
+     * Note that something that shows up in the game's messages changed
+     */
+    private void markChanged() {
+        renderVersion++;
+    }
+
+    /**
+     * Note that existing players' teams changed other than by a pick, or players left, so cached rows can't be reused
+     */
+    private void markRowsChanged() {
+        renderVersion++;
+        if (renderCache != null) {
+            renderCache.rows.clear();
+        }
+    }
+
+    /**
+     * @return The message inviting players to join the game. Cached until the game changes, callers must not modify it.
+     */
     public List<LayoutBlock> getGameRegistrationMessage() {
+        var cache = getRenderCache();
+        if (cache.registrationVersion == renderVersion) {
+            return cache.registrationMessage;
+        }
 
         String playersString = players.stream().map(Player::name).collect(Collectors.joining(", "));
         if (playersString.isEmpty()) {
@@ -206,11 +395,12 @@ public class Game implements Serializable {
         }
         String finalPlayersString = playersString;
 
-        return asBlocks(
+        cache.registrationMessage = Collections.unmodifiableList(asBlocks(
                 section(section -> section.text(markdownText("*A Fantasy First Game has been created: " + gameName + "*"))),
                 section(section -> section.text(markdownText("Teams:"))),
                 section(section -> section.text(
-                        plainText(availableTeams.stream().map(Team::name).collect(Collectors.joining(", "))))),
+                        plainText(teamPool.getAvailableTeams().stream().map(Team::name)
+                                .collect(Collectors.joining(", "))))),
                 divider(),
                 section(section -> section.text(markdownText("Players:"))),
                 section(section -> section.text(plainText(finalPlayersString))),
@@ -219,38 +409,61 @@ public class Game implements Serializable {
                         List.of(markdownText("This game will be split into multiple drafts with " +
                                 (targetPlayersPerGame == 0 ? getActualMaxPlayers() : targetPlayersPerGame)
                                 + " players per draft"))))
-        );
+        ));
+        cache.registrationVersion = renderVersion;
+        return cache.registrationMessage;
     }
 
+    /**
+     * Get the draft board. Counts as a new turn even when the board itself is unchanged.
+     *
+     * @return The draft board messages. Cached until the game changes, callers must not modify them.
+     */
     public List<List<LayoutBlock>> getDraftingMessage() {
         turnCount++;
-        // Print out the current state of the draft in a table
-        LayoutBlock table = section(section -> section.fields(
-                players.stream().map(player ->
-                        markdownText(
-                                "*" + player.name() + "*: " +
-                                        player.selectedTeams().stream().map(Team::name).collect(Collectors.joining(", ")
-                                        ))).collect(Collectors.toList())
-        ));
+        try (var span = Tracer.span("game.render_draft_board")) {
+            var cache = getRenderCache();
+            boolean cached = cache.draftingVersion == renderVersion;
+            span.setAttribute("render.cached", cached);
+            if (cached) {
+                return cache.draftingMessage;
+            }
+            cache.draftingMessage = renderDraftingMessage(cache);
+            cache.draftingVersion = renderVersion;
+            return cache.draftingMessage;
+        }
+    }
+
+    private List<List<LayoutBlock>> renderDraftingMessage(RenderCache cache) {
+        // Print out the current state of the draft in a table, only re-rendering the players whose teams changed
+        var fields = new ArrayList<TextObject>(players.size());
+        for (Player player : players) {
+            fields.add(getRow(cache, player).field());
+        }
+        LayoutBlock table = section(section -> section.fields(fields));
         // Get the next person in the draft order
         var nextPlayerInDraft = getNextPlayerInDraft();
         if (nextPlayerInDraft == null) {
-            return List.of(asBlocks(
+            return List.of(Collections.unmodifiableList(asBlocks(
                     section(section -> section.text(markdownText("The *" + getGameName() + "* draft is over!"))),
                     table
-            ));
+            )));
         } else {
             var messages = new ArrayList<List<LayoutBlock>>();
-            Main.pickTeamButton.setValue(getGameUuid().toString());
-            messages.add(asBlocks(
+            // Build a button per message, the shared Main.pickTeamButton can't carry a different game id per thread
+            var pickTeamButton = button(b -> b.text(plainText(pt -> pt.text(Main.pickTeamButton.getText().getText())
+                            .emoji(true)))
+                    .actionId(Main.pickTeamButton.getActionId())
+                    .value(getGameUuid().toString()));
+            messages.add(Collections.unmodifiableList(asBlocks(
                     section(section -> section.text(markdownText("*" + getGameName() + ":*"))),
                     section(section -> section.text(markdownText("It is <@" + nextPlayerInDraft.slackId()
                             + ">'s turn to pick a team"))),
                     table,
-                    actions(actions -> actions.elements(List.of(Main.pickTeamButton))),
+                    actions(actions -> actions.elements(List.of(pickTeamButton))),
                     section(section -> section.text(markdownText("You can still join the draft!"))),
                     getJoiningButtons()
-            ));
+            )));
 //            messages.addAll(
 //                    splitTeams.stream().map(groupedTeams -> asBlocks(
 //                            actions("DraftingButtons", groupedTeams.stream()
@@ -264,27 +477,73 @@ public class Game implements Serializable {
 //                    section(section -> section.text(markdownText("You can still join the draft!"))),
 //                    getJoiningButtons()
 //            ));
-            return messages;
+            return Collections.unmodifiableList(messages);
         }
     }
 
-
-    public Player getNextPlayerInDraft() {
-        for (int i = 1; i <= allianceSize; i++) {
-            boolean reverseOrder = i % 2 == 0;
-            var players = this.players;
-            if (reverseOrder) {
-                players = new ArrayList<>(players);
-                Collections.reverse(players);
+    /**
+     * Get a player's cached row, re-rendering it if the player's teams changed since
+     */
+    private RenderCache.Row getRow(RenderCache cache, Player player) {
+        var row = cache.rows.get(player);
+        if (row == null || row.teamCount() != player.selectedTeams.size()) {
+            var teams = new StringBuilder();
+            for (Team team : player.selectedTeams) {
+                if (!teams.isEmpty()) {
+                    teams.append(", ");
+                }
+                teams.append(team.name());
             }
+            row = new RenderCache.Row(player.selectedTeams.size(),
+                    markdownText("*" + player.name() + "*: " + teams), null, -1);
+            cache.rows.put(player, row);
+        }
+        return row;
+    }
 
-            for (var player : players) {
-                if (player.selectedTeams().size() < i) {
-                    return player;
-                }
+
+    /**
+     * Get the player whose turn it is. Players pick in snake order: forwards through the players on odd rounds and
+     * backwards on even rounds, and in each round the first player in that order with fewer teams than the round number is
+     * up. Constant time unless the draft cursor has to be rebuilt after a join, leave or (un)start.
+     *
+     * @return The player whose turn it is to pick, or null if the draft is over
+     */
+    public @Nullable Player getNextPlayerInDraft() {
+        if (!draftCursorValid) {
+            draftCursorRound = 1;
+            draftCursorPosition = 0;
+            draftCursorValid = true;
+            advanceDraftCursor();
+        }
+        return draftCursorRound > allianceSize ? null : getPlayerAtDraftCursor();
+    }
+
+    /**
+     * Move the draft cursor forwards to the next player that still needs a team in the current round. Every player
+     * before the cursor already has enough teams for its round, and picks only ever add teams, so the cursor never has to
+     * move backwards. Over a whole draft this visits each (round, player) pair once.
+     */
+    private void advanceDraftCursor() {
+        while (draftCursorRound <= allianceSize) {
+            if (draftCursorPosition >= players.size()) {
+                draftCursorRound++;
+                draftCursorPosition = 0;
+            } else if (getPlayerAtDraftCursor().selectedTeams.size() < draftCursorRound) {
+                return;
+            } else {
+                draftCursorPosition++;
             }
         }
-        return null;
+    }
+
+    private Player getPlayerAtDraftCursor() {
+        boolean reverseOrder = draftCursorRound % 2 == 0;
+        return players.get(reverseOrder ? players.size() - 1 - draftCursorPosition : draftCursorPosition);
+    }
+
+    private void invalidateDraftCursor() {
+        draftCursorValid = false;
     }
 
     public LayoutBlock getJoiningButtons() {
@@ -311,16 +570,17 @@ public class Game implements Serializable {
      * @return true if the team was picked, false if the team was not picked
      */
     public boolean pickTeam(UUID teamUuid) {
-        for (var team : availableTeams) {
-            if (team.uuid().equals(teamUuid)) {
-                var nextPlayerInDraft = getNextPlayerInDraft();
-                if (nextPlayerInDraft != null) {
-                    nextPlayerInDraft.selectedTeams.add(team);
-                    availableTeams.remove(team);
-                    return true;
-                }
-                return false;
-            }
+        var team = teamPool.getAvailable(teamUuid);
+        if (team == null) {
+            return false;
+        }
+        var nextPlayerInDraft = getNextPlayerInDraft();
+        if (nextPlayerInDraft != null) {
+            nextPlayerInDraft.selectedTeams.add(team);
+            teamPool.take(team);
+            advanceDraftCursor();
+            markChanged();
+            return true;
         }
         return false;
     }
@@ -332,17 +592,18 @@ public class Game implements Serializable {
      * @param teamNum The number of the team to pick
      */
     public Optional<Team> pickTeam(String teamNum) {
-        for (var team : availableTeams) {
-            if (team.number.equals(teamNum)) {
-                var nextPlayerInDraft = getNextPlayerInDraft();
-                if (nextPlayerInDraft != null) {
-                    nextPlayerInDraft.selectedTeams.add(team);
-                    availableTeams.remove(team);
-                }
-                return Optional.of(team);
-            }
+        var team = teamPool.getAvailable(teamNum.trim());
+        if (team == null) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        var nextPlayerInDraft = getNextPlayerInDraft();
+        if (nextPlayerInDraft != null) {
+            nextPlayerInDraft.selectedTeams.add(team);
+            teamPool.take(team);
+            advanceDraftCursor();
+            markChanged();
+        }
+        return Optional.of(team);
     }
 
     public long getTurnCount() {
@@ -350,41 +611,79 @@ public class Game implements Serializable {
     }
 
     /**
-     * Get a markdown table of the current state of the draft
+     * Get a markdown table of the current state of the draft. Cached until the game changes, and only the rows of players
+     * whose teams changed are rebuilt unless the column widths changed.
      *
      * @return A markdown table of the current state of the draft
      */
     public String getMarkdownTable() {
-        int longestTeamName = max(availableTeams.stream().map(Team::name).mapToInt(String::length).max().orElse(0),
-                4 + String.valueOf(allianceSize).length());
-        int longestName = max(players.stream().map(Player::name).mapToInt(String::length).max().orElse(0), 4);
+        var cache = getRenderCache();
+        if (cache.markdownVersion == renderVersion) {
+            return cache.markdownTable;
+        }
+
+        int longestTeamName = 4 + String.valueOf(allianceSize).length();
+        for (Team team : teamPool.getAvailableTeams()) {
+            longestTeamName = max(longestTeamName, team.name().length());
+        }
+        int longestName = 4;
+        for (Player player : players) {
+            longestName = max(longestName, player.name().length());
+        }
+        // Rows are only reusable if they were padded to the same widths
+        long rowWidth = ((long) longestName << 40) | ((long) longestTeamName << 20) | allianceSize;
 
-        String table = "";
-        table += "```";
-        table += "Name" + " ".repeat(longestName - 4) + " | ";
+        var table = new StringBuilder();
+        table.append("```");
+        table.append("Name").append(" ".repeat(longestName - 4)).append(" | ");
         for (int i = 0; i < allianceSize; i++) {
-            table += "team" + (i + 1) + " ".repeat(longestTeamName - 5) + " | ";
+            table.append("team").append(i + 1).append(" ".repeat(longestTeamName - 5)).append(" | ");
         }
-        table += "\n";
+        table.append("\n");
 
         var divider = "-".repeat(table.length() - 5) + "\n";
-        table += divider;
+        table.append(divider);
         for (var player : players) {
-            table += player.name + " ".repeat(longestName - player.name.length()) + " | ";
-            for (int i = 0; i < allianceSize; i++) {
-                if (player.selectedTeams().size() > i) {
-                    table += player.selectedTeams().get(i).name + " "
-                            .repeat(longestTeamName - player.selectedTeams().get(i).name.length()) + " | ";
-                } else {
-                    table += " ".repeat(longestTeamName) + " | ";
-                }
+            var row = getRow(cache, player);
+            if (row.markdownRow() == null || row.markdownRowWidth() != rowWidth) {
+                row = new RenderCache.Row(row.teamCount(), row.field(),
+                        renderMarkdownRow(player, longestName, longestTeamName), rowWidth);
+                cache.rows.put(player, row);
             }
-            table += "\n";
+            table.append(row.markdownRow());
         }
-        table += divider;
-        table += "```";
+        table.append(divider);
+        table.append("```");
 
-        return table;
+        cache.markdownTable = table.toString();
+        cache.markdownVersion = renderVersion;
+        return cache.markdownTable;
+    }
+
+    private String renderMarkdownRow(Player player, int longestName, int longestTeamName) {
+        var row = new StringBuilder();
+        row.append(player.name).append(" ".repeat(longestName - player.name.length())).append(" | ");
+        for (int i = 0; i < allianceSize; i++) {
+            if (player.selectedTeams().size() > i) {
+                var teamName = player.selectedTeams().get(i).name;
+                row.append(teamName).append(" ".repeat(longestTeamName - teamName.length())).append(" | ");
+            } else {
+                row.append(" ".repeat(longestTeamName)).append(" | ");
+            }
+        }
+        row.append("\n");
+        return row.toString();
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * Record that the journal entry with a sequence number has been applied. Must be called while holding the game's lock.
+     */
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
     }
 
     public @Nullable List<String> getLastMessagesTs() {
@@ -396,16 +695,42 @@ public class Game implements Serializable {
         this.lastMessagesTs = lastMessagesTs;
     }
 
+    /**
+     * @return If a short "X picked Y" message should be posted after each pick, in addition to updating the draft board
+     */
+    public boolean hasPickNotifications() {
+        return pickNotifications;
+    }
+
+    public void setPickNotifications(boolean pickNotifications) {
+        this.pickNotifications = pickNotifications;
+    }
+
     public int getTeamsPerAlliance() {
         return allianceSize;
     }
 
+    int getTargetPlayersPerGame() {
+        return targetPlayersPerGame;
+    }
+
+    TeamPool getTeamPool() {
+        return teamPool;
+    }
+
     public List<Team> getTeams() {
-        return availableTeams;
+        return teamPool.getAvailableTeams();
+    }
+
+    /**
+     * @return A copy of the game's team pool that shares its catalog, for a draft split off from this game
+     */
+    public TeamPool copyTeamPool() {
+        return teamPool.copy();
     }
 
     public int getActualMaxPlayers() {
-        return availableTeams.size() / allianceSize;
+        return teamPool.getAvailableCount() / allianceSize;
     }
 
     /**
@@ -434,7 +759,7 @@ public class Game implements Serializable {
 
             List<List<Player>> splitPlayers = new ArrayList<>();
 
-            Collections.shuffle(playersCopy);
+            GameRandom.shuffle(playersCopy);
 
             for (int i = 0; i < numGroups; i++) {
                 int start = i * playersPerGroup;
@@ -0,0 +1,444 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.Game.Team;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compact binary format for storing a game, used instead of Java serialization.
+ * <p>
+ * A stored game is a header (magic, schema version and flags), the body, optionally deflated, and a CRC32 of everything
+ * before it. The body starts with a table of every string in the game, so the Slack ids, team numbers and names that
+ * repeat across players and teams are stored once and referred to by index. Players refer to their selected teams by
+ * catalog index, and the available teams are stored as the pool's bitset. All counts and indexes are varints.
+ * <p>
+ * An event's catalog is the same for every game of the event, so when encoding with {@link SharedCatalogs} the game only
+ * stores the event code and the catalog's fingerprint, and the catalog itself is stored once with
+ * {@link #encodeCatalog(TeamCatalog, boolean)}. Catalogs that belong to a single game are always stored in the game.
+ * <p>
+ * Changes to the model bump {@link #SCHEMA_VERSION}, and the decoder keeps reading every older version so stored games
+ * never have to be rewritten eagerly. Games stored before the codec existed are only found in a legacy snapshot, which
+ * {@link com.dacubeking.fantasyfirst.persistence.GameStore} migrates.
+ */
+public final class GameCodec {
+
+    private static final int MAGIC = 0x46464743; // "FFGC"
+    // 1: initial version
+    private static final int SCHEMA_VERSION = 1;
+    private static final int CATALOG_MAGIC = 0x46465443; // "FFTC"
+    // 1: initial version
+    private static final int CATALOG_SCHEMA_VERSION = 1;
+    private static final int HEADER_BYTES = 6;
+    private static final int CHECKSUM_BYTES = 4;
+
+    private static final int FLAG_DEFLATED = 1;
+    // The game stores its catalog's event code and fingerprint instead of the catalog's teams
+    private static final int FLAG_SHARED_CATALOG = 1 << 1;
+
+    private static final int GAME_STARTED = 1;
+    private static final int GAME_PICK_NOTIFICATIONS = 1 << 1;
+
+    /**
+     * Where event catalogs are stored when they're stored once rather than in every game of the event
+     */
+    public interface SharedCatalogs {
+        /**
+         * Called while encoding a game whose catalog belongs to an event. The catalog has to be stored before the game
+         * is.
+         *
+         * @return Whether the catalog is stored separately, otherwise it's stored in the game
+         */
+        boolean share(String eventCode, long fingerprint, TeamCatalog catalog);
+
+        /**
+         * @return A catalog that was shared under the event code and fingerprint
+         * @throws IOException If it can't be read
+         */
+        TeamCatalog load(String eventCode, long fingerprint) throws IOException;
+    }
+
+    private GameCodec() {
+    }
+
+    private static boolean hasMagic(byte[] bytes, int magic) {
+        return bytes.length >= HEADER_BYTES + CHECKSUM_BYTES
+                && ((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF) == magic;
+    }
+
+    /**
+     * Encode a game with its catalog. Must be called while holding the game's lock.
+     *
+     * @param deflate Whether to compress the body. Only saves around a tenth, since most of a game is random team UUIDs,
+     *                so it's meant for games that are rarely read or written.
+     */
+    public static byte[] encode(Game game, boolean deflate) throws IOException {
+        return encode(game, deflate, null);
+    }
+
+    /**
+     * Encode a game. Must be called while holding the game's lock.
+     *
+     * @param deflate  Whether to compress the body, see {@link #encode(Game, boolean)}
+     * @param catalogs Where to store the game's catalog if it belongs to an event, or null to store it in the game
+     */
+    public static byte[] encode(Game game, boolean deflate, @Nullable SharedCatalogs catalogs) throws IOException {
+        // The body is written first so the string table knows every string it has to hold
+        var strings = new StringTable();
+        var body = new ByteArrayOutputStream();
+        boolean sharedCatalog = writeGame(new DataOutputStream(body), strings, game, catalogs);
+        return frame(MAGIC, SCHEMA_VERSION, sharedCatalog ? FLAG_SHARED_CATALOG : 0, deflate, strings, body);
+    }
+
+    /**
+     * Encode a catalog on its own, for {@link SharedCatalogs}
+     */
+    public static byte[] encodeCatalog(TeamCatalog catalog, boolean deflate) throws IOException {
+        var strings = new StringTable();
+        var body = new ByteArrayOutputStream();
+        var out = new DataOutputStream(body);
+        strings.writeRef(out, catalog.getEventCode());
+        writeCatalogTeams(out, strings, catalog);
+        return frame(CATALOG_MAGIC, CATALOG_SCHEMA_VERSION, 0, deflate, strings, body);
+    }
+
+    /**
+     * Write the header, the string table followed by the body, and the checksum
+     */
+    private static byte[] frame(int magic, int version, int flags, boolean deflate, StringTable strings,
+                                ByteArrayOutputStream body) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var header = new DataOutputStream(bytes);
+        header.writeInt(magic);
+        header.writeByte(version);
+        header.writeByte(flags | (deflate ? FLAG_DEFLATED : 0));
+
+        var deflater = deflate ? new Deflater(Deflater.BEST_COMPRESSION) : null;
+        try {
+            var out = new DataOutputStream(deflater == null ? bytes : new DeflaterOutputStream(bytes, deflater));
+            strings.writeTo(out);
+            body.writeTo(out);
+            out.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        var crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        new DataOutputStream(bytes).writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a game that stores its own catalog
+     *
+     * @throws IOException If the bytes aren't an encoded game, fail their checksum, were written by a newer version or
+     *                     refer to a shared catalog
+     */
+    public static Game decode(byte[] bytes) throws IOException {
+        return decode(bytes, null);
+    }
+
+    /**
+     * Decode a game
+     *
+     * @param catalogs Where the game's catalog was shared, if it was encoded with {@link SharedCatalogs}
+     * @throws IOException If the bytes aren't an encoded game, fail their checksum, were written by a newer version or
+     *                     refer to a shared catalog that can't be loaded
+     */
+    public static Game decode(byte[] bytes, @Nullable SharedCatalogs catalogs) throws IOException {
+        var frame = unframe(bytes, MAGIC, SCHEMA_VERSION, "game");
+        try (var in = frame.in()) {
+            return readGame(in, StringTable.read(in), (frame.flags() & FLAG_SHARED_CATALOG) != 0, catalogs);
+        } catch (RuntimeException e) {
+            // A bad index or count that slipped past the checksum
+            throw new IOException("Encoded game is corrupted", e);
+        }
+    }
+
+    /**
+     * Decode a catalog written by {@link #encodeCatalog(TeamCatalog, boolean)}. Event catalogs are interned, so a catalog
+     * that's already loaded is returned instead of a copy.
+     *
+     * @throws IOException If the bytes aren't an encoded catalog, fail their checksum or were written by a newer version
+     */
+    public static TeamCatalog decodeCatalog(byte[] bytes) throws IOException {
+        var frame = unframe(bytes, CATALOG_MAGIC, CATALOG_SCHEMA_VERSION, "catalog");
+        try (var in = frame.in()) {
+            var strings = StringTable.read(in);
+            return readCatalogTeams(in, strings, readRef(in, strings));
+        } catch (RuntimeException e) {
+            throw new IOException("Encoded catalog is corrupted", e);
+        }
+    }
+
+    private record Frame(int flags, DataInputStream in) {
+    }
+
+    /**
+     * Check the magic, checksum and version of encoded bytes
+     *
+     * @return The flags they were written with, and their body
+     */
+    private static Frame unframe(byte[] bytes, int magic, int supportedVersion, String kind) throws IOException {
+        if (!hasMagic(bytes, magic)) {
+            throw new IOException("Not an encoded " + kind);
+        }
+        int checksumOffset = bytes.length - CHECKSUM_BYTES;
+        var crc = new CRC32();
+        crc.update(bytes, 0, checksumOffset);
+        int checksum = new DataInputStream(new ByteArrayInputStream(bytes, checksumOffset, CHECKSUM_BYTES)).readInt();
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Encoded " + kind + " is corrupted, checksum mismatch");
+        }
+
+        int version = bytes[4] & 0xFF;
+        int flags = bytes[5] & 0xFF;
+        if (version > supportedVersion) {
+            throw new IOException("Encoded " + kind + " has schema version " + version + ", only " + supportedVersion
+                    + " and older are supported");
+        }
+
+        InputStream body = new ByteArrayInputStream(bytes, HEADER_BYTES, checksumOffset - HEADER_BYTES);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            body = new InflaterInputStream(body);
+        }
+        return new Frame(flags, new DataInputStream(new BufferedInputStream(body)));
+    }
+
+    /**
+     * @return Whether the catalog was shared rather than written into the game
+     */
+    private static boolean writeGame(DataOutputStream out, StringTable strings, Game game,
+                                     @Nullable SharedCatalogs catalogs) throws IOException {
+        var uuid = game.getGameUuid();
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        strings.writeRef(out, game.getChannelId());
+        strings.writeRef(out, game.getGameOwnerSlackId());
+        strings.writeRef(out, game.getGameName());
+        writeVarLong(out, game.getTeamsPerAlliance());
+        writeVarLong(out, game.getTargetPlayersPerGame());
+        writeVarLong(out, game.getTurnCount());
+        out.writeByte((game.hasStarted() ? GAME_STARTED : 0)
+                | (game.hasPickNotifications() ? GAME_PICK_NOTIFICATIONS : 0));
+
+        var lastMessagesTs = game.getLastMessagesTs();
+        // Count + 1 so null and empty stay apart
+        writeVarLong(out, lastMessagesTs == null ? 0 : lastMessagesTs.size() + 1);
+        if (lastMessagesTs != null) {
+            for (String ts : lastMessagesTs) {
+                strings.writeRef(out, ts);
+            }
+        }
+
+        var teamPool = game.getTeamPool();
+        var catalog = teamPool.getCatalog();
+        var eventCode = catalog.getEventCode();
+        strings.writeRef(out, eventCode);
+        boolean shared = catalogs != null && eventCode != null
+                && catalogs.share(eventCode, catalog.getFingerprint(), catalog);
+        if (shared) {
+            out.writeLong(catalog.getFingerprint());
+        } else {
+            writeCatalogTeams(out, strings, catalog);
+        }
+        var available = teamPool.getAvailableIndexes().toLongArray();
+        writeVarLong(out, available.length);
+        for (long word : available) {
+            out.writeLong(word);
+        }
+
+        writeVarLong(out, game.getPlayers().size());
+        for (Player player : game.getPlayers()) {
+            strings.writeRef(out, player.slackId());
+            strings.writeRef(out, player.name());
+            writeVarLong(out, player.selectedTeams().size());
+            for (Team team : player.selectedTeams()) {
+                // Index + 1, or 0 followed by the team for the rare team that isn't in the catalog
+                int index = catalog.indexOf(team.uuid());
+                writeVarLong(out, index + 1);
+                if (index < 0) {
+                    writeTeam(out, strings, team);
+                }
+            }
+        }
+        writeVarLong(out, game.getJournalSequence());
+        return shared;
+    }
+
+    private static Game readGame(DataInputStream in, String[] strings, boolean sharedCatalog,
+                                 @Nullable SharedCatalogs catalogs) throws IOException {
+        var uuid = new UUID(in.readLong(), in.readLong());
+        var channelId = readRef(in, strings);
+        var gameOwnerSlackId = readRef(in, strings);
+        var gameName = readRef(in, strings);
+        int allianceSize = readVarInt(in);
+        int targetPlayersPerGame = readVarInt(in);
+        long turnCount = readVarLong(in);
+        int flags = in.readUnsignedByte();
+
+        int lastMessagesCount = readVarInt(in);
+        List<String> lastMessagesTs = null;
+        if (lastMessagesCount > 0) {
+            lastMessagesTs = new ArrayList<>(lastMessagesCount - 1);
+            for (int i = 0; i < lastMessagesCount - 1; i++) {
+                lastMessagesTs.add(readRef(in, strings));
+            }
+        }
+
+        var eventCode = readRef(in, strings);
+        TeamCatalog catalog;
+        if (sharedCatalog) {
+            long fingerprint = in.readLong();
+            if (catalogs == null || eventCode == null) {
+                throw new IOException("Encoded game refers to a shared catalog for " + eventCode
+                        + " but no shared catalogs were given");
+            }
+            catalog = catalogs.load(eventCode, fingerprint);
+            if (catalog.getFingerprint() != fingerprint || !eventCode.equals(catalog.getEventCode())) {
+                throw new IOException("Shared catalog for " + eventCode + " doesn't match the one the game was stored with");
+            }
+        } else {
+            catalog = readCatalogTeams(in, strings, eventCode);
+        }
+        var available = new long[readVarInt(in)];
+        for (int i = 0; i < available.length; i++) {
+            available[i] = in.readLong();
+        }
+        var teamPool = new TeamPool(catalog, BitSet.valueOf(available));
+
+        int playerCount = readVarInt(in);
+        var players = new ArrayList<Player>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            var slackId = readRef(in, strings);
+            var name = readRef(in, strings);
+            int teamCount = readVarInt(in);
+            var selectedTeams = new ArrayList<Team>(teamCount);
+            for (int j = 0; j < teamCount; j++) {
+                int index = readVarInt(in);
+                // Picked teams are the catalog's instances, shared with every other game for the event
+                selectedTeams.add(index == 0 ? readTeam(in, strings) : catalog.get(index - 1));
+            }
+            players.add(new Player(slackId, name, selectedTeams));
+        }
+        long journalSequence = readVarLong(in);
+
+        return new Game(uuid, channelId, allianceSize, teamPool, gameOwnerSlackId, gameName, targetPlayersPerGame,
+                players, (flags & GAME_STARTED) != 0, turnCount, lastMessagesTs,
+                (flags & GAME_PICK_NOTIFICATIONS) != 0, journalSequence);
+    }
+
+    private static void writeCatalogTeams(DataOutputStream out, StringTable strings, TeamCatalog catalog)
+            throws IOException {
+        writeVarLong(out, catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            writeTeam(out, strings, catalog.get(i));
+        }
+    }
+
+    private static TeamCatalog readCatalogTeams(DataInputStream in, String[] strings, @Nullable String eventCode)
+            throws IOException {
+        var teams = new Team[readVarInt(in)];
+        for (int i = 0; i < teams.length; i++) {
+            teams[i] = readTeam(in, strings);
+        }
+        return TeamCatalog.restore(eventCode, teams);
+    }
+
+    private static void writeTeam(DataOutputStream out, StringTable strings, Team team) throws IOException {
+        strings.writeRef(out, team.name());
+        strings.writeRef(out, team.number());
+        strings.writeRef(out, team.elo());
+        out.writeLong(team.uuid().getMostSignificantBits());
+        out.writeLong(team.uuid().getLeastSignificantBits());
+    }
+
+    private static Team readTeam(DataInputStream in, String[] strings) throws IOException {
+        return new Team(readRef(in, strings), readRef(in, strings), readRef(in, strings),
+                new UUID(in.readLong(), in.readLong()));
+    }
+
+    private static @Nullable String readRef(DataInputStream in, String[] strings) throws IOException {
+        int ref = readVarInt(in);
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Encoded game is corrupted, varint too long");
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Encoded game is corrupted, " + value + " is out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * The distinct strings of a game in the order they were first written. Refs are the index + 1, 0 is null.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void writeRef(DataOutputStream out, @Nullable String string) throws IOException {
+            if (string == null) {
+                writeVarLong(out, 0);
+                return;
+            }
+            var ref = refs.get(string);
+            if (ref == null) {
+                strings.add(string);
+                ref = strings.size();
+                refs.put(string, ref);
+            }
+            writeVarLong(out, ref);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            writeVarLong(out, strings.size());
+            for (String string : strings) {
+                var utf8 = string.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, utf8.length);
+                out.write(utf8);
+            }
+        }
+
+        static String[] read(DataInputStream in) throws IOException {
+            var strings = new String[readVarInt(in)];
+            for (int i = 0; i < strings.length; i++) {
+                var utf8 = new byte[readVarInt(in)];
+                in.readFully(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            return strings;
+        }
+    }
+}
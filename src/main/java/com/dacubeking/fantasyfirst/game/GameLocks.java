@@ -0,0 +1,71 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.tracing.Tracer;
+import com.slack.api.methods.SlackApiException;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by game UUID.
+ * <p>
+ * All reads and writes of a game's mutable state (players, available teams, each player's selected teams) must happen
+ * while holding the game's lock. Mutations of the same game are serialized, while different games map to different
+ * stripes and can proceed in parallel. Locks are reentrant, so a handler holding a game's lock can safely call code that
+ * locks it again (e.g. serializing the game).
+ */
+public final class GameLocks {
+
+    private static final int STRIPES = 256; // Must be a power of two
+    private static final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * An action run under a game's lock. Declares the same checked exceptions as a Bolt handler so handler bodies can be
+     * wrapped as-is.
+     */
+    @FunctionalInterface
+    public interface LockedAction<T> {
+        T run() throws IOException, SlackApiException;
+    }
+
+    private GameLocks() {
+    }
+
+    public static ReentrantLock lockFor(UUID gameId) {
+        int hash = gameId.hashCode();
+        hash ^= hash >>> 16;
+        return locks[hash & (STRIPES - 1)];
+    }
+
+    /**
+     * Run an action while holding the lock for a game
+     *
+     * @param gameId The game to lock
+     * @param action The action to run
+     * @return The result of the action
+     */
+    public static <T> T withLock(UUID gameId, LockedAction<T> action) throws IOException, SlackApiException {
+        // Handlers validate and change a game's state under its lock, so this span shows that work and the wait for it
+        try (var span = Tracer.span("game.locked")) {
+            var lock = lockFor(gameId);
+            long start = span.isRecording() ? System.nanoTime() : 0;
+            lock.lock();
+            try {
+                if (span.isRecording()) {
+                    span.setAttribute("game.id", gameId.toString());
+                    span.setAttribute("game.lock_wait_us", (System.nanoTime() - start) / 1000);
+                }
+                return action.run();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.dacubeking.fantasyfirst.game;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The randomness in games: game and team ids and the shuffled draft orders.
+ * <p>
+ * Normally this is plain {@link UUID#randomUUID()} and {@link Collections#shuffle(List)}. While traffic is being captured
+ * it's seeded, and a replay of the capture uses the same seed, so the games the replay creates get the same ids and draft
+ * orders and the captured clicks that refer to them still line up.
+ */
+public final class GameRandom {
+
+    private static volatile @Nullable Random seeded;
+
+    private GameRandom() {
+    }
+
+    /**
+     * Make ids and shuffles reproducible from now on. Ids generated this way are predictable, so only seed while capturing
+     * or replaying.
+     */
+    public static void seed(long seed) {
+        seeded = new Random(seed);
+    }
+
+    public static UUID randomUUID() {
+        var random = seeded;
+        if (random == null) {
+            return UUID.randomUUID();
+        }
+        synchronized (random) {
+            // Version 4 layout, same as UUID.randomUUID()
+            long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+            long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+            return new UUID(mostSigBits, leastSigBits);
+        }
+    }
+
+    public static void shuffle(List<?> list) {
+        var random = seeded;
+        if (random == null) {
+            Collections.shuffle(list);
+            return;
+        }
+        synchronized (random) {
+            Collections.shuffle(list, random);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.game.GameStorage.StoredGame;
+import com.dacubeking.fantasyfirst.tracing.Tracer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The games map plus secondary indexes over it, so "games owned by X", "games in channel Y" and "games X is playing in"
+ * don't need a scan over every game in the workspace.
+ * <p>
+ * The indexes are updated by {@link #put(String, Game)} and {@link #remove(String, UUID)}. Anything that changes a game's
+ * players must call {@link #reindex(String, Game)} afterwards, while still holding the game's lock. Lookups are weakly
+ * consistent: a game being changed concurrently may or may not show up.
+ * <p>
+ * With a {@link GameStorage} the games map only holds the games that have been used since startup. The rest are indexed
+ * from what the storage knows about them and loaded the first time they're looked up. Games that have been idle for a
+ * while can be dropped from memory again with {@link #unload(String, Game, long)}.
+ */
+public class GameRegistry {
+
+    private record IndexKey(String workspaceId, String value) {
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<UUID, Game>> games; // <workspaceId, <gameId, game>>
+    private final @Nullable GameStorage storage;
+
+    private final ConcurrentMap<IndexKey, Set<UUID>> byOwner = new ConcurrentHashMap<>();
+    private final ConcurrentMap<IndexKey, Set<UUID>> byChannel = new ConcurrentHashMap<>();
+    private final ConcurrentMap<IndexKey, Set<UUID>> byPlayer = new ConcurrentHashMap<>();
+    // The keys each game is currently indexed under, so it can be removed from the indexes without reading the game
+    private final ConcurrentMap<UUID, StoredGame> indexed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Long> lastUsedNanos = new ConcurrentHashMap<>();
+
+    /**
+     * @param games The games map to wrap, keyed by workspace id and then game id. Changes made to it directly aren't
+     *              indexed until {@link #rebuildIndexes()} is called.
+     */
+    public GameRegistry(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+        this(games, null);
+    }
+
+    /**
+     * @param games   The loaded games, keyed by workspace id and then game id
+     * @param storage Where games that aren't loaded yet are read from, or null if every game is in the map
+     */
+    public GameRegistry(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games, @Nullable GameStorage storage) {
+        this.games = games;
+        this.storage = storage;
+    }
+
+    /**
+     * @return The wrapped games map. Only has the loaded games.
+     */
+    public ConcurrentMap<String, ConcurrentMap<UUID, Game>> getGamesMap() {
+        return games;
+    }
+
+    /**
+     * Get a game, loading it from storage if it isn't in memory
+     */
+    public @Nullable Game get(String workspaceId, UUID gameId) {
+        // Marked as used before it's looked up, see unload()
+        if (indexed.containsKey(gameId)) {
+            lastUsedNanos.put(gameId, System.nanoTime());
+        }
+        var game = getLoaded(workspaceId, gameId);
+        if (game != null || storage == null) {
+            return game;
+        }
+
+        // Under the game's lock so we can't load it while it's being unloaded, and so everyone uses the same instance
+        var lock = GameLocks.lockFor(gameId);
+        lock.lock();
+        try (var span = Tracer.span("game.load")) {
+            span.setAttribute("game.id", gameId.toString());
+            game = getLoaded(workspaceId, gameId);
+            if (game != null) {
+                return game;
+            }
+            game = storage.load(workspaceId, gameId);
+            if (game != null) {
+                games.computeIfAbsent(workspaceId, k -> new ConcurrentHashMap<>()).put(gameId, game);
+            }
+            return game;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private @Nullable Game getLoaded(String workspaceId, UUID gameId) {
+        var workspaceGames = games.get(workspaceId);
+        return workspaceGames == null ? null : workspaceGames.get(gameId);
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} a game was last looked up at, or null if it hasn't been since startup
+     */
+    public @Nullable Long getLastUsedNanos(UUID gameId) {
+        return lastUsedNanos.get(gameId);
+    }
+
+    /**
+     * Drop a game from memory unless it was used after a given time. It stays indexed and is loaded from storage again
+     * the next time it's looked up. Must be called while holding the game's lock, and only once the game's current state
+     * has been stored.
+     *
+     * @param unusedSinceNanos The {@link System#nanoTime()} the game must not have been used after
+     * @return Whether the game was unloaded
+     */
+    public boolean unload(String workspaceId, Game game, long unusedSinceNanos) {
+        var gameId = game.getGameUuid();
+        var workspaceGames = games.get(workspaceId);
+        if (storage == null || workspaceGames == null || !workspaceGames.remove(gameId, game)) {
+            return false;
+        }
+        // get() marks the game as used before looking it up, so either it doesn't find the game and loads it again once
+        // we release the lock, or we see that it was used and put the game back before anyone could load a second copy
+        var lastUsed = lastUsedNanos.get(gameId);
+        if (lastUsed != null && lastUsed - unusedSinceNanos > 0) {
+            workspaceGames.put(gameId, game);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Every game in a workspace, loading the ones that aren't loaded yet
+     */
+    public Collection<Game> getGames(String workspaceId) {
+        var found = new ArrayList<Game>();
+        indexed.forEach((gameId, keys) -> {
+            if (keys.workspaceId().equals(workspaceId)) {
+                var game = get(workspaceId, gameId);
+                if (game != null) {
+                    found.add(game);
+                }
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Add or replace a game. Must be called while holding the game's lock, or before anyone else can see the game.
+     */
+    public void put(String workspaceId, Game game) {
+        games.computeIfAbsent(workspaceId, k -> new ConcurrentHashMap<>()).put(game.getGameUuid(), game);
+        reindex(workspaceId, game);
+    }
+
+    /**
+     * Remove a game. Must be called while holding the game's lock.
+     *
+     * @return The removed game, or null if there was no such game
+     */
+    public @Nullable Game remove(String workspaceId, UUID gameId) {
+        var workspaceGames = games.get(workspaceId);
+        var game = workspaceGames == null ? null : workspaceGames.remove(gameId);
+        var previous = indexed.remove(gameId);
+        if (previous != null) {
+            unindex(gameId, previous);
+        }
+        lastUsedNanos.remove(gameId);
+        return game;
+    }
+
+    /**
+     * Update the indexes after a game's players changed. Must be called while holding the game's lock.
+     */
+    public void reindex(String workspaceId, Game game) {
+        index(game.getGameUuid(), StoredGame.of(workspaceId, game));
+    }
+
+    private void index(UUID gameId, StoredGame current) {
+        var workspaceId = current.workspaceId();
+        var previous = indexed.put(gameId, current);
+        if (current.equals(previous)) {
+            return;
+        }
+
+        if (previous != null) {
+            // Only drop the keys the game is no longer indexed under, so lookups never miss it mid-update
+            var removedPlayers = new HashSet<>(previous.playerSlackIds());
+            removedPlayers.removeAll(current.playerSlackIds());
+            var stale = new StoredGame(previous.workspaceId(), gameId,
+                    previous.ownerSlackId().equals(current.ownerSlackId()) ? null : previous.ownerSlackId(),
+                    previous.channelId().equals(current.channelId()) ? null : previous.channelId(),
+                    removedPlayers);
+            unindex(gameId, stale);
+        }
+
+        addTo(byOwner, new IndexKey(workspaceId, current.ownerSlackId()), gameId);
+        addTo(byChannel, new IndexKey(workspaceId, current.channelId()), gameId);
+        for (String playerSlackId : current.playerSlackIds()) {
+            addTo(byPlayer, new IndexKey(workspaceId, playerSlackId), gameId);
+        }
+    }
+
+    /**
+     * Rebuild every index from the games map and the stored games that aren't loaded, e.g. after loading a save file and
+     * replaying the journal. Must not be called while handlers may be changing games.
+     */
+    public void rebuildIndexes() {
+        byOwner.clear();
+        byChannel.clear();
+        byPlayer.clear();
+        indexed.clear();
+        if (storage != null) {
+            for (StoredGame stored : storage.getStoredGames()) {
+                var workspaceGames = games.get(stored.workspaceId());
+                if (workspaceGames == null || !workspaceGames.containsKey(stored.gameId())) {
+                    index(stored.gameId(), stored);
+                }
+            }
+        }
+        games.forEach((workspaceId, workspaceGames) -> workspaceGames.values().forEach(game -> {
+            var lock = GameLocks.lockFor(game.getGameUuid());
+            lock.lock();
+            try {
+                reindex(workspaceId, game);
+            } finally {
+                lock.unlock();
+            }
+        }));
+    }
+
+    public List<Game> getGamesOwnedBy(String workspaceId, String slackId) {
+        return lookup(byOwner, workspaceId, slackId);
+    }
+
+    public List<Game> getGamesInChannel(String workspaceId, String channelId) {
+        return lookup(byChannel, workspaceId, channelId);
+    }
+
+    public List<Game> getGamesPlayedBy(String workspaceId, String slackId) {
+        return lookup(byPlayer, workspaceId, slackId);
+    }
+
+    private List<Game> lookup(ConcurrentMap<IndexKey, Set<UUID>> index, String workspaceId, String value) {
+        var gameIds = index.get(new IndexKey(workspaceId, value));
+        if (gameIds == null) {
+            return List.of();
+        }
+        var found = new ArrayList<Game>(gameIds.size());
+        for (UUID gameId : gameIds) {
+            var game = get(workspaceId, gameId);
+            if (game != null) {
+                found.add(game);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Remove a game from the index entries it's listed under. Null keys are skipped.
+     */
+    private void unindex(UUID gameId, StoredGame keys) {
+        if (keys.ownerSlackId() != null) {
+            removeFrom(byOwner, new IndexKey(keys.workspaceId(), keys.ownerSlackId()), gameId);
+        }
+        if (keys.channelId() != null) {
+            removeFrom(byChannel, new IndexKey(keys.workspaceId(), keys.channelId()), gameId);
+        }
+        for (String playerSlackId : keys.playerSlackIds()) {
+            removeFrom(byPlayer, new IndexKey(keys.workspaceId(), playerSlackId), gameId);
+        }
+    }
+
+    private static void addTo(ConcurrentMap<IndexKey, Set<UUID>> index, IndexKey key, UUID gameId) {
+        index.compute(key, (k, gameIds) -> {
+            var updated = gameIds == null ? ConcurrentHashMap.<UUID>newKeySet() : gameIds;
+            updated.add(gameId);
+            return updated;
+        });
+    }
+
+    private static void removeFrom(ConcurrentMap<IndexKey, Set<UUID>> index, IndexKey key, UUID gameId) {
+        // Drop empty entries so users and channels that no longer have games don't pile up
+        index.computeIfPresent(key, (k, gameIds) -> {
+            gameIds.remove(gameId);
+            return gameIds.isEmpty() ? null : gameIds;
+        });
+    }
+}
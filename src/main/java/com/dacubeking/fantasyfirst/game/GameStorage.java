@@ -0,0 +1,47 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Where the {@link GameRegistry} loads games from that aren't in memory yet
+ */
+public interface GameStorage {
+
+    /**
+     * What the registry indexes a stored game under, so it can find the game without loading it
+     */
+    record StoredGame(String workspaceId, UUID gameId, String ownerSlackId, String channelId,
+                      Set<String> playerSlackIds) implements Serializable {
+
+        /**
+         * Must be called while holding the game's lock
+         */
+        public static StoredGame of(String workspaceId, Game game) {
+            var playerSlackIds = new HashSet<String>();
+            for (Player player : game.getPlayers()) {
+                playerSlackIds.add(player.slackId());
+            }
+            return new StoredGame(workspaceId, game.getGameUuid(), game.getGameOwnerSlackId(), game.getChannelId(),
+                    Set.copyOf(playerSlackIds));
+        }
+    }
+
+    /**
+     * Read a game from storage
+     *
+     * @return The game, or null if it isn't stored
+     */
+    @Nullable Game load(String workspaceId, UUID gameId);
+
+    /**
+     * @return Every stored game, loaded or not
+     */
+    Collection<StoredGame> getStoredGames();
+}
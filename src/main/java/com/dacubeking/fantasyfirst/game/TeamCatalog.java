@@ -0,0 +1,231 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.game.Game.Team;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable list of teams sorted by team number, which games refer to by index.
+ * <p>
+ * Catalogs for TBA events are interned by event code, so every game created for an event, and every draft it gets split
+ * into, shares one catalog and one set of {@link Team} instances. Each game only tracks which indexes are still
+ * available (see {@link TeamPool}). Catalogs are also interned again when they're deserialized, so loading a save file
+ * doesn't create a copy per game.
+ */
+public final class TeamCatalog implements Serializable {
+
+    private static final long serialVersionUID = -2893146271049820635L;
+
+    private static final ConcurrentMap<String, TeamCatalog> eventCatalogs = new ConcurrentHashMap<>();
+
+    private final @Nullable String eventCode; // Null for catalogs that aren't shared between events' games
+    private final Team[] teams;
+
+    // Team number -> index, rebuilt after deserialization
+    private transient int[] numberSlots; // Team number + 1, 0 marks an empty slot
+    private transient int[] indexSlots;
+    private transient Map<UUID, Integer> indexByUuid;
+    private transient volatile long fingerprint; // 0 until it's first needed
+
+    private TeamCatalog(@Nullable String eventCode, Collection<Team> teams) {
+        this.eventCode = eventCode;
+        var unique = new LinkedHashMap<UUID, Team>();
+        for (Team team : teams) {
+            unique.putIfAbsent(team.uuid(), team);
+        }
+        this.teams = unique.values().toArray(new Team[0]);
+        Arrays.sort(this.teams, Comparator.comparingInt(team -> Integer.parseInt(team.number())));
+        buildIndexes();
+    }
+
+    /**
+     * Create a catalog that belongs to a single game (and the drafts it's split into)
+     */
+    public static TeamCatalog of(Collection<Team> teams) {
+        return new TeamCatalog(null, teams);
+    }
+
+    /**
+     * Restore a stored catalog, sharing the loaded catalog for the event if it has the same teams
+     *
+     * @param teams The teams, already sorted by number without duplicates, so their indexes are kept
+     */
+    static TeamCatalog restore(@Nullable String eventCode, Team[] teams) {
+        if (eventCode != null) {
+            var existing = eventCatalogs.get(eventCode);
+            if (existing != null && Arrays.equals(existing.teams, teams)) {
+                return existing;
+            }
+        }
+        return (TeamCatalog) new TeamCatalog(eventCode, Arrays.asList(teams)).readResolve();
+    }
+
+    /**
+     * Get the shared catalog for an event, creating a new one if the event's team list changed
+     *
+     * @param eventCode   The TBA event code
+     * @param teamNumbers The team numbers at the event
+     */
+    public static TeamCatalog forEvent(String eventCode, List<String> teamNumbers) {
+        return eventCatalogs.compute(eventCode, (key, existing) -> {
+            if (existing != null && existing.hasTeamNumbers(teamNumbers)) {
+                return existing;
+            }
+            var teams = new ArrayList<Team>(teamNumbers.size());
+            for (String teamNumber : teamNumbers) {
+                teams.add(new Team(teamNumber.intern()));
+            }
+            return new TeamCatalog(eventCode, teams);
+        });
+    }
+
+    private boolean hasTeamNumbers(List<String> teamNumbers) {
+        if (teamNumbers.size() != teams.length) {
+            return false;
+        }
+        for (String teamNumber : teamNumbers) {
+            if (indexOf(teamNumber) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return A new, unshared catalog with an extra team
+     */
+    public TeamCatalog with(Team team) {
+        var withTeam = new ArrayList<>(Arrays.asList(teams));
+        withTeam.add(team);
+        return new TeamCatalog(null, withTeam);
+    }
+
+    private void buildIndexes() {
+        int capacity = Integer.highestOneBit(Math.max(4, teams.length * 2) - 1) << 1;
+        numberSlots = new int[capacity];
+        indexSlots = new int[capacity];
+        indexByUuid = new HashMap<>(teams.length * 2);
+        for (int i = 0; i < teams.length; i++) {
+            int number = Integer.parseInt(teams[i].number());
+            int slot = slotFor(number);
+            if (numberSlots[slot] == 0) {
+                // The first team with a number wins, same as a linear search would
+                numberSlots[slot] = number + 1;
+                indexSlots[slot] = i;
+            }
+            indexByUuid.put(teams[i].uuid(), i);
+        }
+    }
+
+    /**
+     * @return The slot holding the number, or the empty slot it would go in
+     */
+    private int slotFor(int number) {
+        int mask = numberSlots.length - 1;
+        int slot = (number * 0x9E3779B9 >>> 16) & mask;
+        while (numberSlots[slot] != 0 && numberSlots[slot] != number + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return The index of the team with the number, or -1 if there is no such team
+     */
+    public int indexOf(String teamNumber) {
+        int number;
+        try {
+            number = Integer.parseInt(teamNumber);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (number < 0) {
+            return -1;
+        }
+        int slot = slotFor(number);
+        return numberSlots[slot] == 0 ? -1 : indexSlots[slot];
+    }
+
+    /**
+     * @return The index of the team with the UUID, or -1 if there is no such team
+     */
+    public int indexOf(UUID teamUuid) {
+        var index = indexByUuid.get(teamUuid);
+        return index == null ? -1 : index;
+    }
+
+    public Team get(int index) {
+        return teams[index];
+    }
+
+    public int size() {
+        return teams.length;
+    }
+
+    @Nullable String getEventCode() {
+        return eventCode;
+    }
+
+    /**
+     * @return A hash of every team, stable across restarts, that tells apart the versions of an event's team list
+     */
+    long getFingerprint() {
+        long fingerprint = this.fingerprint;
+        if (fingerprint != 0) {
+            return fingerprint;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256
+        }
+        var uuid = ByteBuffer.allocate(2 * Long.BYTES);
+        for (Team team : teams) {
+            for (String field : new String[]{team.name(), team.number(), team.elo()}) {
+                // Null and each field's end are marked, so different teams can't hash the same bytes
+                digest.update((byte) (field == null ? 0 : 1));
+                if (field != null) {
+                    digest.update(field.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                }
+            }
+            digest.update(uuid.clear().putLong(team.uuid().getMostSignificantBits())
+                    .putLong(team.uuid().getLeastSignificantBits()).array());
+        }
+        fingerprint = ByteBuffer.wrap(digest.digest()).getLong();
+        this.fingerprint = fingerprint == 0 ? 1 : fingerprint;
+        return this.fingerprint;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        buildIndexes();
+    }
+
+    /**
+     * Share one instance per event between everything that's loaded
+     */
+    private Object readResolve() {
+        if (eventCode == null) {
+            return this;
+        }
+        var existing = eventCatalogs.putIfAbsent(eventCode, this);
+        return existing != null && Arrays.equals(existing.teams, teams) ? existing : this;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(teams);
+    }
+}
@@ -0,0 +1,171 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.game.Game.Team;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The teams of a game and which of them are still available to pick.
+ * <p>
+ * The teams themselves live in a {@link TeamCatalog}, usually shared with every other game for the same event, and a
+ * bitset over the catalog's indexes marks the ones this game still has available. Picking, releasing and removing a team
+ * are constant time and listing the available teams is linear in the number of teams, already sorted by number. Not
+ * thread safe, guarded by the owning game's lock.
+ */
+public class TeamPool implements Serializable {
+
+    private static final long serialVersionUID = 3079284136415096519L;
+
+    private TeamCatalog teamCatalog;
+    private final BitSet available;
+
+    /**
+     * Create a pool where every team in the catalog is available
+     */
+    public TeamPool(TeamCatalog teamCatalog) {
+        this.teamCatalog = teamCatalog;
+        this.available = new BitSet(teamCatalog.size());
+        available.set(0, teamCatalog.size());
+    }
+
+    /**
+     * Create a pool with its own catalog where every team is available
+     */
+    public TeamPool(Collection<Team> teams) {
+        this(teams, List.of());
+    }
+
+    /**
+     * Create a pool with its own catalog
+     *
+     * @param availableTeams Teams that can still be picked
+     * @param pickedTeams    Teams that are in the catalog but have already been picked
+     */
+    public TeamPool(Collection<Team> availableTeams, Collection<Team> pickedTeams) {
+        var teams = new ArrayList<Team>(availableTeams);
+        teams.addAll(pickedTeams);
+        this.teamCatalog = TeamCatalog.of(teams);
+        this.available = new BitSet(teamCatalog.size());
+        for (Team team : availableTeams) {
+            available.set(teamCatalog.indexOf(team.uuid()));
+        }
+    }
+
+    TeamPool(TeamCatalog teamCatalog, BitSet available) {
+        this.teamCatalog = teamCatalog;
+        this.available = available;
+    }
+
+    /**
+     * @return A pool sharing this pool's catalog, with the same teams available
+     */
+    public TeamPool copy() {
+        return new TeamPool(teamCatalog, (BitSet) available.clone());
+    }
+
+    public TeamCatalog getCatalog() {
+        return teamCatalog;
+    }
+
+    /**
+     * @return The available team with the number, or null if there is no such team or it has been picked
+     */
+    public @Nullable Team getAvailable(String teamNumber) {
+        int index = teamCatalog.indexOf(teamNumber);
+        return index >= 0 && available.get(index) ? teamCatalog.get(index) : null;
+    }
+
+    /**
+     * @return The available team with the UUID, or null if there is no such team or it has been picked
+     */
+    public @Nullable Team getAvailable(UUID teamUuid) {
+        int index = teamCatalog.indexOf(teamUuid);
+        return index >= 0 && available.get(index) ? teamCatalog.get(index) : null;
+    }
+
+    /**
+     * Mark a team as picked
+     *
+     * @return true if the team was available
+     */
+    public boolean take(Team team) {
+        int index = teamCatalog.indexOf(team.uuid());
+        if (index < 0 || !available.get(index)) {
+            return false;
+        }
+        available.clear(index);
+        return true;
+    }
+
+    /**
+     * Make a team available again, e.g. after the player that picked it left. Teams that aren't in the catalog yet are
+     * added to it.
+     */
+    public void release(Team team) {
+        int index = teamCatalog.indexOf(team.uuid());
+        if (index < 0) {
+            add(team);
+        } else {
+            available.set(index);
+        }
+    }
+
+    /**
+     * Add a new team as available. The game stops sharing its catalog, so this is only meant for rare manual edits.
+     */
+    public void add(Team team) {
+        if (teamCatalog.indexOf(team.uuid()) >= 0) {
+            release(team);
+            return;
+        }
+
+        var availableTeams = getAvailableTeams();
+        teamCatalog = teamCatalog.with(team);
+
+        // Indexes have shifted, mark the available teams again
+        available.clear();
+        for (Team availableTeam : availableTeams) {
+            available.set(teamCatalog.indexOf(availableTeam.uuid()));
+        }
+        available.set(teamCatalog.indexOf(team.uuid()));
+    }
+
+    /**
+     * Make a team unavailable without it being picked. The team stays in the catalog.
+     */
+    public void remove(Team team) {
+        int index = teamCatalog.indexOf(team.uuid());
+        if (index >= 0) {
+            available.clear(index);
+        }
+    }
+
+    /**
+     * @return The available teams, sorted by team number
+     */
+    public List<Team> getAvailableTeams() {
+        var teams = new ArrayList<Team>(available.cardinality());
+        for (int i = available.nextSetBit(0); i >= 0; i = available.nextSetBit(i + 1)) {
+            teams.add(teamCatalog.get(i));
+        }
+        return teams;
+    }
+
+    public int getAvailableCount() {
+        return available.cardinality();
+    }
+
+    /**
+     * @return The catalog indexes of the available teams. Not a copy, callers must not modify it.
+     */
+    BitSet getAvailableIndexes() {
+        return available;
+    }
+
+    @Override
+    public String toString() {
+        return getAvailableTeams().toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.dacubeking.fantasyfirst.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * A total that only goes up, like bytes written. Create with {@link Metrics#counter(String, String)}.
+ */
+public final class Counter implements Metrics.Metric {
+
+    private final String name;
+    private final String help;
+    private final DoubleAdder total = new DoubleAdder();
+
+    Counter(String name, String help) {
+        if (!name.endsWith("_total")) {
+            throw new IllegalArgumentException("Counter names end with _total: " + name);
+        }
+        this.name = name;
+        this.help = help;
+    }
+
+    public void increment(double amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Counters can't go down");
+        }
+        total.add(amount);
+    }
+
+    @Override
+    public void writeTo(StringBuilder out) {
+        Metrics.writeHeader(out, name, help, "counter");
+        Metrics.writeSample(out, name, new String[0], List.of(), null, null, total.sum());
+    }
+}
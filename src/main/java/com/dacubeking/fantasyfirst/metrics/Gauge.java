@@ -0,0 +1,35 @@
+package com.dacubeking.fantasyfirst.metrics;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A value computed from the bot's state when the metrics are scraped, optionally split by one label. Register with
+ * {@link Metrics#gauge}.
+ */
+final class Gauge implements Metrics.Metric {
+
+    private final String name;
+    private final String help;
+    private final String[] labelNames;
+    private final Supplier<? extends Map<String, ? extends Number>> values;
+
+    Gauge(String name, String help, @Nullable String labelName,
+          Supplier<? extends Map<String, ? extends Number>> values) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = labelName == null ? new String[0] : new String[]{labelName};
+        this.values = values;
+    }
+
+    @Override
+    public void writeTo(StringBuilder out) {
+        var samples = values.get();
+        Metrics.writeHeader(out, name, help, "gauge");
+        samples.forEach((labelValue, value) -> Metrics.writeSample(out, name, labelNames,
+                labelNames.length == 0 ? List.of() : List.of(labelValue), null, null, value.doubleValue()));
+    }
+}
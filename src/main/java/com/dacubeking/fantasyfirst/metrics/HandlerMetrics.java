@@ -0,0 +1,61 @@
+package com.dacubeking.fantasyfirst.metrics;
+
+import com.slack.api.bolt.middleware.Middleware;
+import com.slack.api.bolt.middleware.MiddlewareChain;
+import com.slack.api.bolt.request.Request;
+import com.slack.api.bolt.request.builtin.BlockActionRequest;
+import com.slack.api.bolt.request.builtin.EventRequest;
+import com.slack.api.bolt.request.builtin.SlashCommandRequest;
+import com.slack.api.bolt.request.builtin.ViewSubmissionRequest;
+import com.slack.api.bolt.response.Response;
+
+import java.util.regex.Pattern;
+
+/**
+ * Bolt middleware that times how long each handler takes to ack, i.e. everything the bot does between verifying a
+ * request and sending its response. Slack gives up on requests that take longer than 3 seconds.
+ */
+public class HandlerMetrics implements Middleware {
+
+    private static final Histogram ACK_SECONDS = Metrics.histogram("fantasyfirst_handler_ack_seconds",
+            "Time from a verified request reaching its handler to the handler's response",
+            Metrics.LATENCY_BUCKETS, "handler", "status");
+
+    // Ids that some action and callback ids end with, so every game's requests share a label
+    private static final Pattern ID_SUFFIX = Pattern.compile(
+            ",.*$|[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
+
+    @Override
+    @SuppressWarnings("rawtypes") // Bolt's Middleware declares the raw type, Request<?> wouldn't override it
+    public Response apply(Request req, Response resp, MiddlewareChain chain) throws Exception {
+        long start = System.nanoTime();
+        var status = "error";
+        try {
+            var response = chain.next(req);
+            status = String.valueOf(response.getStatusCode());
+            return response;
+        } finally {
+            ACK_SECONDS.labels(handlerOf(req), status).observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return e.g. {@code block_actions:joinGame}, {@code view_submission:team_pick_number} or
+     * {@code event:app_home_opened}
+     */
+    public static String handlerOf(Request<?> req) {
+        if (req instanceof EventRequest eventRequest) {
+            return "event:" + eventRequest.getEventType();
+        } else if (req instanceof BlockActionRequest blockActionRequest) {
+            var actions = blockActionRequest.getPayload().getActions();
+            return "block_actions" + (actions == null || actions.isEmpty() ? ""
+                    : ":" + ID_SUFFIX.matcher(actions.get(0).getActionId()).replaceFirst(""));
+        } else if (req instanceof ViewSubmissionRequest viewSubmissionRequest) {
+            return "view_submission:"
+                    + ID_SUFFIX.matcher(viewSubmissionRequest.getPayload().getView().getCallbackId()).replaceFirst("");
+        } else if (req instanceof SlashCommandRequest slashCommandRequest) {
+            return "command:" + slashCommandRequest.getPayload().getCommand();
+        }
+        return req.getRequestType().name();
+    }
+}
@@ -0,0 +1,107 @@
+package com.dacubeking.fantasyfirst.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations into fixed buckets, one set of buckets per combination of label values. Create with
+ * {@link Metrics#histogram(String, String, double[], String...)}.
+ */
+public final class Histogram implements Metrics.Metric {
+
+    /**
+     * Past this many label combinations new ones are all recorded as {@link #OVERFLOW_LABEL}, so an unexpected label
+     * value can't grow the metrics without bound
+     */
+    private static final int MAX_CHILDREN = 500;
+    public static final String OVERFLOW_LABEL = "other";
+
+    private final String name;
+    private final String help;
+    private final double[] buckets;
+    private final String[] labelNames;
+    private final ConcurrentMap<List<String>, Child> children = new ConcurrentHashMap<>();
+
+    Histogram(String name, String help, double[] buckets, String[] labelNames) {
+        for (int i = 1; i < buckets.length; i++) {
+            if (buckets[i] <= buckets[i - 1]) {
+                throw new IllegalArgumentException("Buckets of " + name + " must be increasing: "
+                        + Arrays.toString(buckets));
+            }
+        }
+        this.name = name;
+        this.help = help;
+        this.buckets = buckets.clone();
+        this.labelNames = labelNames.clone();
+    }
+
+    /**
+     * @param labelValues One value per label name, in the order they were registered
+     * @return The histogram for the label values
+     */
+    public Child labels(String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException("Expected " + labelNames.length + " label values for " + name + " but got "
+                    + labelValues.length);
+        }
+        var key = List.of(labelValues);
+        var child = children.get(key);
+        if (child != null) {
+            return child;
+        }
+        if (children.size() >= MAX_CHILDREN) {
+            var overflow = new String[labelNames.length];
+            Arrays.fill(overflow, OVERFLOW_LABEL);
+            key = List.of(overflow);
+        }
+        return children.computeIfAbsent(key, k -> new Child());
+    }
+
+    /**
+     * Observations for one combination of label values
+     */
+    public final class Child {
+        private final LongAdder[] counts = new LongAdder[buckets.length + 1]; // Not cumulative, the last one is +Inf
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Child() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            int bucket = Arrays.binarySearch(buckets, value);
+            // An exact match goes in that bucket since bounds are inclusive, otherwise the first bucket above the value
+            counts[bucket >= 0 ? bucket : -bucket - 1].increment();
+            sum.add(value);
+        }
+
+        /**
+         * Observe a duration in seconds
+         */
+        public void observeNanos(long nanos) {
+            observe(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    public void writeTo(StringBuilder out) {
+        Metrics.writeHeader(out, name, help, "histogram");
+        children.forEach((labelValues, child) -> {
+            long cumulative = 0;
+            for (int i = 0; i < child.counts.length; i++) {
+                cumulative += child.counts[i].sum();
+                var le = i < buckets.length ? Metrics.format(buckets[i]) : "+Inf";
+                Metrics.writeSample(out, name + "_bucket", labelNames, labelValues, "le", le, cumulative);
+            }
+            Metrics.writeSample(out, name + "_sum", labelNames, labelValues, null, null, child.sum.sum());
+            Metrics.writeSample(out, name + "_count", labelNames, labelValues, null, null, cumulative);
+        });
+    }
+}
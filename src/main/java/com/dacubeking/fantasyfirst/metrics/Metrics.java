@@ -0,0 +1,164 @@
+package com.dacubeking.fantasyfirst.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The bot's metrics, exposed in the Prometheus text format by {@link com.dacubeking.fantasyfirst.server.MetricsServlet}.
+ * <p>
+ * Metrics are registered once, usually into a static field next to the code that records them, and recording is lock
+ * free so it can happen on request threads. Gauges are computed when the metrics are scraped.
+ *
+ * @see <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus exposition formats</a>
+ */
+public final class Metrics {
+
+    /**
+     * Latency buckets in seconds, with a boundary at Slack's 3 second ack deadline
+     */
+    public static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2, 3, 5, 10};
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final ConcurrentMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    /**
+     * Something that can write its samples, see {@link #writeTo(StringBuilder)}
+     */
+    interface Metric {
+        void writeTo(StringBuilder out);
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Register a histogram, or get the one already registered under the name
+     *
+     * @param name       The metric name, e.g. {@code fantasyfirst_handler_ack_seconds}
+     * @param help       What the metric measures
+     * @param buckets    The upper bounds of the buckets, in increasing order
+     * @param labelNames The names of the labels every observation is made with
+     */
+    public static Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(name, () -> new Histogram(name, help, buckets, labelNames), Histogram.class);
+    }
+
+    /**
+     * Register a counter, or get the one already registered under the name
+     */
+    public static Counter counter(String name, String help) {
+        return register(name, () -> new Counter(name, help), Counter.class);
+    }
+
+    /**
+     * Register a gauge computed when the metrics are scraped, replacing any gauge registered under the name
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        metrics.put(name, new Gauge(name, help, null, () -> Map.of("", value.getAsDouble())));
+    }
+
+    /**
+     * Register a gauge with one label, computed when the metrics are scraped, replacing any gauge registered under the
+     * name
+     *
+     * @param labelName The label the keys of the supplied map are exposed as
+     * @param values    Supplies the value of each label
+     */
+    public static void gauge(String name, String help, String labelName,
+                             Supplier<? extends Map<String, ? extends Number>> values) {
+        metrics.put(name, new Gauge(name, help, labelName, values));
+    }
+
+    private static <T extends Metric> T register(String name, Supplier<T> create, Class<T> type) {
+        var metric = metrics.computeIfAbsent(name, key -> create.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Write every registered metric in the Prometheus text format
+     */
+    public static void writeTo(StringBuilder out) {
+        for (Metric metric : metrics.values()) {
+            try {
+                metric.writeTo(out);
+            } catch (Exception e) {
+                // A broken gauge shouldn't take the other metrics down with it
+                System.out.println("Error collecting metrics");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ');
+        for (int i = 0; i < help.length(); i++) {
+            char c = help.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        out.append('\n').append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a single sample
+     *
+     * @param extraLabel A label that isn't in {@code labelNames}, like a histogram's {@code le}, or null
+     */
+    static void writeSample(StringBuilder out, String name, String[] labelNames, List<String> labelValues,
+                            String extraLabel, String extraValue, double value) {
+        out.append(name);
+        if (labelNames.length > 0 || extraLabel != null) {
+            out.append('{');
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeLabel(out, labelNames[i], labelValues.get(i));
+            }
+            if (extraLabel != null) {
+                if (labelNames.length > 0) {
+                    out.append(',');
+                }
+                writeLabel(out, extraLabel, extraValue);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static void writeLabel(StringBuilder out, String name, String value) {
+        out.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,65 @@
+package com.dacubeking.fantasyfirst.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Times every HTTP call the Slack client makes, whether it comes from the {@link com.dacubeking.fantasyfirst.slack.SlackOutbox}
+ * or straight from a handler. Retries show up as separate calls.
+ * <p>
+ * The status is {@code ok}, the {@code error} Slack answered with (e.g. {@code channel_not_found}), {@code http_<code>}
+ * for HTTP errors like 429s, or {@code io_error} when there was no response at all. Install with
+ * {@link com.dacubeking.fantasyfirst.slack.SlackClients#withInterceptors}.
+ */
+public class SlackCallMetrics implements Interceptor {
+
+    private static final Histogram CALL_SECONDS = Metrics.histogram("fantasyfirst_slack_api_call_seconds",
+            "Duration of Slack Web API calls, including response_url posts", Metrics.LATENCY_BUCKETS, "method", "status");
+
+    // Slack puts "ok" first and the error right after it, so the start of the body is enough
+    private static final long PEEK_BYTES = 256;
+    private static final Pattern ERROR = Pattern.compile("\"error\"\\s*:\\s*\"([a-z0-9_]{1,64})\"");
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        var method = methodOf(chain.request().url().encodedPath());
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException e) {
+            CALL_SECONDS.labels(method, "io_error").observeNanos(System.nanoTime() - start);
+            throw e;
+        }
+        CALL_SECONDS.labels(method, statusOf(response)).observeNanos(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * @return The Web API method, e.g. {@code chat.postMessage} for {@code /api/chat.postMessage}
+     */
+    private static String methodOf(String path) {
+        int api = path.indexOf("/api/");
+        if (api < 0) {
+            return "response_url";
+        }
+        var method = path.substring(api + "/api/".length());
+        return method.isEmpty() || method.contains("/") ? "unknown" : method;
+    }
+
+    private static String statusOf(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            return "http_" + response.code();
+        }
+        var body = response.peekBody(PEEK_BYTES).string();
+        if (body.startsWith("{\"ok\":true") || !body.startsWith("{")) {
+            // response_url posts answer with a plain "ok"
+            return "ok";
+        }
+        var error = ERROR.matcher(body);
+        return error.find() ? error.group(1) : "ok";
+    }
+}
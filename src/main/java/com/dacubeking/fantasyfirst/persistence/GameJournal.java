@@ -0,0 +1,381 @@
+package com.dacubeking.fantasyfirst.persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of {@link GameMutation}s.
+ * <p>
+ * Every mutation is written to the journal file as a length-prefixed, checksummed frame, tagged with a sequence number
+ * that keeps increasing across compactions and restarts. The file is fsynced in batches
+ * on a background thread rather than on every append. Periodically (or once the journal grows past a size threshold) the
+ * journal is compacted: the current journal is rotated out, the changed games are written to the {@link GameStore}, and
+ * the rotated journal is deleted.
+ * <p>
+ * On startup the store is opened first and then {@link #replay(ObjLongConsumer)} applies the rotated journal (if a
+ * compaction was interrupted) followed by the current journal. A torn frame at the end of a journal, left by a crash
+ * mid-write, ends the replay there.
+ */
+public class GameJournal implements Closeable {
+
+    private static final int FRAME_HEADER_BYTES = Integer.BYTES + Long.BYTES; // length + crc32
+    // Larger frames can only come from a corrupted length. Games are a few kilobytes.
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private final Path journalPath;
+    private final Path rotatedJournalPath;
+    private final Duration syncInterval;
+    private final Duration compactionInterval;
+    private final long compactionThresholdBytes;
+
+    private final Object lock = new Object();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "game-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel channel;
+    private boolean unsynced = false;
+    private long bytesSinceCompaction = 0;
+    private boolean compactionQueued = false;
+    private long lastSequence = 0;
+    private SnapshotWriter snapshotWriter;
+    private ChangeTracker changeTracker;
+
+    /**
+     * Writes every game changed since the last compaction
+     */
+    @FunctionalInterface
+    public interface SnapshotWriter {
+        void write() throws IOException;
+    }
+
+    /**
+     * Marks the game a mutation changes as changed, so the next {@link SnapshotWriter#write()} writes it
+     */
+    @FunctionalInterface
+    public interface ChangeTracker {
+        void changed(GameMutation mutation);
+    }
+
+    /**
+     * Create a new journal
+     *
+     * @param journalPath              The file to append mutations to
+     * @param syncInterval             How often appended mutations are fsynced to disk
+     * @param compactionInterval       How often the journal is compacted into the store
+     * @param compactionThresholdBytes The journal size after which a compaction is triggered early
+     */
+    public GameJournal(Path journalPath, Duration syncInterval, Duration compactionInterval, long compactionThresholdBytes) {
+        this.journalPath = journalPath;
+        this.rotatedJournalPath = journalPath.resolveSibling(journalPath.getFileName() + ".old");
+        this.syncInterval = syncInterval;
+        this.compactionInterval = compactionInterval;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    /**
+     * Read every mutation stored on disk, oldest first. Must be called after the store has been opened and before
+     * {@link #start(SnapshotWriter, ChangeTracker, long)}.
+     *
+     * @param apply Applies a mutation with its sequence number to the games, see
+     *              {@link GameMutation#apply(java.util.concurrent.ConcurrentMap, long)}
+     * @return The number of mutations that were replayed
+     */
+    public int replay(ObjLongConsumer<GameMutation> apply) throws IOException {
+        return replay(rotatedJournalPath, apply) + replay(journalPath, apply);
+    }
+
+    private int replay(Path path, ObjLongConsumer<GameMutation> apply) throws IOException {
+        return read(path, (mutation, sequence, payload) -> {
+            apply.accept(mutation, sequence);
+            lastSequence = Math.max(lastSequence, sequence);
+        });
+    }
+
+    @FunctionalInterface
+    private interface EntryReader {
+        void read(GameMutation mutation, long sequence, byte[] payload) throws IOException;
+    }
+
+    /**
+     * Read every entry of a journal file up to a torn or unreadable last entry
+     *
+     * @return The number of entries read
+     */
+    private int read(Path path, EntryReader reader) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        long size = Files.size(path);
+        long position = 0;
+        int replayed = 0;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (position < size) {
+                int length;
+                long checksum;
+                byte[] bytes;
+                try {
+                    length = in.readInt();
+                    checksum = in.readLong();
+                    // The checksum of an empty frame is 0, so a zero filled tail would otherwise pass it
+                    if (length <= 0 || length > MAX_FRAME_BYTES) {
+                        System.out.println("Journal " + path + " has an invalid entry length " + length + " after "
+                                + replayed + " mutations, ignoring the rest");
+                        break;
+                    }
+                    bytes = in.readNBytes(length);
+                } catch (EOFException e) {
+                    System.out.println("Journal " + path + " has a truncated entry after " + replayed + " mutations");
+                    break;
+                }
+                position += FRAME_HEADER_BYTES + length;
+
+                if (bytes.length != length || checksum(bytes) != checksum) {
+                    // A torn write from a crash, everything after this point never made it to disk
+                    System.out.println("Journal " + path + " has a truncated entry after " + replayed + " mutations");
+                    break;
+                }
+
+                long sequence;
+                GameMutation mutation;
+                try {
+                    var payload = new DataInputStream(new ByteArrayInputStream(bytes));
+                    sequence = payload.readLong();
+                    try (var ois = new ObjectInputStream(payload)) {
+                        mutation = (GameMutation) ois.readObject();
+                    }
+                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    if (position >= size && e instanceof IOException) {
+                        System.out.println("Journal " + path + " has an unreadable last entry after " + replayed
+                                + " mutations, ignoring it");
+                        e.printStackTrace();
+                        break;
+                    }
+                    System.out.println("Journal " + path + " is corrupted");
+                    throw new IOException(e);
+                }
+
+                reader.read(mutation, sequence, bytes);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Open the journal for appending and start the background sync and compaction tasks
+     *
+     * @param snapshotWriter     Writes the changed games. Called from the journal thread during compaction.
+     * @param changeTracker      Marks the game of each appended mutation as changed, before the mutation is written
+     * @param lastStoredSequence The highest sequence number any stored game contains, new entries are numbered after it
+     *                           and after every replayed entry
+     */
+    public void start(SnapshotWriter snapshotWriter, ChangeTracker changeTracker, long lastStoredSequence)
+            throws IOException {
+        synchronized (lock) {
+            this.snapshotWriter = snapshotWriter;
+            this.changeTracker = changeTracker;
+            lastSequence = Math.max(lastSequence, lastStoredSequence);
+            openChannel();
+        }
+
+        executor.scheduleWithFixedDelay(this::sync, syncInterval.toMillis(), syncInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::compact, compactionInterval.toMillis(), compactionInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        bytesSinceCompaction = channel.size();
+    }
+
+    /**
+     * Append a mutation to the journal. The mutation is written immediately but only fsynced on the next sync interval.
+     * Must be called while holding the lock of the game the mutation changes, so the sequence numbers of a game's entries
+     * increase in the order the changes were made.
+     * <p>
+     * The game is marked as changed before the entry is written. A compaction that rotates out the entry therefore always
+     * writes the game, and as the game's lock is held until the caller has recorded the entry's sequence number in the
+     * game, the written game contains the entry.
+     *
+     * @return The entry's sequence number, to record in the game with {@link
+     * com.dacubeking.fantasyfirst.game.Game#setJournalSequence(long)}
+     */
+    public long append(GameMutation mutation) {
+        changeTracker.changed(mutation);
+
+        byte[] bytes;
+        try {
+            var bos = new ByteArrayOutputStream();
+            try (var oos = new ObjectOutputStream(bos)) {
+                oos.writeObject(mutation);
+            }
+            bytes = bos.toByteArray();
+        } catch (IOException e) {
+            System.out.println("Error serializing " + mutation.getClass().getSimpleName());
+            e.printStackTrace();
+            return 0;
+        }
+
+        synchronized (lock) {
+            // Numbered under the lock so entries are numbered in the order they're written
+            long sequence = ++lastSequence;
+            var payload = ByteBuffer.allocate(Long.BYTES + bytes.length).putLong(sequence).put(bytes).array();
+            var frame = frame(payload);
+
+            try {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+                unsynced = true;
+                bytesSinceCompaction += frame.limit();
+            } catch (IOException e) {
+                System.out.println("Error writing to journal");
+                e.printStackTrace();
+                return sequence;
+            }
+
+            if (bytesSinceCompaction > compactionThresholdBytes && !compactionQueued) {
+                compactionQueued = true;
+                executor.execute(this::compact);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Force all appended mutations to disk
+     */
+    public void sync() {
+        synchronized (lock) {
+            if (!unsynced) {
+                return;
+            }
+            try {
+                channel.force(false);
+                unsynced = false;
+            } catch (IOException e) {
+                System.out.println("Error syncing journal");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Rotate the journal, write the changed games and then drop the rotated journal. Mutations appended while the games
+     * are being written go to the new journal and may also be captured by the written games, which is why replay skips
+     * entries a game already contains.
+     * <p>
+     * If some games couldn't be written, the rotated journal is cut down to their entries and kept, and the next
+     * compaction appends the journal to it instead of replacing it. If we crash between appending and deleting the journal,
+     * replay sees those entries twice and skips them the second time, like entries a game already contains.
+     */
+    public void compact() {
+        try {
+            synchronized (lock) {
+                compactionQueued = false;
+                if (bytesSinceCompaction == 0) {
+                    return;
+                }
+
+                channel.force(false);
+                channel.close();
+                if (Files.exists(rotatedJournalPath)) {
+                    appendTo(rotatedJournalPath, journalPath);
+                    Files.delete(journalPath);
+                } else {
+                    Files.move(journalPath, rotatedJournalPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+                openChannel();
+                unsynced = false;
+            }
+
+            try {
+                snapshotWriter.write();
+                Files.deleteIfExists(rotatedJournalPath);
+            } catch (GameStore.UnwrittenGamesException e) {
+                // Everything else was written, only the unwritten games still need their entries
+                keepEntriesOf(e.getGameIds());
+                throw e;
+            }
+        } catch (Exception e) {
+            System.out.println("Error compacting journal");
+            e.printStackTrace();
+        }
+    }
+
+    private static void appendTo(Path target, Path source) throws IOException {
+        try (var out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             var in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(false);
+        }
+    }
+
+    /**
+     * Rewrite the rotated journal with only the entries of some games. Called from the journal thread only.
+     */
+    private void keepEntriesOf(Set<UUID> gameIds) throws IOException {
+        var tempPath = rotatedJournalPath.resolveSibling(rotatedJournalPath.getFileName() + ".tmp");
+        try (var out = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            read(rotatedJournalPath, (mutation, sequence, payload) -> {
+                if (gameIds.contains(mutation.gameId())) {
+                    var frame = frame(payload);
+                    while (frame.hasRemaining()) {
+                        out.write(frame);
+                    }
+                }
+            });
+            out.force(false);
+        }
+        Files.move(tempPath, rotatedJournalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        var frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.length);
+        frame.putInt(payload.length);
+        frame.putLong(checksum(payload));
+        frame.put(payload);
+        return frame.flip();
+    }
+
+    private static long checksum(byte[] bytes) {
+        var crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        synchronized (lock) {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+}
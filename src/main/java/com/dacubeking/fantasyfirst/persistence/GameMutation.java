@@ -0,0 +1,234 @@
+package com.dacubeking.fantasyfirst.persistence;
+
+import com.dacubeking.fantasyfirst.game.Game;
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.GameCodec;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A single change to the games map that is recorded in the {@link GameJournal}.
+ * <p>
+ * Mutations are replayed on top of the stored games at startup. A game may have been stored after a mutation to it was
+ * journaled, so each game remembers the sequence number of the last journal entry applied to it and
+ * {@link #apply(ConcurrentMap, long)} skips the entries it already contains. Mutations don't have to be idempotent on
+ * their own: e.g. replaying an unstart and a restart onto a game that already has picks after the restart would drop
+ * those picks.
+ */
+public sealed interface GameMutation extends Serializable {
+
+    String workspaceId();
+
+    UUID gameId();
+
+    /**
+     * Apply this mutation to the games map
+     *
+     * @param games The games map, keyed by workspace id and then game id
+     */
+    void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games);
+
+    /**
+     * Apply this mutation as the journal entry with a sequence number, unless the game already contains it
+     *
+     * @param sequence The entry's sequence number
+     * @return Whether the mutation was applied
+     */
+    default boolean apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games, long sequence) {
+        var game = find(games, workspaceId(), gameId());
+        if (game != null && sequence <= game.getJournalSequence()) {
+            return false;
+        }
+        apply(games);
+        var applied = find(games, workspaceId(), gameId());
+        if (applied != null && sequence > applied.getJournalSequence()) {
+            applied.setJournalSequence(sequence);
+        }
+        return true;
+    }
+
+    private static Game find(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games, String workspaceId, UUID gameId) {
+        var workspaceGames = games.get(workspaceId);
+        return workspaceGames == null ? null : workspaceGames.get(gameId);
+    }
+
+    /**
+     * Stores the full state of a game. Used when a game is created and for changes that don't have a dedicated mutation.
+     * The game is journaled encoded with {@link GameCodec}, the same way it's stored, rather than Java serialized.
+     */
+    record GameUpserted(String workspaceId, Game game) implements GameMutation {
+        @Override
+        public UUID gameId() {
+            return game.getGameUuid();
+        }
+
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            games.computeIfAbsent(workspaceId, k -> new ConcurrentHashMap<>()).put(game.getGameUuid(), game);
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            try {
+                return new Encoded(workspaceId, GameCodec.encode(game, false));
+            } catch (IOException e) {
+                var failure = new InvalidObjectException("Could not encode game " + game.getGameUuid());
+                failure.initCause(e);
+                throw failure;
+            }
+        }
+
+        private record Encoded(String workspaceId, byte[] game) implements Serializable {
+            private Object readResolve() throws ObjectStreamException {
+                try {
+                    return new GameUpserted(workspaceId, GameCodec.decode(game));
+                } catch (IOException e) {
+                    var failure = new InvalidObjectException("Could not decode a journaled game");
+                    failure.initCause(e);
+                    throw failure;
+                }
+            }
+        }
+    }
+
+    record GameDeleted(String workspaceId, UUID gameId) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var workspaceGames = games.get(workspaceId);
+            if (workspaceGames != null) {
+                workspaceGames.remove(gameId);
+            }
+        }
+    }
+
+    record PlayerAdded(String workspaceId, UUID gameId, String slackId, String name) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null && game.getPlayers().stream().noneMatch(player -> player.slackId().equals(slackId))) {
+                game.addPlayer(new Player(slackId, name));
+            }
+        }
+    }
+
+    record PlayerRemoved(String workspaceId, UUID gameId, String slackId) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.removePlayer(slackId);
+            }
+        }
+    }
+
+    /**
+     * A team was picked by the player whose turn it was. The pick is skipped if it isn't the picker's turn, or the team
+     * has already been picked.
+     *
+     * @param pickerSlackId The player that picked
+     */
+    record TeamPicked(String workspaceId, UUID gameId, String teamNumber, String pickerSlackId) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game == null) {
+                return;
+            }
+            var nextPlayerInDraft = game.getNextPlayerInDraft();
+            if (nextPlayerInDraft == null || !nextPlayerInDraft.slackId().equals(pickerSlackId)) {
+                System.out.println("Skipping journaled pick of " + teamNumber + " by " + pickerSlackId + " in game "
+                        + gameId + ", it isn't their turn");
+                return;
+            }
+            game.pickTeam(teamNumber);
+        }
+    }
+
+    /**
+     * The game was started. The draft order is recorded because starting a game shuffles the players.
+     */
+    record GameStarted(String workspaceId, UUID gameId, List<String> draftOrder) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.start(draftOrder);
+            }
+        }
+    }
+
+    record GameUnstarted(String workspaceId, UUID gameId) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.unStart();
+            }
+        }
+    }
+
+    record GameRenamed(String workspaceId, UUID gameId, String name) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.setGameName(name);
+            }
+        }
+    }
+
+    record AllianceSizeSet(String workspaceId, UUID gameId, int allianceSize) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.setAllianceSize(allianceSize);
+            }
+        }
+    }
+
+    /**
+     * The number of players the game is split into games of when it starts was changed
+     */
+    record TargetPlayerCountSet(String workspaceId, UUID gameId, int targetPlayerCount) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.setTargetPlayerCount(targetPlayerCount);
+            }
+        }
+    }
+
+    /**
+     * Pick notifications were turned on or off for the game
+     */
+    record PickNotificationsSet(String workspaceId, UUID gameId, boolean enabled) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.setPickNotifications(enabled);
+            }
+        }
+    }
+
+    /**
+     * New draft/registration messages were posted for the game
+     */
+    record MessagesPosted(String workspaceId, UUID gameId, List<String> messagesTs) implements GameMutation {
+        @Override
+        public void apply(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+            var game = find(games, workspaceId, gameId);
+            if (game != null) {
+                game.setLastMessagesTs(messagesTs);
+            }
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package com.dacubeking.fantasyfirst.persistence;
+
+import com.dacubeking.fantasyfirst.game.Game;
+import com.dacubeking.fantasyfirst.game.GameCodec;
+import com.dacubeking.fantasyfirst.game.GameLocks;
+import com.dacubeking.fantasyfirst.game.GameRegistry;
+import com.dacubeking.fantasyfirst.game.GameStorage;
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import com.dacubeking.fantasyfirst.metrics.Counter;
+import com.dacubeking.fantasyfirst.metrics.Histogram;
+import com.dacubeking.fantasyfirst.metrics.Metrics;
+import com.dacubeking.fantasyfirst.persistence.GameMutation.GameDeleted;
+import com.dacubeking.fantasyfirst.tracing.Tracer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Stores every game in its own file, grouped into a directory per workspace, with a manifest listing them all. Games
+ * are stored with {@link GameCodec}.
+ * <p>
+ * Every game of a TBA event shares the event's team catalog, so each version of an event's catalog is stored once in the
+ * catalog directory, named after the event and the catalog's fingerprint, and game files only refer to it. A catalog
+ * file is written before the first game that refers to it and is never changed afterwards. Catalog files aren't deleted
+ * along with their games, there's one per version of an event's team list and they're a few kilobytes each.
+ * <p>
+ * The manifest holds what the {@link com.dacubeking.fantasyfirst.game.GameRegistry} indexes games under, so startup only
+ * reads the manifest and a game's file is only read the first time the game is used. Changes mark their game dirty and
+ * writes only rewrite the dirty games' files, followed by the manifest. Every file is written to a temporary file,
+ * fsynced and atomically moved into place, and writes happen on a single dedicated thread.
+ * <p>
+ * Games are only ever changed while they're loaded, so a dirty game that isn't in the games map and was dropped from the
+ * manifest has been deleted and its file is removed. A store can be created over a directory that doesn't exist yet, in
+ * which case a legacy {@code games.ser} snapshot is migrated into it.
+ * <p>
+ * Games nobody needs in memory any more are moved to the cold tier by {@link #startEviction(GameRegistry, Duration,
+ * Duration)}: finished drafts and unstarted games that have been idle for long enough are rewritten deflated and
+ * dropped from the games map. {@link #load(String, UUID)} reads either form, so the
+ * registry loads them back transparently the next time they're used.
+ */
+public class GameStore implements GameStorage {
+
+    private static final String MANIFEST_FILE = "manifest.ser";
+    private static final String GAME_FILE_SUFFIX = ".game";
+    private static final String CATALOG_DIRECTORY = "catalogs";
+    private static final String CATALOG_FILE_SUFFIX = ".catalog";
+    // Slack ids are upper case letters and digits, anything else would be able to escape the directory
+    private static final Pattern WORKSPACE_ID = Pattern.compile("[A-Za-z0-9_-]+");
+    // TBA event codes, games of events with anything else in their code store their catalog themselves
+    private static final Pattern EVENT_CODE = Pattern.compile("[a-z0-9]{1,64}");
+
+    private static final Histogram WRITE_SECONDS = Metrics.histogram("fantasyfirst_store_write_seconds",
+            "Time to write the dirty games and the manifest", Metrics.LATENCY_BUCKETS);
+    private static final Counter WRITTEN_BYTES = Metrics.counter("fantasyfirst_store_written_bytes_total",
+            "Bytes written to game files and the manifest");
+    private static final Counter WRITTEN_GAMES = Metrics.counter("fantasyfirst_store_written_games_total",
+            "Game files written or deleted");
+    private static final Histogram LOAD_SECONDS = Metrics.histogram("fantasyfirst_store_load_seconds",
+            "Time to read a game that wasn't loaded yet", Metrics.LATENCY_BUCKETS);
+    private static final Counter EVICTED_GAMES = Metrics.counter("fantasyfirst_store_evicted_games_total",
+            "Idle games moved to the cold tier and dropped from memory");
+
+    private record GameKey(String workspaceId, UUID gameId) {
+    }
+
+    /**
+     * @param journalSequence The highest journal sequence number of any game written, see {@link #getJournalSequence()}
+     */
+    private record Manifest(long journalSequence, ArrayList<StoredGame> games) implements Serializable {
+    }
+
+    private final Path directory;
+    private final Path manifestPath;
+    private final Duration debounceWindow;
+    private final ConcurrentMap<String, ConcurrentMap<UUID, Game>> games;
+
+    private final ConcurrentMap<UUID, StoredGame> manifest = new ConcurrentHashMap<>();
+    private final Set<GameKey> dirty = ConcurrentHashMap.newKeySet();
+    private final CatalogFiles catalogs = new CatalogFiles();
+    private final AtomicLong journalSequence = new AtomicLong();
+
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private long openedNanos = System.nanoTime();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "game-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Create a new store. Call {@link #open(Path)} before using it.
+     *
+     * @param directory      The directory holding the manifest and a directory of game files per workspace
+     * @param debounceWindow How long to wait after the first write request before writing, coalescing any requests that
+     *                       arrive in the meantime
+     * @param games          The loaded games, keyed by workspace id and then game id
+     */
+    public GameStore(Path directory, Duration debounceWindow, ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) {
+        this.directory = directory;
+        this.manifestPath = directory.resolve(MANIFEST_FILE);
+        this.debounceWindow = debounceWindow;
+        this.games = games;
+    }
+
+    /**
+     * Read the manifest. If there is none yet and a legacy snapshot exists, every game in the snapshot is loaded and
+     * written to the store, and the snapshot is renamed to {@code <snapshot>.migrated}.
+     *
+     * @param legacySnapshot A Java serialized map of every game, keyed by workspace id and then game id, the way games
+     *                       were saved before the store
+     */
+    @SuppressWarnings("unchecked")
+    public void open(Path legacySnapshot) throws IOException {
+        openedNanos = System.nanoTime();
+        Files.createDirectories(directory);
+        if (Files.exists(manifestPath)) {
+            try (var ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(manifestPath)))) {
+                var read = (Manifest) ois.readObject();
+                journalSequence.set(read.journalSequence());
+                for (StoredGame stored : read.games()) {
+                    manifest.put(stored.gameId(), stored);
+                }
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Game manifest " + manifestPath + " is corrupted", e);
+            }
+            System.out.println("Found " + manifest.size() + " stored games");
+            return;
+        }
+
+        if (!Files.exists(legacySnapshot)) {
+            return;
+        }
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> snapshot;
+        try {
+            try (var ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacySnapshot)))) {
+                snapshot = (ConcurrentMap<String, ConcurrentMap<UUID, Game>>) ois.readObject();
+            }
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Save file " + legacySnapshot + " is corrupted", e);
+        }
+        snapshot.forEach((workspaceId, workspaceGames) -> {
+            games.computeIfAbsent(workspaceId, k -> new ConcurrentHashMap<>()).putAll(workspaceGames);
+            workspaceGames.keySet().forEach(gameId -> dirty.add(new GameKey(workspaceId, gameId)));
+        });
+        int migrated = dirty.size();
+        write();
+        Files.move(legacySnapshot, legacySnapshot.resolveSibling(legacySnapshot.getFileName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Migrated " + migrated + " games from " + legacySnapshot + " to " + directory);
+    }
+
+    @Override
+    public @Nullable Game load(String workspaceId, UUID gameId) {
+        var stored = manifest.get(gameId);
+        if (stored == null || !stored.workspaceId().equals(workspaceId)) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        try {
+            return GameCodec.decode(Files.readAllBytes(gamePath(workspaceId, gameId)), catalogs);
+        } catch (IOException e) {
+            System.out.println("Error loading game " + gameId);
+            e.printStackTrace();
+            return null;
+        } finally {
+            LOAD_SECONDS.labels().observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Collection<StoredGame> getStoredGames() {
+        return Collections.unmodifiableCollection(manifest.values());
+    }
+
+    /**
+     * @return The highest journal sequence number any stored game contains. The journal has to number new entries after
+     * it, so that replay never mistakes a new entry for one a stored game already contains.
+     */
+    public long getJournalSequence() {
+        return journalSequence.get();
+    }
+
+    /**
+     * @return The number of games in the manifest, loaded or not
+     */
+    public int size() {
+        return manifest.size();
+    }
+
+    /**
+     * Mark the game a journaled mutation changed as dirty. Deleted games are dropped from the manifest straight away so
+     * they can't be loaded again.
+     */
+    public void changed(GameMutation mutation) {
+        if (mutation instanceof GameDeleted) {
+            manifest.remove(mutation.gameId());
+        }
+        dirty.add(new GameKey(mutation.workspaceId(), mutation.gameId()));
+    }
+
+    /**
+     * Mark a game as dirty and write it once the debounce window has passed
+     */
+    public void requestWrite(String workspaceId, UUID gameId) {
+        dirty.add(new GameKey(workspaceId, gameId));
+        if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(() -> {
+                    try {
+                        write();
+                    } catch (IOException e) {
+                        System.out.println("Error saving");
+                        e.printStackTrace();
+                    }
+                }, debounceWindow.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // We're shutting down, flush() will pick up the dirty game
+            }
+        }
+    }
+
+    /**
+     * Periodically move idle games to the cold tier on the store's thread. Games in the middle of a draft are never
+     * evicted.
+     *
+     * @param finishedIdle  How long a finished draft has to go unused before it's evicted
+     * @param unstartedIdle How long a game that hasn't started has to go unused before it's evicted
+     */
+    public void startEviction(GameRegistry registry, Duration finishedIdle, Duration unstartedIdle) {
+        // Idle games are evicted within a minute, or within the idle time if that's shorter
+        long interval = Math.max(1, Collections.min(List.of(finishedIdle, unstartedIdle, Duration.ofMinutes(1)))
+                .toMillis());
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                evictIdle(registry, finishedIdle, unstartedIdle);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error evicting games");
+                e.printStackTrace();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evict every loaded game that's done with and has been idle for long enough. Dirty games are skipped until they've
+     * been written.
+     *
+     * @return The number of games evicted
+     */
+    synchronized int evictIdle(GameRegistry registry, Duration finishedIdle, Duration unstartedIdle)
+            throws IOException {
+        long now = System.nanoTime();
+        long shortestIdle = Math.min(finishedIdle.toNanos(), unstartedIdle.toNanos());
+        int evicted = 0;
+        long bytes = 0;
+        try (var span = Tracer.span("store.evict")) {
+            for (var workspaceEntry : games.entrySet()) {
+                for (Game game : workspaceEntry.getValue().values()) {
+                    var key = new GameKey(workspaceEntry.getKey(), game.getGameUuid());
+                    var lastUsed = Objects.requireNonNullElse(registry.getLastUsedNanos(key.gameId()), openedNanos);
+                    if (dirty.contains(key) || now - lastUsed < shortestIdle) {
+                        continue;
+                    }
+
+                    byte[] archived;
+                    long unusedSince;
+                    var lock = GameLocks.lockFor(key.gameId());
+                    lock.lock();
+                    try {
+                        Duration idle;
+                        if (!game.hasStarted()) {
+                            idle = unstartedIdle;
+                        } else if (game.getNextPlayerInDraft() == null) {
+                            idle = finishedIdle;
+                        } else {
+                            continue;
+                        }
+                        unusedSince = now - idle.toNanos();
+                        if (lastUsed - unusedSince > 0) {
+                            continue;
+                        }
+                        archived = GameCodec.encode(game, true, catalogs);
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    // Written outside the lock, if the game changes in the meantime it's dirty and we leave it loaded
+                    bytes += catalogs.writeShared();
+                    writeAtomically(gamePath(key.workspaceId(), key.gameId()), archived);
+                    bytes += archived.length;
+                    lock.lock();
+                    try {
+                        if (!dirty.contains(key) && registry.unload(key.workspaceId(), game, unusedSince)) {
+                            evicted++;
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+            span.setAttribute("store.evicted_games", evicted);
+            span.setAttribute("store.bytes", bytes);
+        } finally {
+            EVICTED_GAMES.increment(evicted);
+            WRITTEN_BYTES.increment(bytes);
+        }
+        if (evicted > 0) {
+            System.out.println("Evicted " + evicted + " idle games");
+        }
+        return evicted;
+    }
+
+    /**
+     * Write every dirty game on the store's thread and wait for it to finish
+     */
+    public void writeNow() throws IOException {
+        try {
+            executor.submit(() -> {
+                write();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Write every dirty game and copy the store to another directory on the store's thread, e.g. to start a replay from
+     * the current games. Temporary files aren't copied.
+     *
+     * @param target The directory to copy to, which can be opened as a store afterwards
+     */
+    public void copyTo(Path target) throws IOException {
+        try {
+            executor.submit(() -> {
+                write();
+                if (!Files.exists(directory)) {
+                    return null;
+                }
+                try (var files = Files.walk(directory)) {
+                    for (Path path : files.toList()) {
+                        var copy = target.resolve(directory.relativize(path).toString());
+                        if (Files.isDirectory(path)) {
+                            Files.createDirectories(copy);
+                        } else if (!path.getFileName().toString().endsWith(".tmp")) {
+                            Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                }
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Write any dirty games and stop the store's thread. Intended to be called from a shutdown hook.
+     */
+    public void flush() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.out.println("Timed out waiting for pending saves");
+            }
+            write();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Error saving");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Write every dirty game, then the manifest. A game that fails to write doesn't stop the others, it stays dirty and
+     * is written again by the next write.
+     *
+     * @throws UnwrittenGamesException If any game couldn't be written, after the rest and the manifest were
+     */
+    private synchronized void write() throws IOException {
+        // Cleared before writing so changes made while we write schedule another write
+        writeScheduled.set(false);
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        int written = 0;
+        var failures = new LinkedHashMap<UUID, Exception>();
+        try (var span = Tracer.span("store.write")) {
+            for (GameKey key : List.copyOf(dirty)) {
+                dirty.remove(key);
+                try {
+                    bytes += writeGame(key);
+                    written++;
+                } catch (IOException | RuntimeException e) {
+                    // Try again on the next write, the journal keeps the game's changes until then
+                    dirty.add(key);
+                    failures.put(key.gameId(), e);
+                }
+            }
+            bytes += writeManifest();
+            span.setAttribute("store.games", written);
+            span.setAttribute("store.bytes", bytes);
+        } finally {
+            WRITE_SECONDS.labels().observeNanos(System.nanoTime() - start);
+            WRITTEN_BYTES.increment(bytes);
+            WRITTEN_GAMES.increment(written);
+        }
+        if (!failures.isEmpty()) {
+            throw new UnwrittenGamesException(failures);
+        }
+    }
+
+    /**
+     * Thrown by a write when some games couldn't be written. Everything else was written, the games that weren't are
+     * still dirty. Each game's error is suppressed by this one.
+     */
+    public static class UnwrittenGamesException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final HashSet<UUID> gameIds;
+
+        UnwrittenGamesException(Map<UUID, Exception> failures) {
+            super("Could not write games " + failures.keySet());
+            this.gameIds = new HashSet<>(failures.keySet());
+            failures.values().forEach(this::addSuppressed);
+        }
+
+        /**
+         * @return The ids of the games that weren't written
+         */
+        public Set<UUID> getGameIds() {
+            return Collections.unmodifiableSet(gameIds);
+        }
+    }
+
+    /**
+     * @return The number of bytes written
+     */
+    private long writeGame(GameKey key) throws IOException {
+        var path = gamePath(key.workspaceId(), key.gameId());
+        var workspaceGames = games.get(key.workspaceId());
+        var game = workspaceGames == null ? null : workspaceGames.get(key.gameId());
+        if (game == null) {
+            if (!manifest.containsKey(key.gameId())) {
+                Files.deleteIfExists(path);
+            }
+            // Otherwise it was evicted and its file is already up to date
+            return 0;
+        }
+
+        byte[] bytes;
+        StoredGame stored;
+        long sequence;
+        var lock = GameLocks.lockFor(key.gameId());
+        lock.lock();
+        try {
+            bytes = GameCodec.encode(game, false, catalogs);
+            stored = StoredGame.of(key.workspaceId(), game);
+            sequence = game.getJournalSequence();
+        } finally {
+            lock.unlock();
+        }
+
+        long catalogBytes = catalogs.writeShared();
+        Files.createDirectories(path.getParent());
+        writeAtomically(path, bytes);
+        journalSequence.accumulateAndGet(sequence, Math::max);
+        lock.lock();
+        try {
+            // Unless it was deleted while we were writing, then the next write deletes the file again
+            if (workspaceGames.get(key.gameId()) == game) {
+                manifest.put(key.gameId(), stored);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return catalogBytes + bytes.length;
+    }
+
+    private long writeManifest() throws IOException {
+        var bos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(new Manifest(journalSequence.get(), new ArrayList<>(manifest.values())));
+        }
+        var bytes = bos.toByteArray();
+        writeAtomically(manifestPath, bytes);
+        return bytes.length;
+    }
+
+    private static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        var tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var fos = new FileOutputStream(tempPath.toFile())) {
+            fos.write(bytes);
+            fos.getFD().sync();
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The event catalogs games refer to. Encoding a game only notes which catalogs it shares, they're written by
+     * {@link #writeShared()} once the game's lock has been released, before the game's file.
+     */
+    private class CatalogFiles implements GameCodec.SharedCatalogs {
+        // By file name, catalogs that are stored or have been read
+        private final ConcurrentMap<String, TeamCatalog> stored = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, TeamCatalog> unwritten = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean share(String eventCode, long fingerprint, TeamCatalog catalog) {
+            if (!EVENT_CODE.matcher(eventCode).matches()) {
+                return false;
+            }
+            var fileName = fileName(eventCode, fingerprint);
+            if (!stored.containsKey(fileName)) {
+                unwritten.putIfAbsent(fileName, catalog);
+            }
+            return true;
+        }
+
+        @Override
+        public TeamCatalog load(String eventCode, long fingerprint) throws IOException {
+            if (!EVENT_CODE.matcher(eventCode).matches()) {
+                throw new IOException("Invalid event code " + eventCode);
+            }
+            var fileName = fileName(eventCode, fingerprint);
+            var catalog = stored.get(fileName);
+            if (catalog == null) {
+                catalog = GameCodec.decodeCatalog(Files.readAllBytes(directory.resolve(CATALOG_DIRECTORY)
+                        .resolve(fileName)));
+                stored.putIfAbsent(fileName, catalog);
+            }
+            return catalog;
+        }
+
+        /**
+         * Write the catalogs shared since the last call that aren't stored yet. Called by the store's writes only.
+         *
+         * @return The number of bytes written
+         */
+        long writeShared() throws IOException {
+            long bytes = 0;
+            for (var entry : unwritten.entrySet()) {
+                var path = directory.resolve(CATALOG_DIRECTORY).resolve(entry.getKey());
+                // Written by an earlier run, the name already tells us it has the same teams
+                if (!Files.exists(path)) {
+                    var encoded = GameCodec.encodeCatalog(entry.getValue(), true);
+                    Files.createDirectories(path.getParent());
+                    writeAtomically(path, encoded);
+                    bytes += encoded.length;
+                }
+                stored.put(entry.getKey(), entry.getValue());
+                unwritten.remove(entry.getKey());
+            }
+            return bytes;
+        }
+
+        private static String fileName(String eventCode, long fingerprint) {
+            return eventCode + "-" + HexFormat.of().toHexDigits(fingerprint) + CATALOG_FILE_SUFFIX;
+        }
+    }
+
+    private Path gamePath(String workspaceId, UUID gameId) {
+        if (!WORKSPACE_ID.matcher(workspaceId).matches()) {
+            throw new IllegalArgumentException("Invalid workspace id " + workspaceId);
+        }
+        return directory.resolve(workspaceId).resolve(gameId + GAME_FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dacubeking.fantasyfirst.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The format of traffic captures written by {@link TrafficCapture}.
+ * <p>
+ * A capture is a gzipped stream of a header (magic, version, when the capture started and the {@link
+ * com.dacubeking.fantasyfirst.game.GameRandom} seed) followed by one record per request: its offset from the start, its
+ * kind, whether the body is JSON or a form, and the scrubbed body. A capture cut off by a crash is read up to the last
+ * complete record.
+ */
+public final class CaptureFile {
+
+    static final int MAGIC = 0x46464350; // "FFCP"
+    static final int VERSION = 1;
+
+    /**
+     * Stands in for the response URLs in captured bodies. They're secrets, and replays point them at a stub anyway.
+     */
+    public static final String RESPONSE_URL_PLACEHOLDER = "captured-response-url";
+
+    /**
+     * @param offsetMillis When the request arrived, relative to the start of the capture
+     * @param kind         What the request was, e.g. {@code block_actions:joinGame} or {@code event:app_home_opened}
+     * @param json         Whether the body is JSON (events) rather than a form (interactions and commands)
+     * @param body         The request body with secrets scrubbed
+     */
+    public record CapturedRequest(long offsetMillis, String kind, boolean json, String body) {
+    }
+
+    /**
+     * @param startedAtMillis When the capture started, in epoch millis
+     * @param seed            The seed for game randomness during the capture
+     */
+    public record Capture(long startedAtMillis, long seed, List<CapturedRequest> requests) {
+    }
+
+    private CaptureFile() {
+    }
+
+    static void writeHeader(DataOutputStream out, long startedAtMillis, long seed) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(startedAtMillis);
+        out.writeLong(seed);
+    }
+
+    static void write(DataOutputStream out, CapturedRequest request) throws IOException {
+        var body = request.body().getBytes(StandardCharsets.UTF_8);
+        out.writeLong(request.offsetMillis());
+        out.writeUTF(request.kind());
+        out.writeBoolean(request.json());
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    public static Capture read(Path captureFile) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                new FileInputStream(captureFile.toFile()))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(captureFile + " is not a traffic capture");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported capture version " + version);
+            }
+            long startedAtMillis = in.readLong();
+            long seed = in.readLong();
+
+            var requests = new ArrayList<CapturedRequest>();
+            try {
+                while (true) {
+                    long offsetMillis = in.readLong();
+                    var kind = in.readUTF();
+                    boolean json = in.readBoolean();
+                    var body = new byte[in.readInt()];
+                    in.readFully(body);
+                    requests.add(new CapturedRequest(offsetMillis, kind, json, new String(body, StandardCharsets.UTF_8)));
+                }
+            } catch (EOFException e) {
+                // End of the capture, or the last record was cut off
+            }
+            return new Capture(startedAtMillis, seed, requests);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.dacubeking.fantasyfirst.server;
+
+import com.dacubeking.fantasyfirst.metrics.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Serves {@link Metrics} for Prometheus to scrape. When a token is set, scrapes have to send it as a bearer token, since
+ * the server is usually reachable from the internet for Slack.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final @Nullable byte[] expectedAuthorization;
+
+    /**
+     * @param token The bearer token scrapes have to send, or null to serve metrics to anyone
+     */
+    public MetricsServlet(@Nullable String token) {
+        this.expectedAuthorization = token == null ? null : ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (expectedAuthorization != null) {
+            var authorization = req.getHeader("Authorization");
+            if (authorization == null || !MessageDigest.isEqual(expectedAuthorization,
+                    authorization.getBytes(StandardCharsets.UTF_8))) {
+                resp.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
+        }
+
+        var out = new StringBuilder(16 * 1024);
+        Metrics.writeTo(out);
+        var body = out.toString().getBytes(StandardCharsets.UTF_8);
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(Metrics.CONTENT_TYPE);
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,86 @@
+package com.dacubeking.fantasyfirst.server;
+
+import com.slack.api.bolt.App;
+import com.slack.api.bolt.servlet.SlackAppServlet;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Serves a Bolt app over Jetty, like {@link com.slack.api.bolt.jetty.SlackAppServer}, but with a choice of thread pool.
+ * <p>
+ * {@code SlackAppServer} always uses Jetty's default pool of platform threads. With virtual threads every request is
+ * handled on its own virtual thread instead, see {@link VirtualThreadPool}. The handlers themselves don't change. Incoming
+ * traffic can also be recorded with a {@link TrafficCapture}, and {@link com.dacubeking.fantasyfirst.metrics.Metrics}
+ * are served on {@link #METRICS_PATH}.
+ */
+public class SlackServer {
+
+    public static final int DEFAULT_PORT = 3000;
+    public static final String EVENTS_PATH = "/slack/events";
+    public static final String METRICS_PATH = "/metrics";
+
+    private final App app;
+    private final Server server;
+    private final ServletContextHandler handler;
+    private final @Nullable TrafficCapture capture;
+
+    /**
+     * @param app            The app to serve on {@link #EVENTS_PATH}
+     * @param port           The port to listen on
+     * @param virtualThreads Whether to handle requests on virtual threads, which needs Java 21 or newer
+     */
+    public SlackServer(App app, int port, boolean virtualThreads) {
+        this(app, port, virtualThreads, null);
+    }
+
+    /**
+     * @param app            The app to serve on {@link #EVENTS_PATH}
+     * @param port           The port to listen on
+     * @param virtualThreads Whether to handle requests on virtual threads, which needs Java 21 or newer
+     * @param capture        Records every verified request, or null to not capture traffic. Closed when the server stops.
+     */
+    public SlackServer(App app, int port, boolean virtualThreads, @Nullable TrafficCapture capture) {
+        this.app = app;
+        this.capture = capture;
+        if (capture != null) {
+            app.use(capture);
+        }
+        ThreadPool threadPool = virtualThreads ? new VirtualThreadPool("jetty-") : new QueuedThreadPool();
+        server = new Server(threadPool);
+
+        var connector = new ServerConnector(server);
+        connector.setPort(port);
+        server.addConnector(connector);
+
+        handler = new ServletContextHandler();
+        handler.addServlet(new ServletHolder(new SlackAppServlet(app)), EVENTS_PATH);
+        server.setHandler(handler);
+    }
+
+    /**
+     * Serve the bot's metrics on {@link #METRICS_PATH}. Must be called before the server is started.
+     *
+     * @param token The bearer token scrapes have to send, or null to serve metrics to anyone
+     */
+    public void serveMetrics(@Nullable String token) {
+        handler.addServlet(new ServletHolder(new MetricsServlet(token)), METRICS_PATH);
+    }
+
+    public void start() throws Exception {
+        app.start();
+        server.start();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+        app.stop();
+        if (capture != null) {
+            capture.close();
+        }
+    }
+}
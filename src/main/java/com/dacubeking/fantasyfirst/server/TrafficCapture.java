@@ -0,0 +1,191 @@
+package com.dacubeking.fantasyfirst.server;
+
+import com.dacubeking.fantasyfirst.server.CaptureFile.CapturedRequest;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.slack.api.bolt.middleware.Middleware;
+import com.slack.api.bolt.middleware.MiddlewareChain;
+import com.slack.api.bolt.request.Request;
+import com.slack.api.bolt.response.Response;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bolt middleware that records every verified incoming request to a {@link CaptureFile}, so real traffic can be replayed
+ * later.
+ * <p>
+ * The request thread only takes the arrival time and hands the body to a dedicated writer thread, which scrubs it and
+ * appends it to the capture. Signatures and headers aren't recorded at all, verification tokens are dropped and response
+ * URLs are replaced with {@link CaptureFile#RESPONSE_URL_PLACEHOLDER}. User ids, names and whatever users typed are kept,
+ * so captures should be handled like the save file.
+ */
+public class TrafficCapture implements Middleware, Closeable {
+
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "traffic-capture");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Start a new capture
+     *
+     * @param captureFile The file to write, replaced if it exists
+     * @param seed        The seed {@link com.dacubeking.fantasyfirst.game.GameRandom} was seeded with, for the replay
+     */
+    public TrafficCapture(Path captureFile, long seed) throws IOException {
+        // Sync flushes so a crash only loses the last second of traffic
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                new FileOutputStream(captureFile.toFile()), true)));
+        CaptureFile.writeHeader(out, System.currentTimeMillis(), seed);
+        executor.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Response apply(Request req, Response resp, MiddlewareChain chain) throws Exception {
+        long offsetMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        var body = req.getRequestBodyAsString();
+        var contentType = req.getHeaders().getFirstValue("Content-Type");
+        boolean json = contentType != null && contentType.startsWith("application/json");
+        try {
+            executor.execute(() -> record(offsetMillis, json, body));
+        } catch (RejectedExecutionException e) {
+            // The capture has been closed
+        }
+        return chain.next(req);
+    }
+
+    private void record(long offsetMillis, boolean json, String body) {
+        try {
+            CapturedRequest request;
+            if (json) {
+                var payload = JsonParser.parseString(body).getAsJsonObject();
+                scrub(payload);
+                request = new CapturedRequest(offsetMillis, kindOf(payload), true, payload.toString());
+            } else {
+                var params = parseForm(body);
+                String kind;
+                if (params.containsKey("payload")) {
+                    var payload = JsonParser.parseString(params.get("payload")).getAsJsonObject();
+                    scrub(payload);
+                    params.put("payload", payload.toString());
+                    kind = kindOf(payload);
+                } else {
+                    params.remove("token");
+                    params.computeIfPresent("response_url", (k, v) -> CaptureFile.RESPONSE_URL_PLACEHOLDER);
+                    kind = "command:" + params.getOrDefault("command", "unknown");
+                }
+                request = new CapturedRequest(offsetMillis, kind, false, encodeForm(params));
+            }
+            CaptureFile.write(out, request);
+        } catch (Exception e) {
+            System.out.println("Error capturing request");
+            e.printStackTrace();
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error flushing traffic capture");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stop capturing and finish the file
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    private static void scrub(JsonElement element) {
+        if (element.isJsonObject()) {
+            var object = element.getAsJsonObject();
+            object.remove("token");
+            if (object.has("response_url")) {
+                object.addProperty("response_url", CaptureFile.RESPONSE_URL_PLACEHOLDER);
+            }
+            object.entrySet().forEach(entry -> scrub(entry.getValue()));
+        } else if (element.isJsonArray()) {
+            element.getAsJsonArray().forEach(TrafficCapture::scrub);
+        }
+    }
+
+    /**
+     * @return e.g. {@code block_actions:pickTeam}, {@code view_submission:team_pick_number} or {@code event:app_home_opened}
+     */
+    private static String kindOf(JsonObject payload) {
+        var type = payload.has("type") ? payload.get("type").getAsString() : "unknown";
+        switch (type) {
+            case "event_callback" -> {
+                var event = payload.getAsJsonObject("event");
+                return "event:" + (event != null && event.has("type") ? event.get("type").getAsString() : "unknown");
+            }
+            case "block_actions" -> {
+                JsonArray actions = payload.getAsJsonArray("actions");
+                if (actions != null && !actions.isEmpty()) {
+                    // Drop the ids some action ids end with so they group together
+                    var actionId = actions.get(0).getAsJsonObject().get("action_id").getAsString();
+                    return type + ":" + actionId.replaceAll("[^A-Za-z_].*$", "");
+                }
+                return type;
+            }
+            case "view_submission", "view_closed" -> {
+                var callbackId = payload.getAsJsonObject("view").get("callback_id").getAsString();
+                return type + ":" + callbackId.split(",")[0];
+            }
+            default -> {
+                return type;
+            }
+        }
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        var params = new LinkedHashMap<String, String>();
+        for (String pair : body.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static String encodeForm(Map<String, String> params) {
+        var form = new StringBuilder();
+        params.forEach((name, value) -> {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(URLEncoder.encode(name, StandardCharsets.UTF_8)).append('=')
+                    .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        });
+        return form.toString();
+    }
+}
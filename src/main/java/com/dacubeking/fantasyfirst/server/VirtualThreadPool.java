@@ -0,0 +1,70 @@
+package com.dacubeking.fantasyfirst.server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Jetty thread pool that runs every task on its own virtual thread.
+ * <p>
+ * Handlers block on the Slack Web API, TBA and the disk. With a pool of platform threads a handful of slow calls can
+ * use up every thread during a draft, while virtual threads just unmount from their carrier while blocked. There's no
+ * limit on the number of threads, so Jetty is never "low on threads" and load is bounded by the connector instead.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private final String namePrefix;
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile ExecutorService executor;
+
+    public VirtualThreadPool(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        executor = VirtualThreads.newThreadPerTaskExecutor(namePrefix);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        executor.shutdown();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package com.dacubeking.fantasyfirst.server;
+
+import com.slack.api.util.thread.ExecutorServiceProvider;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads without requiring a JDK that has them to compile.
+ * <p>
+ * Virtual threads are looked up reflectively, so the bot still builds and runs on 17 and {@link #isSupported()} tells
+ * callers whether the running JVM (21+) can actually use them.
+ */
+public final class VirtualThreads {
+
+    private static final ThreadFactory FACTORY_TEMPLATE = lookUpFactory("virtual-");
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return FACTORY_TEMPLATE != null;
+    }
+
+    /**
+     * @param namePrefix Prefix for the threads' names, followed by a counter
+     * @return A factory creating virtual threads
+     * @throws UnsupportedOperationException If the JVM doesn't support virtual threads
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        var factory = lookUpFactory(namePrefix);
+        if (factory == null) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or newer, running on "
+                    + Runtime.version());
+        }
+        return factory;
+    }
+
+    /**
+     * @return An executor that starts a new virtual thread for every task
+     * @throws UnsupportedOperationException If the JVM doesn't support virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        var threadFactory = factory(namePrefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available", e);
+        }
+    }
+
+    /**
+     * Runs Bolt's own background work (lazy listeners, socket mode, etc.) on virtual threads instead of its fixed size
+     * pools
+     */
+    public static ExecutorServiceProvider executorServiceProvider() {
+        return new ExecutorServiceProvider() {
+            @Override
+            public ExecutorService createThreadPoolExecutor(String threadGroupName, int poolSize) {
+                return newThreadPerTaskExecutor(threadGroupName + "-");
+            }
+
+            @Override
+            public ScheduledExecutorService createThreadScheduledExecutor(String threadGroupName) {
+                // Only the scheduling itself happens here, one carrier is plenty
+                return Executors.newSingleThreadScheduledExecutor(factory(threadGroupName + "-"));
+            }
+        };
+    }
+
+    private static ThreadFactory lookUpFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
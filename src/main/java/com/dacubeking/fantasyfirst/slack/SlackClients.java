@@ -0,0 +1,29 @@
+package com.dacubeking.fantasyfirst.slack;
+
+import com.slack.api.Slack;
+import com.slack.api.util.http.SlackHttpClient;
+import okhttp3.Interceptor;
+
+/**
+ * Helpers for the Slack client the app makes its calls with
+ */
+public final class SlackClients {
+
+    private SlackClients() {
+    }
+
+    /**
+     * @param interceptors OkHttp interceptors that see every call, in the order they run
+     * @return A Slack instance with the same config whose HTTP calls go through the interceptors
+     */
+    public static Slack withInterceptors(Slack slack, Interceptor... interceptors) {
+        var config = slack.getConfig();
+        var builder = SlackHttpClient.buildOkHttpClient(config).newBuilder();
+        for (Interceptor interceptor : interceptors) {
+            builder.addInterceptor(interceptor);
+        }
+        var httpClient = new SlackHttpClient(builder.build());
+        httpClient.setConfig(config);
+        return Slack.getInstance(config, httpClient);
+    }
+}
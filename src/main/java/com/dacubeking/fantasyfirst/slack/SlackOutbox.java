@@ -0,0 +1,274 @@
+package com.dacubeking.fantasyfirst.slack;
+
+import com.dacubeking.fantasyfirst.tracing.Span;
+import com.dacubeking.fantasyfirst.tracing.Tracer;
+import com.slack.api.methods.MethodsClient;
+import com.slack.api.methods.SlackApiException;
+import com.slack.api.methods.SlackApiTextResponse;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of outbound Slack messages so handlers can ack before talking to the Web API.
+ * <p>
+ * Handlers validate and mutate state, then {@link #enqueue(String, MethodsClient, Job)} a job that performs the Slack
+ * calls. Jobs for the same channel run one at a time in the order they were enqueued, so draft messages never get posted,
+ * updated or deleted out of order. Jobs for different channels run in parallel on a small worker pool. Each individual
+ * call made through a {@link Sender} is retried on transient failures, as long as retrying can't post a message twice.
+ * <p>
+ * Every call first takes a token from the {@link SlackRateLimiter} and a 429 response pauses that method until its
+ * {@code Retry-After} has passed. When jobs are waiting for a worker, higher {@link Priority} jobs run first, so pick turn
+ * announcements aren't stuck behind cosmetic updates.
+ */
+public class SlackOutbox {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long DRAIN_POLL_MS = 50;
+    private static final int MAX_RATE_LIMITED_ATTEMPTS = 10;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    // Methods that leave Slack in the same state when repeated, so they can be retried after the request may have arrived
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("chat.update", "chat.delete", "views.publish",
+            "views.update");
+
+    private final ThreadPoolExecutor executor;
+    private final SlackRateLimiter rateLimiter;
+    private final ConcurrentMap<String, CompletableFuture<Void>> channelTails = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+    private final AtomicLong jobSequence = new AtomicLong();
+
+    public enum Priority {
+        /**
+         * Messages announcing whose turn it is to pick
+         */
+        HIGH,
+        /**
+         * Other new messages
+         */
+        NORMAL,
+        /**
+         * Updates to existing messages and views that are nice to have but don't block anyone
+         */
+        LOW
+    }
+
+    /**
+     * A unit of work for a single channel. Runs on an outbox worker thread.
+     */
+    @FunctionalInterface
+    public interface Job {
+        void run(Sender sender) throws IOException, SlackApiException;
+    }
+
+    /**
+     * A single Slack Web API call
+     */
+    @FunctionalInterface
+    public interface SlackCall<T extends SlackApiTextResponse> {
+        T call(MethodsClient client) throws IOException, SlackApiException;
+    }
+
+    /**
+     * Makes Slack calls on behalf of a job, retrying transient failures
+     */
+    public class Sender {
+        private final String workspaceId;
+        private final String channelId;
+        private final MethodsClient client;
+
+        private Sender(String workspaceId, String channelId, MethodsClient client) {
+            this.workspaceId = workspaceId;
+            this.channelId = channelId;
+            this.client = client;
+        }
+
+        /**
+         * Make a Slack Web API call once the rate limiter allows it, retrying on network errors and HTTP errors.
+         * Responses with {@code ok: false} are returned as-is since retrying them won't change the outcome. Calls that
+         * aren't idempotent, like {@code chat.postMessage}, are only retried after network errors that happened before
+         * the request was sent, since Slack may have already acted on a request whose response was lost.
+         *
+         * @param method The Web API method name (e.g. {@code chat.postMessage}), used for rate limiting and logging
+         * @param call   The call to make
+         */
+        public <T extends SlackApiTextResponse> T call(String method, SlackCall<T> call)
+                throws IOException, SlackApiException {
+            long backoff = INITIAL_BACKOFF_MS;
+            int rateLimitedAttempts = 0;
+            for (int attempt = 1; ; attempt++) {
+                try (var span = Tracer.span("rate_limit " + method)) {
+                    span.setAttribute("slack.attempt", attempt);
+                    rateLimiter.acquire(workspaceId, method, channelId);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+
+                try {
+                    var response = call.call(client);
+                    if (!response.isOk()) {
+                        System.out.println(method + " failed: " + response.getError());
+                    }
+                    return response;
+                } catch (SlackApiException e) {
+                    if (e.getResponse().code() == 429 && ++rateLimitedAttempts < MAX_RATE_LIMITED_ATTEMPTS) {
+                        var retryAfter = e.getResponse().header("Retry-After");
+                        long retryAfterSeconds = retryAfter == null ? 1 : Long.parseLong(retryAfter.trim());
+                        System.out.println(method + " rate limited, pausing for " + retryAfterSeconds + "s");
+                        rateLimiter.pause(workspaceId, method, retryAfterSeconds);
+                        attempt--; // Waiting out a rate limit isn't a failed attempt
+                        continue;
+                    }
+                    if (attempt >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    System.out.println(method + " failed (attempt " + attempt + "), retrying in " + backoff + "ms: " + e);
+                    sleep(backoff);
+                    backoff *= 2;
+                } catch (IOException e) {
+                    if (attempt >= MAX_ATTEMPTS || !(IDEMPOTENT_METHODS.contains(method) || isBeforeSend(e))) {
+                        throw e;
+                    }
+                    System.out.println(method + " failed (attempt " + attempt + "), retrying in " + backoff + "ms: " + e);
+                    sleep(backoff);
+                    backoff *= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param workerThreads The number of threads delivering messages
+     * @param rateLimiter   The rate limiter every call waits on
+     */
+    public SlackOutbox(int workerThreads, SlackRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+            var thread = new Thread(r, "slack-outbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a job behind any other jobs for the same channel
+     *
+     * @param workspaceId The workspace the job's calls are made in
+     * @param channelId   The channel the job posts to. Jobs sharing a key run in order.
+     * @param priority    How urgently the job should run once it reaches the front of its channel
+     * @param client      The client to make calls with, usually {@code ctx.client()} of the handler
+     * @param job         The job to run
+     * @return A future that completes once the job has run
+     */
+    public CompletableFuture<Void> enqueue(String workspaceId, String channelId, Priority priority, MethodsClient client,
+                                           Job job) {
+        var sender = new Sender(workspaceId, channelId, client);
+        long sequence = jobSequence.incrementAndGet();
+        // Continue the handler's trace on the worker thread
+        var parentSpan = Tracer.current();
+        long enqueuedNanos = System.nanoTime();
+        Executor prioritizedExecutor = task -> executor.execute(new PrioritizedTask(priority, sequence, task));
+
+        pendingJobs.incrementAndGet();
+        var future = channelTails.compute(channelId, (key, tail) ->
+                (tail == null ? CompletableFuture.<Void>completedFuture(null) : tail).thenRunAsync(() -> {
+                    try (var span = Tracer.span("outbox.job", Span.Kind.INTERNAL, parentSpan)) {
+                        span.setAttribute("slack.channel_id", channelId);
+                        span.setAttribute("outbox.priority", priority.name());
+                        span.setAttribute("outbox.queued_ms",
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedNanos));
+                        try {
+                            job.run(sender);
+                        } catch (Exception e) {
+                            span.recordError(e);
+                            System.out.println("Slack outbox job for " + channelId + " failed");
+                            e.printStackTrace();
+                        }
+                    } finally {
+                        pendingJobs.decrementAndGet();
+                    }
+                }, prioritizedExecutor));
+        // Drop the tail once nothing is queued behind it so idle channels don't pile up
+        future.whenComplete((result, e) -> channelTails.remove(channelId, future));
+        return future;
+    }
+
+    /**
+     * @return The number of jobs that have been enqueued but haven't finished, including ones waiting behind earlier jobs
+     * for the same channel
+     */
+    public int getQueueDepth() {
+        return pendingJobs.get();
+    }
+
+    /**
+     * @return The number of jobs that are ready to run but waiting for a free worker
+     */
+    public int getReadyJobs() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return The number of Slack calls blocked waiting on a rate limit
+     */
+    public int getRateLimitedCalls() {
+        return rateLimiter.getWaitingCalls();
+    }
+
+    /**
+     * Wait for queued jobs to finish, e.g. while shutting down, since the workers are daemon threads and would otherwise
+     * be killed mid-job. Jobs enqueued while waiting are waited for too.
+     *
+     * @param timeout How long to wait at most
+     * @return Whether every job finished in time
+     */
+    public boolean drain(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pendingJobs.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(DRAIN_POLL_MS);
+        }
+        return true;
+    }
+
+    private record PrioritizedTask(Priority priority, long sequence, Runnable task)
+            implements Runnable, Comparable<PrioritizedTask> {
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * @return Whether the request failed before reaching Slack, so retrying it can't repeat what it did
+     */
+    private static boolean isBeforeSend(IOException e) {
+        return e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.dacubeking.fantasyfirst.slack;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client side model of Slack's Web API rate limits.
+ * <p>
+ * Each Web API method belongs to a tier that allows a number of calls per minute per workspace. On top of that
+ * {@code chat.postMessage} is limited to roughly one message per second per channel. Every (workspace, method) pair and
+ * every channel we post to gets a token bucket, and callers block in {@link #acquire(String, String, String)} until a
+ * token is available. When Slack answers with a 429 anyway, {@link #pause(String, String, long)} stops all calls to that
+ * method for the workspace until the {@code Retry-After} has passed.
+ *
+ * @see <a href="https://api.slack.com/apis/rate-limits">Slack rate limits</a>
+ */
+public class SlackRateLimiter {
+
+    /**
+     * Slack's rate limit tiers, in calls per minute
+     */
+    public enum Tier {
+        TIER_1(1),
+        TIER_2(20),
+        TIER_3(50),
+        TIER_4(100);
+
+        private final int callsPerMinute;
+
+        Tier(int callsPerMinute) {
+            this.callsPerMinute = callsPerMinute;
+        }
+    }
+
+    private static final Map<String, Tier> METHOD_TIERS = Map.of(
+            "chat.postMessage", Tier.TIER_4, // Also limited per channel, see CHANNEL_POSTS_PER_SECOND
+            "chat.update", Tier.TIER_3,
+            "chat.delete", Tier.TIER_3,
+            "views.open", Tier.TIER_4,
+            "views.publish", Tier.TIER_4,
+            "users.info", Tier.TIER_4,
+            "users.list", Tier.TIER_2
+    );
+    private static final Tier DEFAULT_TIER = Tier.TIER_3;
+
+    private static final double CHANNEL_POSTS_PER_SECOND = 1;
+    private static final int CHANNEL_POST_BURST = 3;
+
+    private final ConcurrentMap<String, TokenBucket> methodBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TokenBucket> channelBuckets = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Block until a call to {@code method} is allowed
+     *
+     * @param workspaceId The workspace the call is made in
+     * @param method      The Web API method name, e.g. {@code chat.postMessage}
+     * @param channelId   The channel being posted to, or null if the call isn't a post
+     */
+    public void acquire(String workspaceId, String method, String channelId) throws InterruptedException {
+        waiting.incrementAndGet();
+        try {
+            acquire(methodBuckets.computeIfAbsent(workspaceId + ":" + method, k -> {
+                var tier = METHOD_TIERS.getOrDefault(method, DEFAULT_TIER);
+                // Allow a burst of a tenth of the per minute limit so a single pick doesn't wait on itself
+                return new TokenBucket(tier.callsPerMinute / 60.0, Math.max(1, tier.callsPerMinute / 10));
+            }));
+
+            if (channelId != null && method.equals("chat.postMessage")) {
+                acquire(channelBuckets.computeIfAbsent(channelId,
+                        k -> new TokenBucket(CHANNEL_POSTS_PER_SECOND, CHANNEL_POST_BURST)));
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private static void acquire(TokenBucket bucket) throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = bucket.tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Stop all calls to a method in a workspace, used when Slack responds with a 429
+     *
+     * @param retryAfterSeconds The value of the {@code Retry-After} header
+     */
+    public void pause(String workspaceId, String method, long retryAfterSeconds) {
+        var bucket = methodBuckets.get(workspaceId + ":" + method);
+        if (bucket != null) {
+            bucket.pause(TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+        }
+    }
+
+    /**
+     * @return The number of calls currently blocked waiting for a token
+     */
+    public int getWaitingCalls() {
+        return waiting.get();
+    }
+
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private long pausedUntilNanos = lastRefillNanos;
+
+        TokenBucket(double tokensPerSecond, double capacity) {
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /**
+         * Take a token if one is available
+         *
+         * @return 0 if a token was taken, otherwise how long to wait before trying again in nanoseconds
+         */
+        synchronized long tryAcquire() {
+            long now = System.nanoTime();
+            if (now - pausedUntilNanos < 0) {
+                return pausedUntilNanos - now;
+            }
+
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        synchronized void pause(long nanos) {
+            pausedUntilNanos = System.nanoTime() + nanos;
+            tokens = 0;
+        }
+    }
+}
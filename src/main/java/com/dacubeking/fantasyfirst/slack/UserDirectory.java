@@ -0,0 +1,159 @@
+package com.dacubeking.fantasyfirst.slack;
+
+import com.slack.api.methods.MethodsClient;
+import com.slack.api.model.User;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of every user's display name in a workspace.
+ * <p>
+ * The first time a workspace is seen the directory pages through {@code users.list} once on a background thread. After
+ * that it is kept up to date by {@code user_change} and {@code team_join} events (see {@link #update(String, User)}) and
+ * a full resync every refresh interval. Lookups never call the Slack API, so callers fall back to the
+ * {@link UserProfileCache} for users the directory doesn't know about yet.
+ */
+public class UserDirectory {
+
+    private static final int PAGE_SIZE = 200;
+    private static final long FAILED_SYNC_RETRY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final SlackRateLimiter rateLimiter;
+    private final long refreshIntervalNanos;
+
+    private final ConcurrentMap<String, Map<String, String>> namesByWorkspace = new ConcurrentHashMap<>();
+    // When each workspace may be synced again, set after every attempt so a failing users.list isn't called on every
+    // lookup
+    private final ConcurrentMap<String, Long> nextSyncNanos = new ConcurrentHashMap<>();
+    private final Set<String> syncing = ConcurrentHashMap.newKeySet();
+    // Event updates that arrive while a workspace is being synced, applied on top of the sync's result. Removed users
+    // are stored as an empty name.
+    private final ConcurrentMap<String, Map<String, String>> updatesDuringSync = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "user-directory");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param rateLimiter     Shared with the outbox so the sync doesn't starve other calls
+     * @param refreshInterval How often to page through {@code users.list} again
+     */
+    public UserDirectory(SlackRateLimiter rateLimiter, Duration refreshInterval) {
+        this.rateLimiter = rateLimiter;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+    }
+
+    /**
+     * Start a background sync of the workspace if it has never been synced or the last sync is older than the refresh
+     * interval. A failed sync is retried after a few minutes. Returns immediately.
+     *
+     * @param client A client with a token for the workspace
+     */
+    public void ensureSynced(String workspaceId, MethodsClient client) {
+        var nextSync = nextSyncNanos.get(workspaceId);
+        if (nextSync != null && System.nanoTime() - nextSync < 0) {
+            return;
+        }
+        if (syncing.add(workspaceId)) {
+            updatesDuringSync.put(workspaceId, new ConcurrentHashMap<>());
+            executor.execute(() -> {
+                boolean synced = false;
+                try {
+                    synced = sync(workspaceId, client);
+                } finally {
+                    nextSyncNanos.put(workspaceId, System.nanoTime()
+                            + (synced ? refreshIntervalNanos : Math.min(FAILED_SYNC_RETRY_NANOS, refreshIntervalNanos)));
+                    updatesDuringSync.remove(workspaceId);
+                    syncing.remove(workspaceId);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Whether the whole directory was read
+     */
+    private boolean sync(String workspaceId, MethodsClient client) {
+        var names = new HashMap<String, String>();
+        String cursor = null;
+        try {
+            do {
+                rateLimiter.acquire(workspaceId, "users.list", null);
+                var pageCursor = cursor;
+                var response = client.usersList(r -> r.limit(PAGE_SIZE).cursor(pageCursor));
+                if (!response.isOk()) {
+                    System.out.println("users.list failed for " + workspaceId + ": " + response.getError());
+                    return false;
+                }
+
+                for (User user : response.getMembers()) {
+                    if (!user.isDeleted() && !user.isBot()) {
+                        names.put(user.getId(), UserProfileCache.displayNameOf(user));
+                    }
+                }
+                cursor = response.getResponseMetadata() == null ? null : response.getResponseMetadata().getNextCursor();
+            } while (cursor != null && !cursor.isEmpty());
+        } catch (Exception e) {
+            System.out.println("Error syncing users for " + workspaceId);
+            e.printStackTrace();
+            return false;
+        }
+
+        var synced = new ConcurrentHashMap<>(names);
+        namesByWorkspace.put(workspaceId, synced);
+        // Events that arrived while we were paging are at least as new as what users.list returned
+        updatesDuringSync.get(workspaceId).forEach((userId, name) -> {
+            if (name.isEmpty()) {
+                synced.remove(userId);
+            } else {
+                synced.put(userId, name);
+            }
+        });
+        System.out.println("Synced " + names.size() + " users for " + workspaceId);
+        return true;
+    }
+
+    /**
+     * Update a single user, from a {@code user_change} or {@code team_join} event
+     */
+    public void update(String workspaceId, User user) {
+        var names = namesByWorkspace.computeIfAbsent(workspaceId, k -> new ConcurrentHashMap<>());
+        var removed = user.isDeleted() || user.isBot();
+        if (removed) {
+            names.remove(user.getId());
+        } else {
+            names.put(user.getId(), UserProfileCache.displayNameOf(user));
+        }
+
+        var pendingUpdates = updatesDuringSync.get(workspaceId);
+        if (pendingUpdates != null) {
+            pendingUpdates.put(user.getId(), removed ? "" : UserProfileCache.displayNameOf(user));
+        }
+    }
+
+    /**
+     * @return The user's display name, or empty if the directory doesn't know the user (yet)
+     */
+    public Optional<String> getDisplayName(String workspaceId, String userId) {
+        var names = namesByWorkspace.get(workspaceId);
+        return names == null ? Optional.empty() : Optional.ofNullable(names.get(userId));
+    }
+
+    /**
+     * @return The number of users indexed for a workspace
+     */
+    public int size(String workspaceId) {
+        var names = namesByWorkspace.get(workspaceId);
+        return names == null ? 0 : names.size();
+    }
+}
@@ -0,0 +1,167 @@
+package com.dacubeking.fantasyfirst.slack;
+
+import com.slack.api.methods.MethodsClient;
+import com.slack.api.methods.SlackApiException;
+import com.slack.api.model.User;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of Slack user names, so joining a game doesn't cost a {@code users.info} call per click.
+ * <p>
+ * Entries expire after a TTL. Users that Slack doesn't know about are cached too, with a shorter TTL. When several
+ * threads miss on the same user at once only one of them calls {@code users.info}, the others wait for its result.
+ */
+public class UserProfileCache {
+
+    private record Key(String workspaceId, String userId) {
+    }
+
+    /**
+     * @param displayName The user's real name, falling back to their username. Null if the user wasn't found.
+     */
+    private record Entry(@Nullable String displayName, long expiresAtNanos) {
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    private final Map<Key, Entry> entries;
+    private final ConcurrentMap<Key, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxEntries  The maximum number of users to keep, least recently used users are evicted first
+     * @param ttl         How long a found user is cached for
+     * @param negativeTtl How long a user that wasn't found is cached for
+     */
+    public UserProfileCache(int maxEntries, Duration ttl, Duration negativeTtl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > UserProfileCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the name to show for a user, calling {@code users.info} if it isn't cached
+     *
+     * @param client The client to look the user up with if needed
+     * @return The user's real name, or their username if they haven't set one. Empty if Slack doesn't know the user.
+     */
+    public Optional<String> getDisplayName(String workspaceId, String userId, MethodsClient client)
+            throws IOException, SlackApiException {
+        var key = new Key(workspaceId, userId);
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && System.nanoTime() - entry.expiresAtNanos < 0) {
+            hits.incrementAndGet();
+            return Optional.ofNullable(entry.displayName);
+        }
+
+        misses.incrementAndGet();
+        var future = new CompletableFuture<Entry>();
+        var existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return Optional.ofNullable(await(existing).displayName);
+        }
+
+        try {
+            var loaded = load(userId, client);
+            synchronized (entries) {
+                entries.put(key, loaded);
+            }
+            future.complete(loaded);
+            return Optional.ofNullable(loaded.displayName);
+        } catch (IOException | SlackApiException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Entry load(String userId, MethodsClient client) throws IOException, SlackApiException {
+        var response = client.usersInfo(r -> r.user(userId));
+        if (!response.isOk() || response.getUser() == null) {
+            if (!"user_not_found".equals(response.getError())) {
+                // Don't cache transient errors, only users that really don't exist
+                throw new IOException("users.info failed: " + response.getError());
+            }
+            return new Entry(null, System.nanoTime() + negativeTtlNanos);
+        }
+
+        return new Entry(displayNameOf(response.getUser()), System.nanoTime() + ttlNanos);
+    }
+
+    /**
+     * @return The user's real name, or their username if they haven't set one
+     */
+    static String displayNameOf(User user) {
+        var realName = user.getProfile() == null ? null : user.getProfile().getRealName();
+        return realName == null || realName.isEmpty() ? user.getName() : realName;
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException, SlackApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof SlackApiException slackApiException) {
+                throw slackApiException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Forget a user, e.g. after they changed their profile
+     */
+    public void invalidate(String workspaceId, String userId) {
+        synchronized (entries) {
+            entries.remove(new Key(workspaceId, userId));
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
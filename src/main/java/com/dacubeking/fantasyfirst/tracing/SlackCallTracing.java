@@ -0,0 +1,33 @@
+package com.dacubeking.fantasyfirst.tracing;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Records a span for every HTTP call the Slack client makes. Retries show up as separate spans.
+ */
+public class SlackCallTracing implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (!Tracer.isEnabled()) {
+            return chain.proceed(chain.request());
+        }
+
+        var path = chain.request().url().encodedPath();
+        int api = path.indexOf("/api/");
+        var method = api < 0 ? "response_url" : path.substring(api + "/api/".length());
+        try (var span = Tracer.span("slack " + method, Span.Kind.CLIENT)) {
+            try {
+                var response = chain.proceed(chain.request());
+                span.setAttribute("http.status_code", (long) response.code());
+                return response;
+            } catch (IOException e) {
+                span.recordError(e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dacubeking.fantasyfirst.tracing;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A timed operation within a trace, started with {@link Tracer#span(String)} and ended by closing it. While a span is
+ * open it's the parent of any span started on the same thread.
+ * <p>
+ * When tracing is off every span is {@link #NOOP}, so instrumented code doesn't need to check whether tracing is on.
+ * Spans aren't thread safe, only the thread that started one should add attributes to it or close it.
+ */
+public final class Span implements AutoCloseable {
+
+    /**
+     * The kind of span, using OpenTelemetry's numbering
+     */
+    public enum Kind {
+        INTERNAL(1),
+        /**
+         * Handling a request from Slack
+         */
+        SERVER(2),
+        /**
+         * A call to the Slack API
+         */
+        CLIENT(3);
+
+        final int otlpValue;
+
+        Kind(int otlpValue) {
+            this.otlpValue = otlpValue;
+        }
+    }
+
+    static final Span NOOP = new Span(null, 0, 0, 0, 0, "", Kind.INTERNAL, 0);
+
+    private final @Nullable Span previous; // The thread's current span when this one started, restored on close
+    final long traceIdHigh;
+    final long traceIdLow;
+    final long spanId;
+    final long parentSpanId; // 0 for the root of a trace
+    final String name;
+    final Kind kind;
+    final long startEpochNanos;
+    long endEpochNanos;
+    @Nullable List<Object> attributes; // Alternating keys and values
+    @Nullable String error;
+    long sequence; // Set by the recorder
+
+    Span(@Nullable Span previous, long traceIdHigh, long traceIdLow, long spanId, long parentSpanId, String name,
+         Kind kind, long startEpochNanos) {
+        this.previous = previous;
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startEpochNanos = startEpochNanos;
+    }
+
+    public boolean isRecording() {
+        return this != NOOP;
+    }
+
+    public Span setAttribute(String key, String value) {
+        return addAttribute(key, value);
+    }
+
+    public Span setAttribute(String key, long value) {
+        return addAttribute(key, value);
+    }
+
+    public Span setAttribute(String key, boolean value) {
+        return addAttribute(key, value);
+    }
+
+    private Span addAttribute(String key, Object value) {
+        if (this == NOOP) {
+            return this;
+        }
+        if (attributes == null) {
+            attributes = new ArrayList<>(8);
+        }
+        attributes.add(key);
+        attributes.add(value);
+        return this;
+    }
+
+    /**
+     * Mark the span as failed
+     */
+    public void recordError(Throwable throwable) {
+        if (this != NOOP) {
+            error = throwable.toString();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this != NOOP) {
+            Tracer.end(this, previous);
+        }
+    }
+}
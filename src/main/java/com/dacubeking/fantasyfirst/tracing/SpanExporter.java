@@ -0,0 +1,163 @@
+package com.dacubeking.fantasyfirst.tracing;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes recorded spans to a local file from a dedicated thread.
+ * <p>
+ * Every second the spans recorded since the last export are written as one line of OTLP/JSON (an
+ * {@code ExportTraceServiceRequest}), the same format as the OpenTelemetry Collector's file exporter, so the file can be
+ * read back with its {@code otlpjsonfile} receiver or searched with jq. Once the file passes its size limit it's moved
+ * to {@code <file>.1}, replacing the previous one.
+ *
+ * @see <a href="https://opentelemetry.io/docs/specs/otlp/#json-protobuf-encoding">OTLP/JSON</a>
+ */
+public class SpanExporter implements Closeable {
+
+    private static final String SERVICE_NAME = "fantasy-first";
+
+    private final SpanRecorder recorder;
+    private final Path file;
+    private final Path rotatedFile;
+    private final long maxFileBytes;
+    private Writer writer;
+    private long fileBytes;
+    private long reportedDropped;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "span-exporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param recorder     The recorder to export spans from
+     * @param file         The file to append spans to
+     * @param maxFileBytes How large the file can get before it's rotated
+     */
+    public SpanExporter(SpanRecorder recorder, Path file, long maxFileBytes) throws IOException {
+        this.recorder = recorder;
+        this.file = file;
+        this.rotatedFile = file.resolveSibling(file.getFileName() + ".1");
+        this.maxFileBytes = maxFileBytes;
+        openWriter();
+        executor.scheduleWithFixedDelay(this::export, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void openWriter() throws IOException {
+        fileBytes = Files.exists(file) ? Files.size(file) : 0;
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file.toFile(), true),
+                StandardCharsets.UTF_8));
+    }
+
+    private void export() {
+        try {
+            var line = new StringWriter();
+            var json = new JsonWriter(line);
+            json.beginObject().name("resourceSpans").beginArray().beginObject();
+            json.name("resource").beginObject().name("attributes").beginArray();
+            writeAttribute(json, "service.name", SERVICE_NAME);
+            json.endArray().endObject();
+            json.name("scopeSpans").beginArray().beginObject();
+            json.name("scope").beginObject().name("name").value(Tracer.class.getName()).endObject();
+            json.name("spans").beginArray();
+            int exported = recorder.drain(span -> {
+                try {
+                    writeSpan(json, span);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.endArray().endObject().endArray().endObject().endArray().endObject();
+            json.flush();
+
+            long dropped = recorder.getDropped();
+            if (dropped > reportedDropped) {
+                System.out.println("Dropped " + (dropped - reportedDropped) + " spans, the span buffer is too small");
+                reportedDropped = dropped;
+            }
+            if (exported == 0) {
+                return;
+            }
+
+            line.write('\n');
+            writer.write(line.toString());
+            writer.flush();
+            fileBytes += line.getBuffer().length();
+            if (fileBytes > maxFileBytes) {
+                writer.close();
+                Files.move(file, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+                openWriter();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error exporting spans");
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeSpan(JsonWriter json, Span span) throws IOException {
+        json.beginObject();
+        json.name("traceId").value(hex(span.traceIdHigh) + hex(span.traceIdLow));
+        json.name("spanId").value(hex(span.spanId));
+        if (span.parentSpanId != 0) {
+            json.name("parentSpanId").value(hex(span.parentSpanId));
+        }
+        json.name("name").value(span.name);
+        json.name("kind").value(span.kind.otlpValue);
+        // 64 bit integers are strings in OTLP/JSON
+        json.name("startTimeUnixNano").value(Long.toString(span.startEpochNanos));
+        json.name("endTimeUnixNano").value(Long.toString(span.endEpochNanos));
+        json.name("attributes").beginArray();
+        if (span.attributes != null) {
+            for (int i = 0; i < span.attributes.size(); i += 2) {
+                writeAttribute(json, (String) span.attributes.get(i), span.attributes.get(i + 1));
+            }
+        }
+        json.endArray();
+        if (span.error != null) {
+            json.name("status").beginObject().name("code").value(2).name("message").value(span.error).endObject();
+        }
+        json.endObject();
+    }
+
+    private static void writeAttribute(JsonWriter json, String key, Object value) throws IOException {
+        json.beginObject().name("key").value(key).name("value").beginObject();
+        if (value instanceof Long longValue) {
+            json.name("intValue").value(Long.toString(longValue));
+        } else if (value instanceof Boolean booleanValue) {
+            json.name("boolValue").value(booleanValue);
+        } else {
+            json.name("stringValue").value(String.valueOf(value));
+        }
+        json.endObject().endObject();
+    }
+
+    private static String hex(long value) {
+        var hex = Long.toHexString(value);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    /**
+     * Export any remaining spans and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        export();
+        writer.close();
+    }
+}
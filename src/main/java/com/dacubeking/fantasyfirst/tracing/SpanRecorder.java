@@ -0,0 +1,75 @@
+package com.dacubeking.fantasyfirst.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A fixed size ring buffer of ended spans.
+ * <p>
+ * Recording is lock free: each span claims the next sequence number and is stored in that slot, overwriting the oldest
+ * span if the exporter has fallen behind. The single reader, the {@link SpanExporter}, skips spans that were overwritten
+ * before it got to them and counts them as dropped.
+ */
+public class SpanRecorder {
+
+    private final AtomicReferenceArray<Span> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private long readSequence; // Only touched by the reader
+    private long dropped;
+
+    /**
+     * @param capacity The number of spans to buffer, rounded up to a power of two
+     */
+    public SpanRecorder(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    void record(Span span) {
+        long sequence = nextSequence.getAndIncrement();
+        span.sequence = sequence;
+        // The volatile write publishes the span and its sequence to the reader
+        slots.set((int) (sequence & mask), span);
+    }
+
+    /**
+     * Hand every span recorded since the last drain to a consumer, oldest first. Must only be called from one thread.
+     *
+     * @return The number of spans handed over
+     */
+    int drain(Consumer<Span> consumer) {
+        long end = nextSequence.get();
+        if (end - readSequence > slots.length()) {
+            dropped += end - slots.length() - readSequence;
+            readSequence = end - slots.length();
+        }
+
+        int drained = 0;
+        while (readSequence < end) {
+            var span = slots.get((int) (readSequence & mask));
+            if (span == null || span.sequence < readSequence) {
+                // Claimed but not stored yet, pick it up on the next drain
+                break;
+            }
+            if (span.sequence > readSequence) {
+                // Overwritten by a newer span
+                dropped++;
+            } else {
+                consumer.accept(span);
+                drained++;
+            }
+            readSequence++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return The number of spans that were overwritten before they could be exported
+     */
+    long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,111 @@
+package com.dacubeking.fantasyfirst.tracing;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts spans and keeps track of each thread's current span.
+ * <p>
+ * Tracing is off until {@link #enable(SpanRecorder)} is called. Until then {@link #span(String)} returns
+ * {@link Span#NOOP} without touching any thread locals, so instrumentation costs next to nothing. Ended spans go into the
+ * recorder's ring buffer and a {@link SpanExporter} writes them out in the background.
+ * <p>
+ * Work handed to another thread, like an outbox job, continues the trace by passing the span returned by
+ * {@link #current()} as the parent of a span on the other thread.
+ */
+public final class Tracer {
+
+    private static final long EPOCH_NANOS_OFFSET = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+            - System.nanoTime();
+
+    private static volatile @Nullable SpanRecorder recorder;
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+
+    private Tracer() {
+    }
+
+    /**
+     * Start recording spans
+     */
+    public static void enable(SpanRecorder spanRecorder) {
+        recorder = spanRecorder;
+    }
+
+    public static boolean isEnabled() {
+        return recorder != null;
+    }
+
+    /**
+     * Start a span that's a child of the thread's current span, or the root of a new trace if there is none
+     */
+    public static Span span(String name) {
+        return span(name, Span.Kind.INTERNAL);
+    }
+
+    public static Span span(String name, Span.Kind kind) {
+        if (recorder == null) {
+            return Span.NOOP;
+        }
+        return start(name, kind, current.get());
+    }
+
+    /**
+     * Start a span with an explicit parent, e.g. to continue a trace on another thread
+     *
+     * @param parent The parent span, from {@link #current()} on the thread that handed off the work
+     */
+    public static Span span(String name, Span.Kind kind, Span parent) {
+        if (recorder == null) {
+            return Span.NOOP;
+        }
+        return start(name, kind, parent.isRecording() ? parent : null);
+    }
+
+    /**
+     * @return The thread's current span, or {@link Span#NOOP} if there is none
+     */
+    public static Span current() {
+        if (recorder == null) {
+            return Span.NOOP;
+        }
+        var span = current.get();
+        return span == null ? Span.NOOP : span;
+    }
+
+    private static Span start(String name, Span.Kind kind, @Nullable Span parent) {
+        var random = ThreadLocalRandom.current();
+        long traceIdHigh = parent == null ? random.nextLong() : parent.traceIdHigh;
+        long traceIdLow = parent == null ? random.nextLong() : parent.traceIdLow;
+        long spanId;
+        do {
+            spanId = random.nextLong();
+        } while (spanId == 0);
+
+        var span = new Span(current.get(), traceIdHigh, traceIdLow, spanId, parent == null ? 0 : parent.spanId, name,
+                kind, nowEpochNanos());
+        current.set(span);
+        return span;
+    }
+
+    static void end(Span span, @Nullable Span previous) {
+        span.endEpochNanos = nowEpochNanos();
+        if (current.get() == span) {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+
+        var spanRecorder = recorder;
+        if (spanRecorder != null) {
+            spanRecorder.record(span);
+        }
+    }
+
+    private static long nowEpochNanos() {
+        return EPOCH_NANOS_OFFSET + System.nanoTime();
+    }
+}
@@ -0,0 +1,40 @@
+package com.dacubeking.fantasyfirst.tracing;
+
+import com.dacubeking.fantasyfirst.metrics.HandlerMetrics;
+import com.slack.api.bolt.middleware.Middleware;
+import com.slack.api.bolt.middleware.MiddlewareChain;
+import com.slack.api.bolt.request.Request;
+import com.slack.api.bolt.response.Response;
+
+/**
+ * Bolt middleware that starts a trace for every verified request from Slack. Spans started by the handler, and by the
+ * outbox jobs it queues, become children of the request's span.
+ */
+public class TracingMiddleware implements Middleware {
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Response apply(Request req, Response resp, MiddlewareChain chain) throws Exception {
+        if (!Tracer.isEnabled()) {
+            return chain.next(req);
+        }
+
+        try (var span = Tracer.span(HandlerMetrics.handlerOf(req), Span.Kind.SERVER)) {
+            var context = req.getContext();
+            if (context.getTeamId() != null) {
+                span.setAttribute("slack.team_id", context.getTeamId());
+            }
+            if (context.getRequestUserId() != null) {
+                span.setAttribute("slack.user_id", context.getRequestUserId());
+            }
+            try {
+                var response = chain.next(req);
+                span.setAttribute("http.status_code", (long) response.getStatusCode());
+                return response;
+            } catch (Exception e) {
+                span.recordError(e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.dacubeking.fantasyfirst;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Updates boards in a fake channel that keeps the messages in the order they were posted
+ */
+class DraftBoardTest {
+
+    private final Map<String, String> channel = new LinkedHashMap<>();
+    private final List<String> calls = new ArrayList<>();
+    private int nextTs = 1;
+
+    private final DraftBoard.Messages<String> messages = new DraftBoard.Messages<>() {
+        @Override
+        public boolean update(String ts, String message) {
+            calls.add("update " + ts);
+            return channel.replace(ts, message) != null;
+        }
+
+        @Override
+        public String post(String message) {
+            var ts = String.valueOf(nextTs++);
+            calls.add("post " + ts);
+            channel.put(ts, message);
+            return ts;
+        }
+
+        @Override
+        public void delete(String ts) {
+            calls.add("delete " + ts);
+            channel.remove(ts);
+        }
+    };
+
+    private List<String> post(List<String> board) throws Exception {
+        var boardTs = DraftBoard.update(messages, null, board);
+        calls.clear();
+        return boardTs;
+    }
+
+    @Test
+    void sameSizeBoardIsEditedInPlace() throws Exception {
+        var boardTs = post(List.of("a", "b"));
+        assertEquals(boardTs, DraftBoard.update(messages, boardTs, List.of("c", "d")));
+        assertEquals(List.of("update 1", "update 2"), calls);
+        assertEquals(List.of("c", "d"), List.copyOf(channel.values()));
+    }
+
+    @Test
+    void grownBoardPostsOnlyTheNewMessages() throws Exception {
+        var boardTs = post(List.of("a", "b"));
+        assertEquals(List.of("1", "2", "3"), DraftBoard.update(messages, boardTs, List.of("c", "d", "e")));
+        assertEquals(List.of("update 1", "update 2", "post 3"), calls);
+        assertEquals(List.of("c", "d", "e"), List.copyOf(channel.values()));
+    }
+
+    @Test
+    void shrunkBoardDeletesTheLeftoverMessages() throws Exception {
+        var boardTs = post(List.of("a", "b", "c"));
+        assertEquals(List.of("1"), DraftBoard.update(messages, boardTs, List.of("d")));
+        assertEquals(List.of("update 1", "delete 2", "delete 3"), calls);
+        assertEquals(List.of("d"), List.copyOf(channel.values()));
+    }
+
+    @Test
+    void restOfTheBoardIsPostedAgainOnceAMessageCantBeEdited() throws Exception {
+        var boardTs = post(List.of("a", "b", "c"));
+        channel.remove("2");
+        assertEquals(List.of("1", "4", "5"), DraftBoard.update(messages, boardTs, List.of("d", "e", "f")));
+        assertEquals(List.of("update 1", "update 2", "post 4", "post 5", "delete 2", "delete 3"), calls);
+        // No old message is left between or after the new board's messages
+        assertEquals(List.of("d", "e", "f"), List.copyOf(channel.values()));
+    }
+
+    @Test
+    void missingBoardIsPosted() throws Exception {
+        assertEquals(List.of("1", "2"), DraftBoard.update(messages, null, List.of("a", "b")));
+        assertEquals(List.of("post 1", "post 2"), calls);
+    }
+}
@@ -0,0 +1,272 @@
+package com.dacubeking.fantasyfirst;
+
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cache against a local server standing in for TBA
+ */
+class EventTeamCacheTest {
+
+    private static final String EVENT = "2024test";
+    private static final Duration LONG = Duration.ofDays(1);
+
+    @TempDir
+    Path cacheDirectory;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+    // What the server answers with, as a JSON body and its ETag
+    private final AtomicReference<String> body = new AtomicReference<>(teamsJson(254, 971));
+    private final AtomicReference<String> etag = new AtomicReference<>("\"v1\"");
+    // While set, requests wait for it before answering
+    private final AtomicReference<CountDownLatch> hold = new AtomicReference<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/v3/event/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        var latch = hold.get();
+        if (latch != null) {
+            latch.countDown();
+        }
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        var requestEtag = exchange.getRequestHeaders().getFirst("If-None-Match");
+        ifNoneMatch.add(String.valueOf(requestEtag));
+        var latch = hold.get();
+        if (latch != null) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!exchange.getRequestURI().getPath().equals("/api/v3/event/" + EVENT + "/teams/simple")) {
+            exchange.sendResponseHeaders(404, -1);
+        } else if (etag.get().equals(requestEtag)) {
+            exchange.getResponseHeaders().set("ETag", etag.get());
+            exchange.sendResponseHeaders(304, -1);
+        } else {
+            var bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", etag.get());
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    private static String teamsJson(int... teamNumbers) {
+        var teams = new ArrayList<String>();
+        for (int teamNumber : teamNumbers) {
+            teams.add("{\"key\":\"frc" + teamNumber + "\",\"team_number\":" + teamNumber + ",\"nickname\":\"Team\"}");
+        }
+        return "[" + String.join(",", teams) + "]";
+    }
+
+    private GetTeamsAtEvent fetcher() {
+        return new GetTeamsAtEvent("key", "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v3");
+    }
+
+    private EventTeamCache cache(Duration freshTtl, Duration maxStale) {
+        return new EventTeamCache(fetcher(), cacheDirectory, freshTtl, maxStale);
+    }
+
+    private static List<String> teamNumbers(TeamCatalog catalog) {
+        var teamNumbers = new ArrayList<String>();
+        for (int i = 0; i < catalog.size(); i++) {
+            teamNumbers.add(catalog.get(i).number());
+        }
+        return teamNumbers;
+    }
+
+    private static TeamCatalog get(EventTeamCache cache, String eventCode) throws Exception {
+        return cache.getTeamsAtEvent(eventCode).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Wait until the server has seen a number of requests and they've been handled
+     */
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requests.get() < count) {
+            assertTrue(System.nanoTime() < deadline, "Expected " + count + " requests, got " + requests.get());
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void fetchesUncachedEvent() throws Exception {
+        var catalog = get(cache(LONG, LONG), EVENT);
+        assertEquals(List.of("254", "971"), teamNumbers(catalog));
+        assertEquals(1, requests.get());
+        assertEquals(List.of("null"), ifNoneMatch);
+    }
+
+    @Test
+    void freshEntryIsServedWithoutRequest() throws Exception {
+        var cache = cache(LONG, LONG);
+        get(cache, EVENT);
+        get(cache, EVENT);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void unchangedListIsRevalidatedWithEtag() throws Exception {
+        // Always too stale to serve, so every lookup waits for the revalidation
+        var cache = cache(Duration.ZERO, Duration.ZERO);
+        var first = get(cache, EVENT);
+        Thread.sleep(5);
+
+        var second = get(cache, EVENT);
+        assertEquals(List.of("null", "\"v1\""), ifNoneMatch);
+        // Games for the event keep sharing one catalog while the list doesn't change
+        assertSame(first, second);
+    }
+
+    @Test
+    void staleListIsServedWhileRevalidating() throws Exception {
+        var cache = cache(Duration.ZERO, LONG);
+        get(cache, EVENT);
+        Thread.sleep(5);
+
+        body.set(teamsJson(254, 971, 1678));
+        etag.set("\"v2\"");
+        var latch = new CountDownLatch(1);
+        hold.set(latch);
+        // Answered from the cache while TBA hasn't responded yet
+        var stale = cache.getTeamsAtEvent(EVENT);
+        assertTrue(stale.isDone());
+        assertEquals(List.of("254", "971"), teamNumbers(stale.get()));
+
+        hold.set(null);
+        latch.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!teamNumbers(get(cache(LONG, LONG), EVENT)).contains("1678")) {
+            assertTrue(System.nanoTime() < deadline, "Revalidated list was never stored");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void listOlderThanMaxStaleIsWaitedFor() throws Exception {
+        var cache = cache(Duration.ZERO, Duration.ZERO);
+        get(cache, EVENT);
+        Thread.sleep(5);
+        body.set(teamsJson(1678));
+        etag.set("\"v2\"");
+        assertEquals(List.of("1678"), teamNumbers(get(cache, EVENT)));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void cacheSurvivesRestart() throws Exception {
+        get(cache(LONG, LONG), EVENT);
+
+        var restarted = cache(LONG, LONG);
+        assertEquals(List.of("254", "971"), teamNumbers(get(restarted, EVENT)));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void restartedCacheRevalidatesWithStoredEtag() throws Exception {
+        get(cache(LONG, LONG), EVENT);
+        Thread.sleep(5);
+
+        var restarted = cache(Duration.ZERO, Duration.ZERO);
+        assertEquals(List.of("254", "971"), teamNumbers(get(restarted, EVENT)));
+        assertEquals(List.of("null", "\"v1\""), ifNoneMatch);
+    }
+
+    @Test
+    void concurrentLookupsShareOneRequest() throws Exception {
+        var cache = cache(LONG, LONG);
+        var latch = new CountDownLatch(1);
+        hold.set(latch);
+
+        var lookups = new ArrayList<CompletableFuture<TeamCatalog>>();
+        for (int i = 0; i < 16; i++) {
+            lookups.add(cache.getTeamsAtEvent(EVENT));
+        }
+        awaitRequests(1);
+        assertTrue(lookups.stream().noneMatch(CompletableFuture::isDone));
+
+        latch.countDown();
+        for (var lookup : lookups) {
+            assertEquals(List.of("254", "971"), teamNumbers(lookup.get(10, TimeUnit.SECONDS)));
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void unknownEventIsNotCached() throws Exception {
+        var cache = cache(LONG, LONG);
+        assertEquals(0, get(cache, "2024nope").size());
+        assertEquals(0, get(cache, "2024nope").size());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void invalidEventCodeIsNotRequested() throws Exception {
+        var cache = cache(LONG, LONG);
+        assertEquals(0, get(cache, "../2024test").size());
+        assertEquals(0, get(cache, "2024 test").size());
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    void requestThatFailsToStartDoesNotHangLaterLookups() throws Exception {
+        var calls = new AtomicInteger();
+        var failing = new GetTeamsAtEvent("key", "http://127.0.0.1:1") {
+            @Override
+            public CompletableFuture<EventTeams> fetchTeamsAtEvent(String eventCode, String etag, String lastModified) {
+                calls.incrementAndGet();
+                throw new IllegalArgumentException("Bad request");
+            }
+        };
+        var cache = new EventTeamCache(failing, cacheDirectory, LONG, LONG);
+
+        for (int i = 0; i < 2; i++) {
+            var lookup = cache.getTeamsAtEvent(EVENT);
+            var e = assertThrows(ExecutionException.class, () -> lookup.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void missingApiKeyFailsInsteadOfHanging() {
+        var cache = new EventTeamCache(new GetTeamsAtEvent(null, "http://127.0.0.1:1"), cacheDirectory, LONG, LONG);
+        var e = assertThrows(ExecutionException.class, () -> get(cache, EVENT));
+        assertInstanceOf(NullPointerException.class, e.getCause());
+    }
+}
@@ -0,0 +1,176 @@
+package com.dacubeking.fantasyfirst;
+
+import com.dacubeking.fantasyfirst.ViewTemplate.Slot;
+import com.dacubeking.fantasyfirst.ViewTemplate.SlotType;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewTemplateTest {
+
+    private static final ViewTemplate TEXT = ViewTemplate.compile("""
+            {
+              "type": "section",
+              "text": {"type": "mrkdwn", "text": "*Picked:* {{team:mrkdwn}}"},
+              "plain": {"type": "plain_text", "text": "{{name}}"}
+            }
+            """);
+
+    private static JsonObject render(ViewTemplate template, String... values) {
+        return JsonParser.parseString(template.render(values)).getAsJsonObject();
+    }
+
+    private static String mrkdwnText(JsonObject rendered) {
+        return rendered.getAsJsonObject("text").get("text").getAsString();
+    }
+
+    private static String plainText(JsonObject rendered) {
+        return rendered.getAsJsonObject("plain").get("text").getAsString();
+    }
+
+    @Test
+    void slotsAreInOrderOfFirstUse() {
+        assertEquals(List.of(new Slot("team", SlotType.MRKDWN), new Slot("name", SlotType.PLAIN_TEXT)),
+                TEXT.getSlots());
+    }
+
+    @Test
+    void rendersMinifiedJson() {
+        assertEquals("{\"type\":\"section\",\"text\":{\"type\":\"mrkdwn\",\"text\":\"*Picked:* 254\"},"
+                + "\"plain\":{\"type\":\"plain_text\",\"text\":\"Cheesy Poofs\"}}", TEXT.render("254", "Cheesy Poofs"));
+    }
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() {
+        var value = "say \"hi\" \\ C:\\path\n\r\t\u0000\u0001\u001f\u007f end";
+        var rendered = TEXT.render(value, value);
+        assertFalse(rendered.contains("\n"));
+        assertFalse(rendered.contains("\u0000"));
+        var parsed = JsonParser.parseString(rendered).getAsJsonObject();
+        assertEquals(value, plainText(parsed));
+        assertEquals("*Picked:* " + value, mrkdwnText(parsed));
+    }
+
+    @Test
+    void escapesLineSeparators() {
+        // Valid in JSON, but not in the JavaScript some Slack clients embed payloads in
+        var value = "line\u2028paragraph\u2029end";
+        var rendered = TEXT.render(value, value);
+        assertFalse(rendered.contains("\u2028"));
+        assertFalse(rendered.contains("\u2029"));
+        assertTrue(rendered.contains("\\u2028"));
+        assertEquals(value, plainText(JsonParser.parseString(rendered).getAsJsonObject()));
+    }
+
+    @Test
+    void keepsSurrogatePairs() {
+        var value = "\uD83E\uDD16 robots";
+        assertEquals(value, plainText(render(TEXT, value, value)));
+    }
+
+    @Test
+    void mrkdwnSlotsCantInjectMentionsOrLinks() {
+        var value = "<@U123> & <!channel> <https://example.com|click>";
+        var parsed = render(TEXT, value, value);
+        assertEquals("*Picked:* &lt;@U123&gt; &amp; &lt;!channel&gt; &lt;https://example.com|click&gt;",
+                mrkdwnText(parsed));
+        // plain_text isn't parsed by Slack, so the value is shown as-is
+        assertEquals(value, plainText(parsed));
+    }
+
+    @Test
+    void literalCharactersInTheTemplateAreKept() {
+        var template = ViewTemplate.compile("{\"text\":\"<@{{user}}> & \\\"quoted\\\" \\u2028 {{rest}}\"}");
+        var parsed = JsonParser.parseString(template.render("U123", "x")).getAsJsonObject();
+        assertEquals("<@U123> & \"quoted\" \u2028 x", parsed.get("text").getAsString());
+    }
+
+    @Test
+    void repeatedSlotTakesOneValue() {
+        var template = ViewTemplate.compile("{\"a\":\"{{id}}\",\"b\":[\"{{id}}\",\"{{id}}-2\"]}");
+        assertEquals(1, template.getSlots().size());
+        assertEquals("{\"a\":\"x\",\"b\":[\"x\",\"x-2\"]}", template.render("x"));
+    }
+
+    @Test
+    void placeholderInKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ViewTemplate.compile("{\"{{key}}\":\"value\"}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ViewTemplate.compile("{\"outer\":[{\"prefix-{{key}}\":\"value\"}]}"));
+    }
+
+    @Test
+    void mismatchedSlotTypesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ViewTemplate.compile("{\"a\":\"{{name}}\",\"b\":\"{{name:mrkdwn}}\"}"));
+    }
+
+    @Test
+    void unknownSlotTypeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ViewTemplate.compile("{\"a\":\"{{name:html}}\"}"));
+    }
+
+    @Test
+    void invalidJsonIsRejected() {
+        assertThrows(JsonSyntaxException.class, () -> ViewTemplate.compile("{\"a\":\"{{name}}\""));
+    }
+
+    @Test
+    void wrongNumberOfValuesIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TEXT.render("254"));
+        assertThrows(IllegalArgumentException.class, () -> TEXT.render("254", "a", "b"));
+    }
+
+    @Test
+    void randomValuesRoundTrip() {
+        // Mostly the characters that need escaping, with some of everything else in the BMP
+        var special = "\"\\\n\r\t\u0000\u001f&<>\u2028\u2029{}:";
+        var random = new Random(2024);
+        for (int i = 0; i < 2000; i++) {
+            var value = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                value.append(random.nextBoolean() ? special.charAt(random.nextInt(special.length()))
+                        : (char) random.nextInt(0xD800));
+            }
+            var parsed = render(TEXT, value.toString(), value.toString());
+            assertEquals(value.toString(), plainText(parsed));
+            var unescaped = mrkdwnText(parsed).substring("*Picked:* ".length())
+                    .replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+            assertEquals(value.toString(), unescaped);
+        }
+    }
+
+    private static List<String> strings(JsonElement element) {
+        var strings = new ArrayList<String>();
+        if (element.isJsonPrimitive()) {
+            strings.add(element.getAsString());
+        } else if (element.isJsonArray()) {
+            element.getAsJsonArray().forEach(child -> strings.addAll(strings(child)));
+        } else if (element.isJsonObject()) {
+            element.getAsJsonObject().entrySet().forEach(entry -> strings.addAll(strings(entry.getValue())));
+        }
+        return strings;
+    }
+
+    @Test
+    void screensRenderValidJson() {
+        var nasty = "\"}]} <@U999> & \\ \u2028";
+        var callbackId = Screens.PICK_TEAM_CALLBACK_ID + ",id";
+        var view = JsonParser.parseString(Screens.buildPickATeamView(callbackId, "U123", nasty));
+        assertEquals(callbackId, view.getAsJsonObject().get("callback_id").getAsString());
+        assertTrue(strings(view).contains(nasty));
+        assertTrue(strings(view).contains("*It's <@U123>'s turn to pick!*"));
+
+        var response = JsonParser.parseString(Screens.buildPickATeamErrorResponse(callbackId, "U123", nasty, nasty));
+        assertTrue(strings(response).contains("*\"}]} &lt;@U999&gt; &amp; \\ \u2028*"));
+    }
+}
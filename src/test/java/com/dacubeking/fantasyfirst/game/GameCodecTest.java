@@ -0,0 +1,234 @@
+package com.dacubeking.fantasyfirst.game;
+
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.Game.Team;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameCodecTest {
+
+    private static List<String> teamNumbers(int teams) {
+        var numbers = new ArrayList<String>(teams);
+        for (int i = 0; i < teams; i++) {
+            numbers.add(String.valueOf(1 + i * 37 % 9973));
+        }
+        return numbers;
+    }
+
+    /**
+     * A started game for an event, a few picks in
+     */
+    private static Game draftedGame(String eventCode) {
+        var game = new Game("C0TEST", 2, new TeamPool(TeamCatalog.forEvent(eventCode, teamNumbers(60))), "U0OWNER",
+                "Codec test \"quoted\" \u00e9v\u00e9nement \uD83E\uDD16", 0);
+        var draftOrder = new ArrayList<String>();
+        for (int i = 0; i < 6; i++) {
+            game.addPlayer(new Player("U" + (100000 + i), "Player " + i));
+            draftOrder.add("U" + (100000 + i));
+        }
+        game.start(draftOrder);
+        for (int i = 0; i < 5; i++) {
+            game.pickTeam(game.getAvailableTeams().get(i).number());
+        }
+        game.setLastMessagesTs(List.of("1700000000.000100", "1700000000.000200"));
+        game.setJournalSequence(12345);
+        return game;
+    }
+
+    /**
+     * Shared catalogs kept in memory, standing in for the game store's files
+     */
+    private static class MemoryCatalogs implements GameCodec.SharedCatalogs {
+        final Map<String, byte[]> stored = new HashMap<>();
+
+        @Override
+        public boolean share(String eventCode, long fingerprint, TeamCatalog catalog) {
+            try {
+                stored.putIfAbsent(eventCode + fingerprint, GameCodec.encodeCatalog(catalog, false));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return true;
+        }
+
+        @Override
+        public TeamCatalog load(String eventCode, long fingerprint) throws IOException {
+            var bytes = stored.get(eventCode + fingerprint);
+            if (bytes == null) {
+                throw new IOException("No catalog " + eventCode);
+            }
+            return GameCodec.decodeCatalog(bytes);
+        }
+    }
+
+    private static void assertSameGame(Game expected, Game actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getTeamsPerAlliance(), actual.getTeamsPerAlliance());
+        assertEquals(expected.getTargetPlayersPerGame(), actual.getTargetPlayersPerGame());
+        assertEquals(expected.getGameName(), actual.getGameName());
+        assertEquals(expected.getNextPlayerInDraft(), actual.getNextPlayerInDraft());
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        var game = draftedGame("2024codec");
+        var decoded = GameCodec.decode(GameCodec.encode(game, false));
+        assertSameGame(game, decoded);
+        // Loaded games share the event's catalog and its team instances
+        assertSame(game.getTeamPool().getCatalog(), decoded.getTeamPool().getCatalog());
+        assertSame(game.getTeamPool().getCatalog().get(0), decoded.getTeamPool().getCatalog().get(0));
+    }
+
+    @Test
+    void roundTripsDeflated() throws IOException {
+        var game = draftedGame("2024codec");
+        var plain = GameCodec.encode(game, false);
+        var deflated = GameCodec.encode(game, true);
+        assertNotEquals(plain.length, deflated.length);
+        assertSameGame(game, GameCodec.decode(deflated));
+    }
+
+    @Test
+    void roundTripsGameOfItsOwn() throws IOException {
+        var teams = new ArrayList<Team>();
+        for (String number : teamNumbers(30)) {
+            teams.add(new Team(number));
+        }
+        var game = new Game("C0TEST", 3, new TeamPool(TeamCatalog.of(teams)), "U0OWNER", "Custom teams", 4);
+        game.addPlayer(new Player("U1", null));
+        assertSameGame(game, GameCodec.decode(GameCodec.encode(game, false, new MemoryCatalogs())));
+    }
+
+    @Test
+    void sharedCatalogIsStoredOnce() throws IOException {
+        var catalogs = new MemoryCatalogs();
+        var game = draftedGame("2024shared");
+        var other = draftedGame("2024shared");
+
+        var inline = GameCodec.encode(game, false);
+        var shared = GameCodec.encode(game, false, catalogs);
+        GameCodec.encode(other, false, catalogs);
+        assertEquals(1, catalogs.stored.size());
+        assertTrue(shared.length * 2 < inline.length, shared.length + " vs " + inline.length);
+
+        var decoded = GameCodec.decode(shared, catalogs);
+        assertSameGame(game, decoded);
+        assertSame(game.getTeamPool().getCatalog(), decoded.getTeamPool().getCatalog());
+
+        var deflated = GameCodec.encode(other, true, catalogs);
+        assertSameGame(other, GameCodec.decode(deflated, catalogs));
+    }
+
+    @Test
+    void sharedCatalogIsRequired() throws IOException {
+        var shared = GameCodec.encode(draftedGame("2024shared"), false, new MemoryCatalogs());
+        assertThrows(IOException.class, () -> GameCodec.decode(shared));
+        assertThrows(IOException.class, () -> GameCodec.decode(shared, new MemoryCatalogs()));
+    }
+
+    @Test
+    void sharedCatalogMustMatchTheGame() throws IOException {
+        var catalogs = new MemoryCatalogs();
+        var game = draftedGame("2024changed");
+        var shared = GameCodec.encode(game, false, catalogs);
+        var fingerprint = game.getTeamPool().getCatalog().getFingerprint();
+
+        // The event's team list changed and a different catalog ended up under the game's fingerprint
+        var changed = TeamCatalog.forEvent("2024changed", teamNumbers(61));
+        assertNotEquals(fingerprint, changed.getFingerprint());
+        catalogs.stored.put("2024changed" + fingerprint, GameCodec.encodeCatalog(changed, false));
+        assertThrows(IOException.class, () -> GameCodec.decode(shared, catalogs));
+    }
+
+    @Test
+    void fingerprintIsStable() {
+        var catalog = TeamCatalog.forEvent("2024print", teamNumbers(40));
+        var restored = TeamCatalog.restore(null, teamsOf(catalog));
+        assertEquals(catalog.getFingerprint(), restored.getFingerprint());
+        assertNotEquals(catalog.getFingerprint(), TeamCatalog.forEvent("2024print2", teamNumbers(40)).getFingerprint());
+    }
+
+    private static Team[] teamsOf(TeamCatalog catalog) {
+        var teams = new Team[catalog.size()];
+        for (int i = 0; i < teams.length; i++) {
+            teams[i] = catalog.get(i);
+        }
+        return teams;
+    }
+
+    @Test
+    void catalogRoundTrips() throws IOException {
+        var catalog = TeamCatalog.forEvent("2024catalog", teamNumbers(50));
+        for (boolean deflate : new boolean[]{false, true}) {
+            var decoded = GameCodec.decodeCatalog(GameCodec.encodeCatalog(catalog, deflate));
+            assertSame(catalog, decoded);
+        }
+        assertThrows(IOException.class, () -> GameCodec.decode(GameCodec.encodeCatalog(catalog, false)));
+        assertThrows(IOException.class, () -> GameCodec.decodeCatalog(GameCodec.encode(draftedGame("2024catalog"),
+                false)));
+    }
+
+    @Test
+    void everyFlippedByteIsDetected() throws IOException {
+        var game = draftedGame("2024flip");
+        for (boolean deflate : new boolean[]{false, true}) {
+            var bytes = GameCodec.encode(game, deflate);
+            for (int i = 0; i < bytes.length; i++) {
+                var corrupted = bytes.clone();
+                corrupted[i] ^= 0x10;
+                int offset = i;
+                assertThrows(IOException.class, () -> GameCodec.decode(corrupted), "byte " + offset);
+            }
+        }
+    }
+
+    @Test
+    void truncatedGameIsRejected() throws IOException {
+        var bytes = GameCodec.encode(draftedGame("2024cut"), false);
+        for (int length : new int[]{0, 4, 9, bytes.length / 2, bytes.length - 1}) {
+            var truncated = java.util.Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> GameCodec.decode(truncated), "length " + length);
+        }
+    }
+
+    /**
+     * @return The bytes with the header's version replaced and the checksum fixed up to match
+     */
+    private static byte[] withVersion(byte[] bytes, int version) {
+        var changed = bytes.clone();
+        changed[4] = (byte) version;
+        var crc = new CRC32();
+        crc.update(changed, 0, changed.length - 4);
+        ByteBuffer.wrap(changed).putInt(changed.length - 4, (int) crc.getValue());
+        return changed;
+    }
+
+    @Test
+    void newerVersionIsRejected() throws IOException {
+        var bytes = GameCodec.encode(draftedGame("2024version"), false);
+        int version = bytes[4];
+        assertSameGame(GameCodec.decode(bytes), GameCodec.decode(withVersion(bytes, version)));
+        var e = assertThrows(IOException.class, () -> GameCodec.decode(withVersion(bytes, version + 1)));
+        assertTrue(e.getMessage().contains("schema version"), e.getMessage());
+    }
+
+    @Test
+    void javaSerializationIsNotEncoded() throws IOException {
+        var bos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(draftedGame("2024java"));
+        }
+        assertThrows(IOException.class, () -> GameCodec.decode(bos.toByteArray()));
+    }
+}
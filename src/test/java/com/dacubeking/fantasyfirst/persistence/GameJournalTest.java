@@ -0,0 +1,313 @@
+package com.dacubeking.fantasyfirst.persistence;
+
+import com.dacubeking.fantasyfirst.game.Game;
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.Game.Team;
+import com.dacubeking.fantasyfirst.game.GameCodec;
+import com.dacubeking.fantasyfirst.game.TeamPool;
+import com.dacubeking.fantasyfirst.persistence.GameMutation.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameJournalTest {
+
+    private static final String WORKSPACE = "T0TEST";
+
+    @TempDir
+    Path directory;
+
+    private Path journalPath;
+    private GameJournal journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journalPath = directory.resolve("games.journal");
+        journal = newJournal();
+        journal.start(() -> {
+        }, mutation -> {
+        }, 0);
+    }
+
+    private GameJournal newJournal() {
+        return new GameJournal(journalPath, Duration.ofHours(1), Duration.ofHours(1), Long.MAX_VALUE);
+    }
+
+    private static Game newGame() {
+        return new Game("C0TEST", 1, new TeamPool(List.of(new Team("254"), new Team("971"), new Team("1678"))),
+                "U0OWNER", "Test", 0);
+    }
+
+    /**
+     * Journal a change made to the live game, the way Main does
+     */
+    private void record(Game game, GameMutation mutation) {
+        game.setJournalSequence(journal.append(mutation));
+    }
+
+    private static ConcurrentMap<String, ConcurrentMap<UUID, Game>> gamesWith(Game game) {
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>();
+        games.computeIfAbsent(WORKSPACE, k -> new ConcurrentHashMap<>()).put(game.getGameUuid(), game);
+        return games;
+    }
+
+    private int replay(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) throws IOException {
+        return newJournal().replay((mutation, sequence) -> mutation.apply(games, sequence));
+    }
+
+    @Test
+    void replayOverANewerStoredGameKeepsItsPicks() throws IOException {
+        var game = newGame();
+        var id = game.getGameUuid();
+        var snapshots = new ArrayList<byte[]>();
+        snapshots.add(GameCodec.encode(game, false));
+
+        record(game, new GameUpserted(WORKSPACE, game));
+        snapshots.add(GameCodec.encode(game, false));
+        for (String slackId : List.of("UA", "UB")) {
+            game.addPlayer(new Player(slackId, slackId));
+            record(game, new PlayerAdded(WORKSPACE, id, slackId, slackId));
+            snapshots.add(GameCodec.encode(game, false));
+        }
+        game.start(List.of("UA", "UB"));
+        record(game, new GameStarted(WORKSPACE, id, List.of("UA", "UB")));
+        snapshots.add(GameCodec.encode(game, false));
+        game.unStart();
+        record(game, new GameUnstarted(WORKSPACE, id));
+        snapshots.add(GameCodec.encode(game, false));
+        game.addPlayer(new Player("UC", "UC"));
+        record(game, new PlayerAdded(WORKSPACE, id, "UC", "UC"));
+        snapshots.add(GameCodec.encode(game, false));
+        game.start(List.of("UC", "UA", "UB"));
+        record(game, new GameStarted(WORKSPACE, id, List.of("UC", "UA", "UB")));
+        snapshots.add(GameCodec.encode(game, false));
+        assertTrue(game.pickTeam("254").isPresent());
+        record(game, new TeamPicked(WORKSPACE, id, "254", "UC"));
+        snapshots.add(GameCodec.encode(game, false));
+        journal.close();
+
+        var expected = game.toString();
+        assertTrue(game.getPlayers().get(0).selectedTeams().stream().anyMatch(team -> team.number().equals("254")));
+        // Whenever the game was stored, replaying the whole journal over it has to end up in the same state
+        for (int i = 0; i < snapshots.size(); i++) {
+            var games = gamesWith(GameCodec.decode(snapshots.get(i)));
+            replay(games);
+            assertEquals(expected, games.get(WORKSPACE).get(id).toString(), "stored after " + i + " changes");
+        }
+    }
+
+    @Test
+    void replayedPickIsSkippedWhenItIsNotThePickersTurn() throws IOException {
+        var game = newGame();
+        game.addPlayer(new Player("UA", "UA"));
+        game.addPlayer(new Player("UB", "UB"));
+        game.start(List.of("UA", "UB"));
+        journal.append(new TeamPicked(WORKSPACE, game.getGameUuid(), "254", "UB"));
+        journal.close();
+
+        replay(gamesWith(game));
+        assertTrue(game.getPlayers().stream().allMatch(player -> player.selectedTeams().isEmpty()));
+        assertEquals(3, game.getAvailableTeams().size());
+    }
+
+    @Test
+    void upsertedGameIsJournaledWithTheCodec() throws IOException {
+        var game = newGame();
+        game.addPlayer(new Player("UA", "UA"));
+        record(game, new GameUpserted(WORKSPACE, game));
+        journal.close();
+
+        // None of the game's classes are Java serialized
+        var journaled = new String(Files.readAllBytes(journalPath), java.nio.charset.StandardCharsets.ISO_8859_1);
+        assertFalse(journaled.contains("fantasyfirst.game."), journaled);
+
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>();
+        assertEquals(1, replay(games));
+        assertEquals(game.toString(), games.get(WORKSPACE).get(game.getGameUuid()).toString());
+    }
+
+    @Test
+    void pickNotificationsSettingIsReplayed() throws IOException {
+        var game = newGame();
+        var stored = GameCodec.encode(game, false);
+        game.setPickNotifications(true);
+        record(game, new PickNotificationsSet(WORKSPACE, game.getGameUuid(), true));
+        journal.close();
+
+        var games = gamesWith(GameCodec.decode(stored));
+        replay(games);
+        assertTrue(games.get(WORKSPACE).get(game.getGameUuid()).hasPickNotifications());
+    }
+
+    @Test
+    void sequenceNumbersContinueAfterTheStoredGames() throws IOException {
+        assertEquals(1, journal.append(new GameRenamed(WORKSPACE, UUID.randomUUID(), "a")));
+        journal.close();
+
+        var restarted = newJournal();
+        restarted.replay((mutation, sequence) -> {
+        });
+        restarted.start(() -> {
+        }, mutation -> {
+        }, 41);
+        assertEquals(42, restarted.append(new GameRenamed(WORKSPACE, UUID.randomUUID(), "b")));
+        restarted.close();
+    }
+
+    @Test
+    void compactionBetweenMarkingAndAppendingKeepsTheChange() throws IOException {
+        journal.close();
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>();
+        var store = new GameStore(directory.resolve("games"), Duration.ofHours(1), games);
+        store.open(directory.resolve("games.ser"));
+        var game = newGame();
+        var id = game.getGameUuid();
+        game.addPlayer(new Player("UA", "UA"));
+        game.addPlayer(new Player("UB", "UB"));
+        game.start(List.of("UA", "UB"));
+        games.computeIfAbsent(WORKSPACE, k -> new ConcurrentHashMap<>()).put(id, game);
+
+        var compacting = newJournal();
+        compacting.start(store::writeNow, mutation -> {
+            store.changed(mutation);
+            // The periodic compaction fires after the game was marked as changed, before its entry is written
+            compacting.compact();
+        }, 0);
+        game.setJournalSequence(compacting.append(new GameUpserted(WORKSPACE, game)));
+        assertTrue(game.pickTeam("254").isPresent());
+        game.setJournalSequence(compacting.append(new TeamPicked(WORKSPACE, id, "254", "UA")));
+        assertTrue(game.pickTeam("971").isPresent());
+        game.setJournalSequence(compacting.append(new TeamPicked(WORKSPACE, id, "971", "UB")));
+        // Killed here, without a final compaction or closing the journal
+
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> restartedGames = new ConcurrentHashMap<>();
+        var restarted = new GameStore(directory.resolve("games"), Duration.ofHours(1), restartedGames);
+        restarted.open(directory.resolve("games.ser"));
+        var stored = restarted.load(WORKSPACE, id);
+        assertNotNull(stored);
+        restartedGames.computeIfAbsent(WORKSPACE, k -> new ConcurrentHashMap<>()).put(id, stored);
+        replay(restartedGames);
+        assertEquals(game.toString(), restartedGames.get(WORKSPACE).get(id).toString());
+    }
+
+    @Test
+    void failedWriteKeepsOnlyTheUnwrittenGamesEntries() throws IOException {
+        journal.close();
+        ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>();
+        var store = new GameStore(directory.resolve("games"), Duration.ofHours(1), games);
+        store.open(directory.resolve("games.ser"));
+        var game = newGame();
+        games.computeIfAbsent(WORKSPACE, k -> new ConcurrentHashMap<>()).put(game.getGameUuid(), game);
+        // Can't be stored, its workspace id isn't a valid directory name
+        var unwritable = newGame();
+        games.computeIfAbsent("../T0TEST", k -> new ConcurrentHashMap<>()).put(unwritable.getGameUuid(), unwritable);
+
+        var compacting = newJournal();
+        compacting.start(store::writeNow, store::changed, 0);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 5; i++) {
+                game.setJournalSequence(compacting.append(new GameRenamed(WORKSPACE, game.getGameUuid(), "Game " + i)));
+            }
+            unwritable.setJournalSequence(compacting.append(new GameRenamed("../T0TEST", unwritable.getGameUuid(),
+                    "Unwritable " + round)));
+            compacting.compact();
+        }
+        compacting.close();
+
+        // Only the unwritable game's entries are left, the journal doesn't keep growing with everyone else's
+        var replayed = new ArrayList<GameMutation>();
+        assertEquals(3, newJournal().replay((mutation, sequence) -> replayed.add(mutation)));
+        assertTrue(replayed.stream().allMatch(mutation -> mutation.gameId().equals(unwritable.getGameUuid())));
+        assertEquals(game.toString(), store.load(WORKSPACE, game.getGameUuid()).toString());
+    }
+
+    private void appendThreeEntries() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            journal.append(new GameRenamed(WORKSPACE, UUID.randomUUID(), "Game " + i));
+        }
+        journal.close();
+    }
+
+    private void appendRaw(byte[] bytes) throws IOException {
+        Files.write(journalPath, bytes, StandardOpenOption.APPEND);
+    }
+
+    private static byte[] frame(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(Integer.BYTES + Long.BYTES + payload.length)
+                .putInt(payload.length).putLong(crc.getValue()).put(payload).array();
+    }
+
+    private static byte[] sequencedPayload(long sequence, byte[] body) {
+        return ByteBuffer.allocate(Long.BYTES + body.length).putLong(sequence).put(body).array();
+    }
+
+    @Test
+    void zeroFilledTailIsIgnored() throws IOException {
+        appendThreeEntries();
+        appendRaw(new byte[4096]);
+        assertEquals(3, replay(new ConcurrentHashMap<>()));
+    }
+
+    @Test
+    void negativeAndHugeLengthsAreIgnored() throws IOException {
+        appendThreeEntries();
+        appendRaw(ByteBuffer.allocate(12).putInt(-5).putLong(0).array());
+        assertEquals(3, replay(new ConcurrentHashMap<>()));
+
+        Files.delete(journalPath);
+        journal = newJournal();
+        journal.start(() -> {
+        }, mutation -> {
+        }, 0);
+        appendThreeEntries();
+        appendRaw(ByteBuffer.allocate(12).putInt(Integer.MAX_VALUE).putLong(0).array());
+        assertEquals(3, replay(new ConcurrentHashMap<>()));
+    }
+
+    @Test
+    void truncatedTailIsIgnored() throws IOException {
+        appendThreeEntries();
+        var frame = frame(sequencedPayload(4, "a half written entry".getBytes()));
+        appendRaw(java.util.Arrays.copyOf(frame, frame.length - 5));
+        assertEquals(3, replay(new ConcurrentHashMap<>()));
+    }
+
+    @Test
+    void unreadableLastEntryIsIgnored() throws IOException {
+        appendThreeEntries();
+        // Passes its checksum but isn't a serialized mutation
+        appendRaw(frame(sequencedPayload(4, "not a mutation".getBytes())));
+        assertEquals(3, replay(new ConcurrentHashMap<>()));
+    }
+
+    @Test
+    void unreadableEntryBeforeTheEndFailsReplay() throws IOException {
+        appendThreeEntries();
+        appendRaw(frame(sequencedPayload(4, "not a mutation".getBytes())));
+        var bos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(new GameRenamed(WORKSPACE, UUID.randomUUID(), "After"));
+        }
+        appendRaw(frame(sequencedPayload(5, bos.toByteArray())));
+        assertThrows(IOException.class, () -> replay(new ConcurrentHashMap<>()));
+    }
+}
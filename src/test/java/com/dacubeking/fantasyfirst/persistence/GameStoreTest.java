@@ -0,0 +1,183 @@
+package com.dacubeking.fantasyfirst.persistence;
+
+import com.dacubeking.fantasyfirst.game.Game;
+import com.dacubeking.fantasyfirst.game.Game.Player;
+import com.dacubeking.fantasyfirst.game.Game.Team;
+import com.dacubeking.fantasyfirst.game.TeamCatalog;
+import com.dacubeking.fantasyfirst.game.TeamPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameStoreTest {
+
+    private static final String WORKSPACE = "T0TEST";
+
+    @TempDir
+    Path directory;
+
+    private final ConcurrentMap<String, ConcurrentMap<UUID, Game>> games = new ConcurrentHashMap<>();
+
+    private GameStore openStore(ConcurrentMap<String, ConcurrentMap<UUID, Game>> games) throws IOException {
+        var store = new GameStore(directory.resolve("games"), Duration.ZERO, games);
+        store.open(directory.resolve("games.ser"));
+        return store;
+    }
+
+    private static List<String> teamNumbers(int teams) {
+        var numbers = new ArrayList<String>(teams);
+        for (int i = 0; i < teams; i++) {
+            numbers.add(String.valueOf(1 + i * 37 % 9973));
+        }
+        return numbers;
+    }
+
+    private Game addGame(TeamCatalog catalog, int players) {
+        var game = new Game("C0TEST", 2, new TeamPool(catalog), "U0OWNER", "Store test", 0);
+        for (int i = 0; i < players; i++) {
+            game.addPlayer(new Player("U" + i, "Player " + i));
+        }
+        games.computeIfAbsent(WORKSPACE, k -> new ConcurrentHashMap<>()).put(game.getGameUuid(), game);
+        return game;
+    }
+
+    private List<Path> catalogFiles() throws IOException {
+        var catalogDirectory = directory.resolve("games").resolve("catalogs");
+        if (!Files.exists(catalogDirectory)) {
+            return List.of();
+        }
+        try (var files = Files.list(catalogDirectory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void eventCatalogIsStoredOnce() throws IOException {
+        var store = openStore(games);
+        var eventCatalog = TeamCatalog.forEvent("2024store", teamNumbers(80));
+        var stored = new ArrayList<Game>();
+        for (int i = 0; i < 5; i++) {
+            stored.add(addGame(eventCatalog, i + 1));
+        }
+        var customTeams = new ArrayList<Team>();
+        for (String number : teamNumbers(10)) {
+            customTeams.add(new Team(number));
+        }
+        stored.add(addGame(TeamCatalog.of(customTeams), 2));
+        for (Game game : stored) {
+            store.requestWrite(WORKSPACE, game.getGameUuid());
+        }
+        store.writeNow();
+        assertEquals(1, catalogFiles().size());
+
+        // The game files only refer to the catalog, so they're much smaller than the catalog file
+        var eventGameFile = directory.resolve("games").resolve(WORKSPACE)
+                .resolve(stored.get(0).getGameUuid() + ".game");
+        assertTrue(Files.size(eventGameFile) * 4 < Files.size(catalogFiles().get(0)));
+
+        var restarted = openStore(new ConcurrentHashMap<>());
+        for (Game game : stored) {
+            var loaded = restarted.load(WORKSPACE, game.getGameUuid());
+            assertNotNull(loaded);
+            assertEquals(game.toString(), loaded.toString());
+        }
+        assertSame(eventCatalog, restarted.load(WORKSPACE, stored.get(1).getGameUuid()).copyTeamPool().getCatalog());
+    }
+
+    @Test
+    void changedTeamListGetsItsOwnCatalog() throws IOException {
+        var store = openStore(games);
+        var before = addGame(TeamCatalog.forEvent("2024grows", teamNumbers(20)), 2);
+        store.requestWrite(WORKSPACE, before.getGameUuid());
+        store.writeNow();
+
+        var after = addGame(TeamCatalog.forEvent("2024grows", teamNumbers(21)), 2);
+        store.requestWrite(WORKSPACE, after.getGameUuid());
+        store.writeNow();
+        assertEquals(2, catalogFiles().size());
+
+        var restarted = openStore(new ConcurrentHashMap<>());
+        assertEquals(20, restarted.load(WORKSPACE, before.getGameUuid()).copyTeamPool().getCatalog().size());
+        assertEquals(21, restarted.load(WORKSPACE, after.getGameUuid()).copyTeamPool().getCatalog().size());
+    }
+
+    @Test
+    void gameWithoutItsCatalogFailsToLoad() throws IOException {
+        var store = openStore(games);
+        var game = addGame(TeamCatalog.forEvent("2024lost", teamNumbers(20)), 2);
+        store.requestWrite(WORKSPACE, game.getGameUuid());
+        store.writeNow();
+        for (Path catalogFile : catalogFiles()) {
+            Files.delete(catalogFile);
+        }
+
+        assertNull(openStore(new ConcurrentHashMap<>()).load(WORKSPACE, game.getGameUuid()));
+    }
+
+    @Test
+    void legacySnapshotIsMigrated() throws IOException {
+        var game = addGame(TeamCatalog.forEvent("2024legacy", teamNumbers(20)), 2);
+        try (var oos = new ObjectOutputStream(Files.newOutputStream(directory.resolve("games.ser")))) {
+            oos.writeObject(games);
+        }
+
+        var migrated = new ConcurrentHashMap<String, ConcurrentMap<UUID, Game>>();
+        openStore(migrated);
+        assertEquals(game.toString(), migrated.get(WORKSPACE).get(game.getGameUuid()).toString());
+        assertFalse(Files.exists(directory.resolve("games.ser")));
+        assertTrue(Files.exists(directory.resolve("games.ser.migrated")));
+
+        var restarted = openStore(new ConcurrentHashMap<>());
+        assertEquals(game.toString(), restarted.load(WORKSPACE, game.getGameUuid()).toString());
+    }
+
+    @Test
+    void copyCanBeOpenedAsAStore() throws IOException {
+        var store = openStore(games);
+        var game = addGame(TeamCatalog.forEvent("2024copy", teamNumbers(20)), 2);
+        store.requestWrite(WORKSPACE, game.getGameUuid());
+        // Not written yet, copying writes it first
+        store.copyTo(directory.resolve("copy"));
+
+        var copy = new GameStore(directory.resolve("copy"), Duration.ZERO, new ConcurrentHashMap<>());
+        copy.open(directory.resolve("games.ser"));
+        assertEquals(1, copy.size());
+        assertEquals(game.toString(), copy.load(WORKSPACE, game.getGameUuid()).toString());
+    }
+
+    @Test
+    void gameThatFailsToWriteDoesNotStopTheOthers() throws IOException {
+        var store = openStore(games);
+        // Can't be stored, its workspace id isn't a valid directory name
+        var unwritable = new Game("C0TEST", 2, new TeamPool(TeamCatalog.forEvent("2024fails", teamNumbers(20))),
+                "U0OWNER", "Unwritable", 0);
+        games.computeIfAbsent("../T0TEST", k -> new ConcurrentHashMap<>()).put(unwritable.getGameUuid(), unwritable);
+        store.requestWrite("../T0TEST", unwritable.getGameUuid());
+        var game = addGame(TeamCatalog.forEvent("2024fails", teamNumbers(20)), 2);
+        store.requestWrite(WORKSPACE, game.getGameUuid());
+
+        var failed = assertThrows(GameStore.UnwrittenGamesException.class, store::writeNow);
+        assertEquals(Set.of(unwritable.getGameUuid()), failed.getGameIds());
+        assertEquals(1, failed.getSuppressed().length);
+
+        var restarted = openStore(new ConcurrentHashMap<>());
+        assertEquals(1, restarted.size());
+        assertEquals(game.toString(), restarted.load(WORKSPACE, game.getGameUuid()).toString());
+
+        // Still dirty, so the next write tries again
+        assertThrows(GameStore.UnwrittenGamesException.class, store::writeNow);
+    }
+}
@@ -0,0 +1,116 @@
+package com.dacubeking.fantasyfirst.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The tests that use virtual threads skip themselves on JVMs older than 21
+ */
+class VirtualThreadsTest {
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void unsupportedJvmRefusesToCreateVirtualThreads() {
+        assumeFalse(VirtualThreads.isSupported(), "running on a JVM with virtual threads");
+        assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.factory("test-"));
+        assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+    }
+
+    @Test
+    void blockedTasksDontHoldEachOtherUp() throws Exception {
+        assumeTrue(VirtualThreads.isSupported(), "needs Java 21 or newer");
+        var pool = new VirtualThreadPool("test-");
+        pool.start();
+        try {
+            // Far more tasks blocking at once than a pool of platform threads would run
+            int tasks = 10_000;
+            var started = new CountDownLatch(tasks);
+            var release = new CountDownLatch(1);
+            for (int i = 0; i < tasks; i++) {
+                pool.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+            assertEquals(tasks, pool.getThreads());
+            assertFalse(pool.isLowOnThreads());
+            release.countDown();
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void jettyHandlesRequestsOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported(), "needs Java 21 or newer");
+        var server = new Server(new VirtualThreadPool("jetty-"));
+        var connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                var thread = Thread.currentThread();
+                try {
+                    response.getWriter().print(isVirtual(thread) + " " + thread.getName());
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException(e);
+                }
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        try {
+            var response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + connector.getLocalPort() + "/")).build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().startsWith("true jetty-"), response.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void boltExecutorsRunOnVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported(), "needs Java 21 or newer");
+        var provider = VirtualThreads.executorServiceProvider();
+        var executor = provider.createThreadPoolExecutor("bolt", 1);
+        var scheduler = provider.createThreadScheduledExecutor("bolt-scheduler");
+        try {
+            assertTrue(executor.submit(() -> isVirtual(Thread.currentThread())).get(10, TimeUnit.SECONDS));
+            assertTrue(scheduler.schedule(() -> isVirtual(Thread.currentThread()), 1, TimeUnit.MILLISECONDS)
+                    .get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+            scheduler.shutdown();
+        }
+    }
+}